@@ -0,0 +1,279 @@
+package com.github.coderodde.util;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class implements a bit vector whose index is rebuilt in the background.
+ * The writes go to a private working copy and schedule a rebuild on an 
+ * {@link Executor}. The rebuild copies the words under a short lock, indexes 
+ * the copy outside the lock, and publishes it as the new immutable snapshot. 
+ * The queries never block and never rebuild; they run against the last 
+ * published snapshot, so they may not yet reflect the latest writes. 
+ * Consecutive writes are coalesced into a single rebuild.
+ * <p>
+ * For monitoring, {@link #isStale()} tells whether some writes are not yet 
+ * visible, {@link #getLag()} tells how many, and 
+ * {@link #getSnapshotAgeNanos()} tells how long ago the words of the published
+ * snapshot were copied.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class AsyncRankSelectBitVector {
+    
+    /**
+     * An immutable, indexed snapshot together with its version.
+     */
+    private static final class Snapshot {
+        
+        final RankSelectBitVectorSlice bits;
+        final long version;
+        final long copyTimeNanos;
+        
+        Snapshot(RankSelectBitVector bitVector, 
+                 long version, 
+                 long copyTimeNanos) {
+            this.bits = bitVector.slice(0, 
+                                        bitVector.getNumberOfSupportedBits());
+            this.version = version;
+            this.copyTimeNanos = copyTimeNanos;
+        }
+    }
+    
+    /**
+     * The working copy receiving the writes. Guarded by itself.
+     */
+    private final RankSelectBitVector workingCopy;
+    
+    /**
+     * The executor running the rebuilds.
+     */
+    private final Executor executor;
+    
+    /**
+     * Set while a rebuild is scheduled but has not yet copied the words.
+     */
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    
+    /**
+     * The number of writes so far.
+     */
+    private volatile long version;
+    
+    /**
+     * The last published snapshot.
+     */
+    private volatile Snapshot snapshot;
+    
+    /**
+     * Constructs a new bit vector with the default layout.
+     * 
+     * @param numberOfRequestedBits the actual number of bits to support.
+     * @param executor              the executor running the rebuilds.
+     */
+    public AsyncRankSelectBitVector(int numberOfRequestedBits, 
+                                    Executor executor) {
+        this(numberOfRequestedBits, 
+             BlockLayout.defaultFor(numberOfRequestedBits),
+             false,
+             executor);
+    }
+    
+    /**
+     * Constructs a new bit vector.
+     * 
+     * @param numberOfRequestedBits the actual number of bits to support.
+     * @param layout                the block sizes of the rank index.
+     * @param compactIndex          whether to use the compact index mode.
+     * @param executor              the executor running the rebuilds.
+     */
+    public AsyncRankSelectBitVector(int numberOfRequestedBits,
+                                    BlockLayout layout,
+                                    boolean compactIndex,
+                                    Executor executor) {
+        this.workingCopy = new RankSelectBitVector(numberOfRequestedBits, 
+                                                   layout, 
+                                                   compactIndex);
+        this.executor = Objects.requireNonNull(executor, "executor is null.");
+        
+        RankSelectBitVector initial = workingCopy.copyWithoutIndex();
+        initial.buildIndices();
+        this.snapshot = new Snapshot(initial, 0L, System.nanoTime());
+    }
+    
+    /**
+     * Writes the {@code index}th bit and schedules a rebuild if the bit 
+     * changes.
+     * 
+     * @param index the index of the target bit.
+     * @param on    the value of the bit.
+     */
+    public void writeBit(int index, boolean on) {
+        synchronized (workingCopy) {
+            if (workingCopy.readBit(index) == on) {
+                return;
+            }
+            
+            workingCopy.writeBit(index, on);
+            version++;
+        }
+        
+        scheduleRebuild();
+    }
+    
+    /**
+     * Turns the {@code index}th bit on.
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOn(int index) {
+        writeBit(index, true);
+    }
+    
+    /**
+     * Turns the {@code index}th bit off.
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOff(int index) {
+        writeBit(index, false);
+    }
+    
+    /**
+     * Returns the number of bits this bit vector supports.
+     * 
+     * @return the number of bits.
+     */
+    public int getNumberOfSupportedBits() {
+        return workingCopy.getNumberOfSupportedBits();
+    }
+    
+    /**
+     * Returns the number of set bits in the published snapshot.
+     * 
+     * @return the number of set bits.
+     */
+    public int getNumberOfSetBits() {
+        return snapshot.bits.getNumberOfSetBits();
+    }
+    
+    /**
+     * Reads the {@code index}th bit of the published snapshot.
+     * 
+     * @param index the bit index.
+     * @return {@code true} if and only if the bit is set.
+     */
+    public boolean readBit(int index) {
+        return snapshot.bits.readBit(index);
+    }
+    
+    /**
+     * Returns the number of set bits within {@code [0, index)} of the 
+     * published snapshot.
+     * 
+     * @param index the target index.
+     * @return the rank of {@code index}.
+     */
+    public int rank(int index) {
+        return snapshot.bits.rank(index);
+    }
+    
+    /**
+     * Returns the index of the {@code bitIndex}th set bit of the published 
+     * snapshot.
+     * 
+     * @param bitIndex the one-based index of the target set bit.
+     * @return the index of the target set bit.
+     */
+    public int select(int bitIndex) {
+        return snapshot.bits.select(bitIndex);
+    }
+    
+    /**
+     * Returns a read-only view of the published snapshot. Unlike the queries 
+     * of this bit vector, consecutive queries on the view are guaranteed to 
+     * see the same snapshot.
+     * 
+     * @return the view of the published snapshot.
+     */
+    public RankSelectBitVectorSlice getSnapshot() {
+        return snapshot.bits;
+    }
+    
+    /**
+     * Returns {@code true} if some writes are not visible in the published 
+     * snapshot.
+     * 
+     * @return {@code true} if the published snapshot is stale.
+     */
+    public boolean isStale() {
+        return getLag() != 0L;
+    }
+    
+    /**
+     * Returns the number of writes not visible in the published snapshot.
+     * 
+     * @return the number of pending writes.
+     */
+    public long getLag() {
+        return version - snapshot.version;
+    }
+    
+    /**
+     * Returns the number of nanoseconds since the words of the published 
+     * snapshot were copied from the working copy.
+     * 
+     * @return the age of the published snapshot.
+     */
+    public long getSnapshotAgeNanos() {
+        return System.nanoTime() - snapshot.copyTimeNanos;
+    }
+    
+    /**
+     * Rebuilds and publishes the snapshot in the calling thread, so that all 
+     * the writes completed before the call are visible afterwards.
+     */
+    public void rebuildNow() {
+        rebuild();
+    }
+    
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::rebuild);
+            } catch (RuntimeException ex) {
+                // Let the next write try again instead of never rebuilding:
+                rebuildScheduled.set(false);
+                throw ex;
+            }
+        }
+    }
+    
+    private void rebuild() {
+        // Writes arriving from now on need another rebuild:
+        rebuildScheduled.set(false);
+        
+        RankSelectBitVector copy;
+        long copyVersion;
+        long copyTimeNanos;
+        
+        synchronized (workingCopy) {
+            copy = workingCopy.copyWithoutIndex();
+            copyVersion = version;
+            copyTimeNanos = System.nanoTime();
+        }
+        
+        // The O(n) part runs without blocking the writers:
+        copy.buildIndices();
+        publish(new Snapshot(copy, copyVersion, copyTimeNanos));
+    }
+    
+    private synchronized void publish(Snapshot newSnapshot) {
+        // Concurrent rebuilds may finish out of order:
+        if (newSnapshot.version >= snapshot.version) {
+            snapshot = newSnapshot;
+        }
+    }
+}
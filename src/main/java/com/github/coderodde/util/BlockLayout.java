@@ -0,0 +1,175 @@
+package com.github.coderodde.util;
+
+import static java.lang.Math.ceil;
+
+/**
+ * This class describes the block sizes of the rank index of a 
+ * {@link RankSelectBitVector}: the size of the superblocks counted in the 
+ * {@code first} table, and the size of the blocks counted in the 
+ * {@code second} table. The default layout follows the textbook choice 
+ * {@code k = ceil(log2(n) / 2)} and {@code ell = k^2}; explicit layouts, such 
+ * as word-aligned {@code 512/64}, trade the lookup table for a single popcount
+ * within a word.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class BlockLayout {
+    
+    /**
+     * The largest block size for which the four Russians' lookup table is 
+     * used. Larger blocks are finished via popcounts.
+     */
+    static final int MAXIMUM_LOOKUP_BLOCK_SIZE = 16;
+    
+    /**
+     * The size of the superblocks in bits.
+     */
+    private final int superblockSize;
+    
+    /**
+     * The size of the blocks in bits.
+     */
+    private final int blockSize;
+    
+    private BlockLayout(int superblockSize, int blockSize) {
+        this.superblockSize = superblockSize;
+        this.blockSize = blockSize;
+    }
+    
+    /**
+     * Returns a layout with the given block sizes.
+     * 
+     * @param superblockSize the size of the superblocks in bits.
+     * @param blockSize      the size of the blocks in bits.
+     * @return the layout.
+     */
+    public static BlockLayout of(int superblockSize, int blockSize) {
+        if (blockSize < 2) {
+            throw new IllegalArgumentException(
+                    String.format("Too small block size (%d).", blockSize));
+        }
+        
+        if (superblockSize < blockSize || superblockSize % blockSize != 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The superblock size (%d) is not a positive " + 
+                            "multiple of the block size (%d).",
+                            superblockSize, 
+                            blockSize));
+        }
+        
+        return new BlockLayout(superblockSize, blockSize);
+    }
+    
+    /**
+     * Returns the default layout for a bit vector of 
+     * {@code numberOfRequestedBits} bits.
+     * 
+     * @param numberOfRequestedBits the number of bits in the bit vector.
+     * @return the default layout.
+     */
+    public static BlockLayout defaultFor(int numberOfRequestedBits) {
+        // Count the padding word too:
+        long numberOfLongs = numberOfRequestedBits / Long.SIZE + 
+                            (numberOfRequestedBits % Long.SIZE != 0 ? 1 : 0) +
+                             1;
+        
+        long n = numberOfLongs * Long.SIZE;
+        int k = (int) ceil(Math.log(n) / Math.log(2.0) / 2.0);
+        
+        return new BlockLayout(k * k, k);
+    }
+    
+    /**
+     * Returns the size of the superblocks in bits.
+     * 
+     * @return the superblock size.
+     */
+    public int getSuperblockSize() {
+        return superblockSize;
+    }
+    
+    /**
+     * Returns the size of the blocks in bits.
+     * 
+     * @return the block size.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+    
+    /**
+     * Returns {@code true} if and only if the rank within a block is read from
+     * the four Russians' lookup table.
+     * 
+     * @return {@code true} if the lookup table is used.
+     */
+    public boolean usesLookupTable() {
+        return blockSize <= MAXIMUM_LOOKUP_BLOCK_SIZE;
+    }
+    
+    /**
+     * Returns the number of bits needed by one {@code second} entry.
+     * 
+     * @param compactIndex whether the compact index mode is used.
+     * @return the width of a block count in bits.
+     */
+    public int getBlockCountWidth(boolean compactIndex) {
+        if (!compactIndex) {
+            return Integer.SIZE;
+        }
+        
+        int maximumBlockCount = superblockSize - blockSize;
+        
+        if (maximumBlockCount <= 0xFF) {
+            return Byte.SIZE;
+        }
+        
+        if (maximumBlockCount <= Character.MAX_VALUE) {
+            return Character.SIZE;
+        }
+        
+        return Integer.SIZE;
+    }
+    
+    /**
+     * Returns the asymptotic number of rank index bits per one bit of data.
+     * 
+     * @param compactIndex whether the compact index mode is used.
+     * @return the index overhead in bits per bit.
+     */
+    public double getIndexBitsPerBit(boolean compactIndex) {
+        return (double) Integer.SIZE / superblockSize + 
+               (double) getBlockCountWidth(compactIndex) / blockSize;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        
+        if (!(o instanceof BlockLayout)) {
+            return false;
+        }
+        
+        BlockLayout other = (BlockLayout) o;
+        
+        return superblockSize == other.superblockSize &&
+               blockSize == other.blockSize;
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * superblockSize + blockSize;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("[Block layout: superblock = %d bits, " + 
+                             "block = %d bits]",
+                             superblockSize,
+                             blockSize);
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.coderodde.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class benchmarks candidate block layouts on the host and picks the one
+ * with the lowest combined rank and select latency whose index fits a given 
+ * memory budget. The candidates are the default layout and the word-aligned 
+ * layouts with 64..512-bit blocks and 256..4096-bit superblocks.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class BlockLayoutCalibrator {
+    
+    /**
+     * The largest number of bits in a calibration bit vector. Should exceed 
+     * the last level cache so that the memory traffic of each layout shows.
+     */
+    private static final int MAXIMUM_SAMPLE_BITS = 1 << 26;
+    
+    /**
+     * The number of queries per measurement.
+     */
+    private static final int NUMBER_OF_QUERIES = 200_000;
+    
+    /**
+     * The seed of the random data, fixed so that all candidates see the same 
+     * bits and queries.
+     */
+    private static final long SEED = 13L;
+    
+    private BlockLayoutCalibrator() {
+        
+    }
+    
+    /**
+     * Returns the fastest layout for bit vectors of 
+     * {@code numberOfRequestedBits} bits whose rank index uses at most 
+     * {@code maximumIndexBitsPerBit} bits per bit. If no candidate fits the 
+     * budget, the smallest candidate is returned.
+     * 
+     * @param numberOfRequestedBits  the length of the target bit vectors.
+     * @param maximumIndexBitsPerBit the memory budget of the rank index.
+     * @param compactIndex           whether the compact index mode is used.
+     * @return the fastest layout within the budget.
+     */
+    public static BlockLayout calibrate(int numberOfRequestedBits,
+                                        double maximumIndexBitsPerBit,
+                                        boolean compactIndex) {
+        BlockLayout bestLayout = null;
+        double bestNanos = Double.POSITIVE_INFINITY;
+        
+        for (Measurement measurement : measure(numberOfRequestedBits,
+                                               maximumIndexBitsPerBit,
+                                               compactIndex)) {
+            
+            double nanos = measurement.getRankNanos() + 
+                           measurement.getSelectNanos();
+            
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                bestLayout = measurement.getLayout();
+            }
+        }
+        
+        if (bestLayout != null) {
+            return bestLayout;
+        }
+        
+        // Nothing fits the budget, fall back to the smallest candidate:
+        BlockLayout smallestLayout = null;
+        
+        for (BlockLayout layout : getCandidates(numberOfRequestedBits)) {
+            if (smallestLayout == null ||
+                    layout.getIndexBitsPerBit(compactIndex) < 
+                    smallestLayout.getIndexBitsPerBit(compactIndex)) {
+                smallestLayout = layout;
+            }
+        }
+        
+        return smallestLayout;
+    }
+    
+    /**
+     * Measures all the candidate layouts that fit the memory budget.
+     * 
+     * @param numberOfRequestedBits  the length of the target bit vectors.
+     * @param maximumIndexBitsPerBit the memory budget of the rank index.
+     * @param compactIndex           whether the compact index mode is used.
+     * @return the measurements of the candidates within the budget.
+     */
+    public static List<Measurement> measure(int numberOfRequestedBits,
+                                            double maximumIndexBitsPerBit,
+                                            boolean compactIndex) {
+        int numberOfSampleBits = 
+                Math.min(numberOfRequestedBits, MAXIMUM_SAMPLE_BITS);
+        
+        Random random = new Random(SEED);
+        long[] words = new long[(numberOfSampleBits + Long.SIZE - 1) / 
+                                Long.SIZE];
+        
+        for (int i = 0; i < words.length; i++) {
+            words[i] = random.nextLong();
+        }
+        
+        int[] rankQueries = new int[NUMBER_OF_QUERIES];
+        
+        for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+            rankQueries[i] = random.nextInt(numberOfSampleBits + 1);
+        }
+        
+        List<Measurement> measurements = new ArrayList<>();
+        
+        for (BlockLayout layout : getCandidates(numberOfRequestedBits)) {
+            if (layout.getIndexBitsPerBit(compactIndex) > 
+                    maximumIndexBitsPerBit) {
+                continue;
+            }
+            
+            RankSelectBitVector bitVector = 
+                    new RankSelectBitVector(numberOfSampleBits,
+                                            layout,
+                                            compactIndex);
+            
+            bitVector.setWords(words);
+            bitVector.buildIndices();
+            
+            if (bitVector.getNumberOfSetBits() == 0) {
+                // Nothing to select from:
+                bitVector.writeBitOn(0);
+                bitVector.buildIndices();
+            }
+            
+            int[] selectQueries = new int[NUMBER_OF_QUERIES];
+            
+            for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+                selectQueries[i] = 
+                        random.nextInt(bitVector.getNumberOfSetBits()) + 1;
+            }
+            
+            // Warm up first, then measure:
+            timeRanks(bitVector, rankQueries);
+            timeSelects(bitVector, selectQueries);
+            
+            measurements.add(
+                    new Measurement(
+                            layout,
+                            layout.getIndexBitsPerBit(compactIndex),
+                            timeRanks(bitVector, rankQueries), 
+                            timeSelects(bitVector, selectQueries)));
+        }
+        
+        return measurements;
+    }
+    
+    /**
+     * The measured latencies of a single layout.
+     */
+    public static final class Measurement {
+        
+        private final BlockLayout layout;
+        private final double indexBitsPerBit;
+        private final double rankNanos;
+        private final double selectNanos;
+        
+        Measurement(BlockLayout layout,
+                    double indexBitsPerBit, 
+                    double rankNanos,
+                    double selectNanos) {
+            this.layout = layout;
+            this.indexBitsPerBit = indexBitsPerBit;
+            this.rankNanos = rankNanos;
+            this.selectNanos = selectNanos;
+        }
+        
+        public BlockLayout getLayout() {
+            return layout;
+        }
+        
+        public double getIndexBitsPerBit() {
+            return indexBitsPerBit;
+        }
+        
+        public double getRankNanos() {
+            return rankNanos;
+        }
+        
+        public double getSelectNanos() {
+            return selectNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s: %.3f bits/bit, rank = %.1f ns, " + 
+                                 "select = %.1f ns",
+                                 layout,
+                                 indexBitsPerBit,
+                                 rankNanos, 
+                                 selectNanos);
+        }
+    }
+    
+    static List<BlockLayout> getCandidates(int numberOfRequestedBits) {
+        List<BlockLayout> candidates = new ArrayList<>();
+        candidates.add(BlockLayout.defaultFor(numberOfRequestedBits));
+        
+        for (int blockSize = Long.SIZE; blockSize <= 512; blockSize *= 2) {
+            for (int superblockSize = Math.max(256, blockSize); 
+                     superblockSize <= 4096; 
+                     superblockSize *= 2) {
+                
+                candidates.add(BlockLayout.of(superblockSize, blockSize));
+            }
+        }
+        
+        return Collections.unmodifiableList(candidates);
+    }
+    
+    // Returns the average duration of a rank query in nanoseconds.
+    private static double timeRanks(RankSelectBitVector bitVector,
+                                    int[] queries) {
+        long sum = 0L;
+        long startTime = System.nanoTime();
+        
+        for (int query : queries) {
+            sum += bitVector.rankThird(query);
+        }
+        
+        long duration = System.nanoTime() - startTime;
+        consume(sum);
+        return (double) duration / queries.length;
+    }
+    
+    // Returns the average duration of a select query in nanoseconds.
+    private static double timeSelects(RankSelectBitVector bitVector,
+                                      int[] queries) {
+        long sum = 0L;
+        long startTime = System.nanoTime();
+        
+        for (int query : queries) {
+            sum += bitVector.selectThird(query);
+        }
+        
+        long duration = System.nanoTime() - startTime;
+        consume(sum);
+        return (double) duration / queries.length;
+    }
+    
+    private static volatile long sink;
+    
+    // Keeps the JIT compiler from eliminating the timed loops.
+    private static void consume(long value) {
+        sink += value;
+    }
+}
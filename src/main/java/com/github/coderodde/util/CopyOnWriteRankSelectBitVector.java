@@ -0,0 +1,482 @@
+package com.github.coderodde.util;
+
+/**
+ * This class implements a rank/select bit vector with copy-on-write 
+ * snapshots. The bits are stored in chunks of {@value #CHUNK_WORDS} words, 
+ * each with its own per-word rank table, and a small table holds the number 
+ * of set bits before each chunk. {@link #snapshot()} freezes the current 
+ * chunks by advancing the epoch of the bit vector: a later write copies only 
+ * the chunk it touches, together with its rank table, if the chunk belongs to
+ * an older epoch. Snapshots are therefore never affected by the later writes,
+ * and long-running scans over a snapshot can run alongside the writer.
+ * <p>
+ * Taking a snapshot costs {@code O(1)} plus indexing the chunks written since
+ * the previous query, which is amortized over those writes. The first write 
+ * to a chunk after a snapshot copies {@value #CHUNK_WORDS} words. This class 
+ * supports a single writer; the snapshots may be queried from any thread 
+ * once safely published to it.
+ * <p>
+ * This class does not share the storage of {@link RankSelectBitVector}. 
+ * There, {@code wordData}, {@code first} and {@code second} are single flat 
+ * arrays: sharing their blocks between versions would add an indirection to 
+ * every query of the plain bit vector, and a write changes all the 
+ * {@code first} entries after it, so no version could share {@code first}. 
+ * Here the chunks are the unit of sharing, the per-word rank tables play the
+ * role of {@code second}, and only the small table of the chunk counts is 
+ * rebuilt per version.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class CopyOnWriteRankSelectBitVector {
+    
+    /**
+     * The number of words in a chunk.
+     */
+    static final int CHUNK_WORDS = 1024;
+    
+    /**
+     * The binary logarithm of the number of bits in a chunk.
+     */
+    private static final int CHUNK_BITS_SHIFT = 16;
+    
+    /**
+     * A chunk of words with the number of set bits before each word within 
+     * the chunk. A chunk is modified in place only by the writer and only 
+     * while its epoch equals the epoch of the writer.
+     */
+    private static final class Chunk {
+        
+        final long[] words;
+        final char[] wordRanks;
+        final long epoch;
+        int numberOfSetBits;
+        boolean dirty;
+        
+        Chunk(long[] words, 
+              char[] wordRanks, 
+              int numberOfSetBits, 
+              boolean dirty,
+              long epoch) {
+            this.words = words;
+            this.wordRanks = wordRanks;
+            this.numberOfSetBits = numberOfSetBits;
+            this.dirty = dirty;
+            this.epoch = epoch;
+        }
+        
+        Chunk copy(long epoch) {
+            return new Chunk(words.clone(), 
+                             wordRanks.clone(), 
+                             numberOfSetBits, 
+                             dirty, 
+                             epoch);
+        }
+        
+        void index() {
+            int rank = 0;
+            
+            for (int i = 0; i < words.length; i++) {
+                wordRanks[i] = (char) rank;
+                rank += Long.bitCount(words[i]);
+            }
+            
+            dirty = false;
+        }
+    }
+    
+    /**
+     * An immutable, indexed state of a 
+     * {@link CopyOnWriteRankSelectBitVector}.
+     */
+    public static final class Snapshot {
+        
+        private final Chunk[] chunks;
+        
+        /**
+         * The number of set bits before each chunk, followed by the total 
+         * number of set bits.
+         */
+        private final int[] chunkRanks;
+        
+        private final int numberOfBits;
+        
+        private Snapshot(Chunk[] chunks, int[] chunkRanks, int numberOfBits) {
+            this.chunks = chunks;
+            this.chunkRanks = chunkRanks;
+            this.numberOfBits = numberOfBits;
+        }
+        
+        /**
+         * Returns the number of bits in this snapshot.
+         * 
+         * @return the number of bits.
+         */
+        public int getNumberOfSupportedBits() {
+            return numberOfBits;
+        }
+        
+        /**
+         * Returns the number of set bits in this snapshot.
+         * 
+         * @return the number of set bits.
+         */
+        public int getNumberOfSetBits() {
+            return chunkRanks[chunks.length];
+        }
+        
+        /**
+         * Reads the {@code index}th bit.
+         * 
+         * @param index the bit index.
+         * @return {@code true} if and only if the bit is set.
+         */
+        public boolean readBit(int index) {
+            checkBitAccessIndex(index, numberOfBits);
+            return CopyOnWriteRankSelectBitVector.readBit(chunks, index);
+        }
+        
+        /**
+         * Returns the number of set bits within {@code [0, index)} in 
+         * {@code O(1)} time.
+         * 
+         * @param index the target index.
+         * @return the rank of {@code index}.
+         */
+        public int rank(int index) {
+            if (index < 0 || index > numberOfBits) {
+                throw new IndexOutOfBoundsException(
+                        String.format(
+                                "The index (%d) is not within the range " + 
+                                "[0..%d].",
+                                index,
+                                numberOfBits));
+            }
+            
+            if (index == numberOfBits) {
+                return getNumberOfSetBits();
+            }
+            
+            int chunkIndex = index >>> CHUNK_BITS_SHIFT;
+            int wordIndex = (index / Long.SIZE) % CHUNK_WORDS;
+            Chunk chunk = chunks[chunkIndex];
+            
+            return chunkRanks[chunkIndex] 
+                 + chunk.wordRanks[wordIndex]
+                 + Long.bitCount(chunk.words[wordIndex] & ~(-1L << index));
+        }
+        
+        /**
+         * Returns the index of the {@code bitIndex}th set bit in 
+         * {@code O(log n)} time.
+         * 
+         * @param bitIndex the one-based index of the target set bit.
+         * @return the index of the target set bit.
+         */
+        public int select(int bitIndex) {
+            if (bitIndex <= 0 || bitIndex > getNumberOfSetBits()) {
+                throw new IndexOutOfBoundsException(
+                        String.format(
+                                "The input selection index (%d) is not " + 
+                                "within the range [1..%d].",
+                                bitIndex,
+                                getNumberOfSetBits()));
+            }
+            
+            // The last chunk with less than 'bitIndex' set bits before it:
+            int chunkIndex = 
+                    lastIndexBelow(chunkRanks, chunks.length, bitIndex);
+            
+            Chunk chunk = chunks[chunkIndex];
+            int rankInChunk = bitIndex - chunkRanks[chunkIndex];
+            int wordIndex = lastIndexBelow(chunk.wordRanks, rankInChunk);
+            
+            return (chunkIndex << CHUNK_BITS_SHIFT)
+                 + wordIndex * Long.SIZE
+                 + RankSelectBitVector.selectInWord(
+                         chunk.words[wordIndex], 
+                         rankInChunk - chunk.wordRanks[wordIndex]);
+        }
+    }
+    
+    /**
+     * The number of bits in this bit vector.
+     */
+    private final int numberOfBits;
+    
+    /**
+     * The chunks of this bit vector. Shared with the last snapshot while 
+     * {@code chunksShared} is set.
+     */
+    private Chunk[] chunks;
+    
+    /**
+     * Whether {@code chunks} is referenced by a snapshot.
+     */
+    private boolean chunksShared;
+    
+    /**
+     * The chunks with an epoch other than this are frozen.
+     */
+    private long epoch;
+    
+    /**
+     * The number of set bits.
+     */
+    private int numberOfSetBits;
+    
+    /**
+     * The indexed state of this bit vector, or {@code null} if a write has 
+     * happened since it was built.
+     */
+    private Snapshot indexedState;
+    
+    /**
+     * Constructs a new bit vector with all the bits clear.
+     * 
+     * @param numberOfBits the number of bits to support.
+     */
+    public CopyOnWriteRankSelectBitVector(int numberOfBits) {
+        if (numberOfBits <= 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Non-positive number of bits (%d).", 
+                            numberOfBits));
+        }
+        
+        this.numberOfBits = numberOfBits;
+        
+        int numberOfWords = (numberOfBits + Long.SIZE - 1) / Long.SIZE;
+        int numberOfChunks = (numberOfWords + CHUNK_WORDS - 1) / CHUNK_WORDS;
+        
+        this.chunks = new Chunk[numberOfChunks];
+        
+        for (int i = 0; i < numberOfChunks; i++) {
+            int chunkWords = Math.min(CHUNK_WORDS, 
+                                      numberOfWords - i * CHUNK_WORDS);
+            
+            chunks[i] = new Chunk(new long[chunkWords], 
+                                  new char[chunkWords], 
+                                  0,
+                                  false,
+                                  epoch);
+        }
+    }
+    
+    /**
+     * Returns the number of bits this bit vector supports.
+     * 
+     * @return the number of bits.
+     */
+    public int getNumberOfSupportedBits() {
+        return numberOfBits;
+    }
+    
+    /**
+     * Returns the number of set bits.
+     * 
+     * @return the number of set bits.
+     */
+    public int getNumberOfSetBits() {
+        return numberOfSetBits;
+    }
+    
+    /**
+     * Writes the {@code index}th bit. If the chunk of the bit is shared with
+     * a snapshot, the chunk is copied first.
+     * 
+     * @param index the index of the target bit.
+     * @param on    the value of the bit.
+     */
+    public void writeBit(int index, boolean on) {
+        checkBitAccessIndex(index, numberOfBits);
+        
+        if (readBit(chunks, index) == on) {
+            return;
+        }
+        
+        Chunk chunk = getWritableChunk(index >>> CHUNK_BITS_SHIFT);
+        int wordIndex = (index / Long.SIZE) % CHUNK_WORDS;
+        
+        chunk.words[wordIndex] ^= 1L << index;
+        chunk.dirty = true;
+        
+        int delta = on ? 1 : -1;
+        chunk.numberOfSetBits += delta;
+        numberOfSetBits += delta;
+        indexedState = null;
+    }
+    
+    /**
+     * Turns the {@code index}th bit on.
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOn(int index) {
+        writeBit(index, true);
+    }
+    
+    /**
+     * Turns the {@code index}th bit off.
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOff(int index) {
+        writeBit(index, false);
+    }
+    
+    /**
+     * Reads the {@code index}th bit.
+     * 
+     * @param index the bit index.
+     * @return {@code true} if and only if the bit is set.
+     */
+    public boolean readBit(int index) {
+        checkBitAccessIndex(index, numberOfBits);
+        return readBit(chunks, index);
+    }
+    
+    /**
+     * Returns the number of set bits within {@code [0, index)}.
+     * 
+     * @param index the target index.
+     * @return the rank of {@code index}.
+     */
+    public int rank(int index) {
+        return getIndexedState().rank(index);
+    }
+    
+    /**
+     * Returns the index of the {@code bitIndex}th set bit.
+     * 
+     * @param bitIndex the one-based index of the target set bit.
+     * @return the index of the target set bit.
+     */
+    public int select(int bitIndex) {
+        return getIndexedState().select(bitIndex);
+    }
+    
+    /**
+     * Returns an immutable snapshot of the current state. The later writes to
+     * this bit vector do not affect the snapshot.
+     * 
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = getIndexedState();
+        
+        // Freeze the chunks and the chunk array referenced by the snapshot:
+        epoch++;
+        chunksShared = true;
+        return snapshot;
+    }
+    
+    /**
+     * Returns the indexed state, indexing the chunks written since the last 
+     * call.
+     * 
+     * @return the indexed state.
+     */
+    private Snapshot getIndexedState() {
+        if (indexedState != null) {
+            return indexedState;
+        }
+        
+        int[] chunkRanks = new int[chunks.length + 1];
+        
+        for (int i = 0; i < chunks.length; i++) {
+            Chunk chunk = chunks[i];
+            
+            if (chunk.dirty) {
+                // A dirty chunk has been written in this epoch, so it is not 
+                // referenced by any snapshot:
+                chunk.index();
+            }
+            
+            chunkRanks[i + 1] = chunkRanks[i] + chunk.numberOfSetBits;
+        }
+        
+        // Not frozen yet: the next write discards it before the first change.
+        indexedState = new Snapshot(chunks, chunkRanks, numberOfBits);
+        return indexedState;
+    }
+    
+    /**
+     * Returns the {@code chunkIndex}th chunk, copying it and the chunk array 
+     * first if they are shared with a snapshot.
+     * 
+     * @param chunkIndex the index of the chunk.
+     * @return the writable chunk.
+     */
+    private Chunk getWritableChunk(int chunkIndex) {
+        if (chunksShared) {
+            chunks = chunks.clone();
+            chunksShared = false;
+        }
+        
+        Chunk chunk = chunks[chunkIndex];
+        
+        if (chunk.epoch != epoch) {
+            chunk = chunk.copy(epoch);
+            chunks[chunkIndex] = chunk;
+        }
+        
+        return chunk;
+    }
+    
+    private static boolean readBit(Chunk[] chunks, int index) {
+        Chunk chunk = chunks[index >>> CHUNK_BITS_SHIFT];
+        long word = chunk.words[(index / Long.SIZE) % CHUNK_WORDS];
+        return (word & (1L << index)) != 0L;
+    }
+    
+    /**
+     * Returns the largest {@code i < length} such that 
+     * {@code ranks[i] < rank}. {@code ranks} is non-decreasing and 
+     * {@code ranks[0] < rank}.
+     */
+    private static int lastIndexBelow(int[] ranks, int length, int rank) {
+        int low = 0;
+        int high = length - 1;
+        
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            
+            if (ranks[middle] < rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        
+        return low;
+    }
+    
+    private static int lastIndexBelow(char[] ranks, int rank) {
+        int low = 0;
+        int high = ranks.length - 1;
+        
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            
+            if (ranks[middle] < rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        
+        return low;
+    }
+    
+    private static void checkBitAccessIndex(int index, int numberOfBits) {
+        if (index < 0 || index >= numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The bit access index (%d) is not within the " + 
+                            "range [0..%d).",
+                            index,
+                            numberOfBits));
+        }
+    }
+}
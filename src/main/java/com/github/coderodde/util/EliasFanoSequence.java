@@ -0,0 +1,298 @@
+package com.github.coderodde.util;
+
+/**
+ * This class implements an immutable Elias-Fano encoding of a non-decreasing 
+ * sequence of non-negative integers. The {@code l} least significant bits of 
+ * each element are stored verbatim in {@code lowBits}, and the remaining high 
+ * bits are stored in unary in {@code highBits}: the element {@code i} with the 
+ * high part {@code h} sets the bit {@code h + i}. With {@code l} chosen as 
+ * {@code floor(log2(u / n))}, the encoding takes at most 
+ * {@code 2 + log2(u / n)} bits per element. Every 
+ * {@link #SAMPLING_RATE}th one and zero of {@code highBits} is sampled, so 
+ * that {@link #get(int)} and {@link #rank(int)} scan only a few words.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+final class EliasFanoSequence {
+    
+    /**
+     * The distance between two sampled ones or zeros of {@code highBits}.
+     */
+    private static final int SAMPLING_RATE = 256;
+    
+    /**
+     * The number of elements.
+     */
+    private final int size;
+    
+    /**
+     * The number of the verbatim low bits per element.
+     */
+    private final int lowBitWidth;
+    
+    /**
+     * The largest element, or {@code -1} if the sequence is empty.
+     */
+    private final int lastValue;
+    
+    /**
+     * The packed low bits of the elements.
+     */
+    private final long[] lowBits;
+    
+    /**
+     * The unary coded high parts of the elements.
+     */
+    private final long[] highBits;
+    
+    /**
+     * The position in {@code highBits} of the one of the 
+     * {@code (i * SAMPLING_RATE)}th element.
+     */
+    private final int[] oneSamples;
+    
+    /**
+     * The position in {@code highBits} of the {@code (i * SAMPLING_RATE)}th 
+     * zero.
+     */
+    private final int[] zeroSamples;
+    
+    /**
+     * Encodes the first {@code size} elements of {@code values}.
+     * 
+     * @param values the non-decreasing, non-negative elements.
+     * @param size   the number of elements to encode.
+     * @throws IllegalArgumentException if the elements are negative or 
+     *                                  decreasing.
+     */
+    EliasFanoSequence(int[] values, int size) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] < 0 || (i > 0 && values[i] < values[i - 1])) {
+                throw new IllegalArgumentException(
+                        String.format(
+                                "The element %d (%d) is negative or smaller " + 
+                                "than its predecessor.", 
+                                i, 
+                                values[i]));
+            }
+        }
+        
+        this.size = size;
+        this.lastValue = size == 0 ? -1 : values[size - 1];
+        
+        long universe = (long) lastValue + 1;
+        
+        this.lowBitWidth = 
+                size == 0 || universe <= size ? 
+                0 : 
+                63 - Long.numberOfLeadingZeros(universe / size);
+        
+        long numberOfHighBits = 
+                size + (size == 0 ? 0 : (lastValue >>> lowBitWidth) + 1);
+        
+        this.lowBits = 
+                new long[(int)(((long) size * lowBitWidth + Long.SIZE - 1) /
+                               Long.SIZE)];
+        
+        // The extra word stops the scans of the zeros:
+        this.highBits = new long[(int)(numberOfHighBits / Long.SIZE) + 1];
+        
+        long lowMask = (1L << lowBitWidth) - 1;
+        
+        for (int i = 0; i < size; i++) {
+            writeLowBits(i, values[i] & lowMask);
+            
+            long position = ((long)(values[i] >>> lowBitWidth)) + i;
+            highBits[(int)(position / Long.SIZE)] |= 1L << position;
+        }
+        
+        int numberOfZeros = (int)(numberOfHighBits - size);
+        
+        this.oneSamples = new int[(size + SAMPLING_RATE - 1) / SAMPLING_RATE];
+        this.zeroSamples = 
+                new int[(numberOfZeros + SAMPLING_RATE - 1) / SAMPLING_RATE];
+        
+        int ones = 0;
+        int zeros = 0;
+        
+        for (int position = 0; position < numberOfHighBits; position++) {
+            if ((highBits[position / Long.SIZE] & (1L << position)) != 0L) {
+                if (ones % SAMPLING_RATE == 0) {
+                    oneSamples[ones / SAMPLING_RATE] = position;
+                }
+                
+                ones++;
+            } else {
+                if (zeros % SAMPLING_RATE == 0) {
+                    zeroSamples[zeros / SAMPLING_RATE] = position;
+                }
+                
+                zeros++;
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of elements.
+     * 
+     * @return the number of elements.
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the {@code index}th element, indexation starting from zero.
+     * 
+     * @param index the index of the target element.
+     * @return the target element.
+     */
+    int get(int index) {
+        int high = selectOne(index) - index;
+        return high << lowBitWidth | (int) readLowBits(index);
+    }
+    
+    /**
+     * Returns the number of elements smaller than {@code value}.
+     * 
+     * @param value the value to compare against.
+     * @return the number of smaller elements.
+     */
+    int rank(int value) {
+        if (value <= 0) {
+            return 0;
+        }
+        
+        if (value > lastValue) {
+            return size;
+        }
+        
+        int high = value >>> lowBitWidth;
+        long low = value & ((1L << lowBitWidth) - 1);
+        
+        // The elements of the high part 'high' lie between the 'high'th and 
+        // the '(high + 1)'th zero. A bucket may hold up to 2^lowBitWidth 
+        // elements for clustered inputs, so search it by bisection:
+        int fromIndex = high == 0 ? 0 : selectZero(high - 1) + 1 - high;
+        int toIndex = selectZero(high) - high;
+        
+        while (fromIndex < toIndex) {
+            int middleIndex = (fromIndex + toIndex) >>> 1;
+            
+            if (readLowBits(middleIndex) < low) {
+                fromIndex = middleIndex + 1;
+            } else {
+                toIndex = middleIndex;
+            }
+        }
+        
+        return fromIndex;
+    }
+    
+    /**
+     * Returns the number of bytes used by the encoded elements.
+     * 
+     * @return the size of the encoding.
+     */
+    long getDataBytes() {
+        return MemoryUsageReport.arrayBytes(lowBits.length, Long.BYTES) + 
+               MemoryUsageReport.arrayBytes(highBits.length, Long.BYTES);
+    }
+    
+    /**
+     * Returns the number of bytes used by the samples.
+     * 
+     * @return the size of the samples.
+     */
+    long getIndexBytes() {
+        return MemoryUsageReport.arrayBytes(oneSamples.length, 
+                                            Integer.BYTES) + 
+               MemoryUsageReport.arrayBytes(zeroSamples.length, 
+                                            Integer.BYTES);
+    }
+    
+    /**
+     * Returns the position of the {@code index}th one of {@code highBits}, 
+     * indexation starting from zero.
+     * 
+     * @param index the index of the target one.
+     * @return the position of the target one.
+     */
+    private int selectOne(int index) {
+        int position = oneSamples[index / SAMPLING_RATE];
+        int remaining = index % SAMPLING_RATE;
+        int wordIndex = position / Long.SIZE;
+        long word = highBits[wordIndex] & (-1L << position);
+        
+        for (int count = Long.bitCount(word);
+                 count <= remaining;
+                 count = Long.bitCount(word)) {
+            
+            remaining -= count;
+            word = highBits[++wordIndex];
+        }
+        
+        return wordIndex * Long.SIZE + 
+               RankSelectBitVector.selectInWord(word, remaining + 1);
+    }
+    
+    /**
+     * Returns the position of the {@code index}th zero of {@code highBits}, 
+     * indexation starting from zero.
+     * 
+     * @param index the index of the target zero.
+     * @return the position of the target zero.
+     */
+    private int selectZero(int index) {
+        int position = zeroSamples[index / SAMPLING_RATE];
+        int remaining = index % SAMPLING_RATE;
+        int wordIndex = position / Long.SIZE;
+        long word = ~highBits[wordIndex] & (-1L << position);
+        
+        for (int count = Long.bitCount(word);
+                 count <= remaining;
+                 count = Long.bitCount(word)) {
+            
+            remaining -= count;
+            word = ~highBits[++wordIndex];
+        }
+        
+        return wordIndex * Long.SIZE + 
+               RankSelectBitVector.selectInWord(word, remaining + 1);
+    }
+    
+    private long readLowBits(int index) {
+        if (lowBitWidth == 0) {
+            return 0L;
+        }
+        
+        long bitIndex = (long) index * lowBitWidth;
+        int wordIndex = (int)(bitIndex / Long.SIZE);
+        int bitOffset = (int)(bitIndex % Long.SIZE);
+        long mask = (1L << lowBitWidth) - 1;
+        long bits = lowBits[wordIndex] >>> bitOffset;
+        
+        if (bitOffset + lowBitWidth > Long.SIZE) {
+            bits |= lowBits[wordIndex + 1] << (Long.SIZE - bitOffset);
+        }
+        
+        return bits & mask;
+    }
+    
+    private void writeLowBits(int index, long bits) {
+        if (lowBitWidth == 0) {
+            return;
+        }
+        
+        long bitIndex = (long) index * lowBitWidth;
+        int wordIndex = (int)(bitIndex / Long.SIZE);
+        int bitOffset = (int)(bitIndex % Long.SIZE);
+        
+        lowBits[wordIndex] |= bits << bitOffset;
+        
+        if (bitOffset + lowBitWidth > Long.SIZE) {
+            lowBits[wordIndex + 1] |= bits >>> (Long.SIZE - bitOffset);
+        }
+    }
+}
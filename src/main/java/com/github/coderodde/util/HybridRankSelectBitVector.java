@@ -0,0 +1,1166 @@
+package com.github.coderodde.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This class implements a bit vector split into chunks of {@code 2^16} bits, 
+ * each stored in the container best suited to its density, in the manner of 
+ * the Roaring bitmaps: a sorted array of the set bit offsets for sparse 
+ * chunks, a plain bitmap for dense chunks, and a list of runs for chunks 
+ * consisting of a few runs. Empty chunks take no container at all. A table of 
+ * the set bit counts preceding each chunk turns a rank into a rank within a 
+ * single container, and a select into a binary search over the table followed 
+ * by a select within a single container. The table is recomputed lazily from 
+ * the first chunk whose count changed.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class HybridRankSelectBitVector {
+    
+    /**
+     * The binary logarithm of the number of bits in a chunk.
+     */
+    private static final int CHUNK_BITS = 16;
+    
+    /**
+     * The number of bits in a chunk.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    
+    /**
+     * The number of words in a bitmap container.
+     */
+    private static final int BITMAP_WORDS = CHUNK_SIZE / Long.SIZE;
+    
+    /**
+     * The maximum number of set bits in an array container. Beyond it, the 
+     * array would take more space than a bitmap.
+     */
+    private static final int ARRAY_MAX_SIZE = 4096;
+    
+    /**
+     * The number of bits in this bit vector.
+     */
+    private final int numberOfBits;
+    
+    /**
+     * The containers of the chunks. An empty chunk has no container.
+     */
+    private final Container[] containers;
+    
+    /**
+     * The {@code i}th entry is the number of set bits in the chunks preceding 
+     * the {@code i}th chunk. The last entry is the total count.
+     */
+    private final int[] chunkRanks;
+    
+    /**
+     * The entries of {@code chunkRanks} after this chunk index are stale.
+     */
+    private int firstStaleChunkIndex;
+    
+    /**
+     * The number of bits set to one (1).
+     */
+    private int numberOfSetBits;
+    
+    /**
+     * Constructs a new bit vector with all the bits cleared.
+     * 
+     * @param numberOfBits the number of bits to support.
+     */
+    public HybridRankSelectBitVector(int numberOfBits) {
+        if (numberOfBits < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Negative number of bits (%d).", 
+                                  numberOfBits));
+        }
+        
+        int numberOfChunks = 
+                (int)(((long) numberOfBits + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        
+        this.numberOfBits = numberOfBits;
+        this.containers = new Container[numberOfChunks];
+        this.chunkRanks = new int[numberOfChunks + 1];
+        this.firstStaleChunkIndex = numberOfChunks;
+    }
+    
+    /**
+     * Returns a copy of {@code bitVector} with each chunk stored in the 
+     * smallest container.
+     * 
+     * @param bitVector the bit vector to copy.
+     * @return the hybrid bit vector.
+     */
+    public static HybridRankSelectBitVector of(RankSelectBitVector bitVector) {
+        int numberOfBits = bitVector.getNumberOfSupportedBits();
+        HybridRankSelectBitVector hybrid = 
+                new HybridRankSelectBitVector(numberOfBits);
+        
+        int numberOfDataWords = (numberOfBits + Long.SIZE - 1) / Long.SIZE;
+        
+        for (int chunkIndex = 0;
+                 chunkIndex < hybrid.containers.length;
+                 chunkIndex++) {
+            
+            long[] words = new long[BITMAP_WORDS];
+            int wordOffset = chunkIndex * BITMAP_WORDS;
+            
+            for (int i = 0;
+                     i < BITMAP_WORDS && wordOffset + i < numberOfDataWords;
+                     i++) {
+                
+                words[i] = bitVector.readWord(wordOffset + i);
+            }
+            
+            hybrid.containers[chunkIndex] = fromWords(words, true);
+        }
+        
+        hybrid.numberOfSetBits = bitVector.getNumberOfSetBits();
+        hybrid.firstStaleChunkIndex = 0;
+        return hybrid;
+    }
+    
+    /**
+     * Returns the number of bits this bit vector supports.
+     * 
+     * @return the number of bits.
+     */
+    public int getNumberOfSupportedBits() {
+        return numberOfBits;
+    }
+    
+    /**
+     * Returns the number of bits that are set.
+     * 
+     * @return the number of set bits.
+     */
+    public int getNumberOfSetBits() {
+        return numberOfSetBits;
+    }
+    
+    /**
+     * Sets the {@code index}th bit to one (1).
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOn(int index) {
+        writeBit(index, true);
+    }
+    
+    /**
+     * Sets the {@code index}th bit to zero (0).
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOff(int index) {
+        writeBit(index, false);
+    }
+    
+    /**
+     * Writes the {@code index}th bit to {@code on}. A write may convert the 
+     * container of the chunk: an array growing beyond 4096 set bits becomes 
+     * a bitmap, a bitmap shrinking to 4096 set bits becomes an array, and a 
+     * list of runs becomes either.
+     * 
+     * @param index the index of the target bit.
+     * @param on    the value of the bit.
+     */
+    public void writeBit(int index, boolean on) {
+        checkBitAccessIndex(index);
+        
+        int chunkIndex = index >>> CHUNK_BITS;
+        int offset = index & (CHUNK_SIZE - 1);
+        Container container = containers[chunkIndex];
+        int previousCardinality = getCardinality(container);
+        
+        if (on) {
+            container = container == null ? 
+                        new ArrayContainer(new char[4], 0).add(offset) : 
+                        container.add(offset);
+        } else if (container != null) {
+            container = container.remove(offset);
+        }
+        
+        containers[chunkIndex] = container;
+        
+        int delta = getCardinality(container) - previousCardinality;
+        
+        if (delta != 0) {
+            numberOfSetBits += delta;
+            firstStaleChunkIndex = Math.min(firstStaleChunkIndex, chunkIndex);
+        }
+    }
+    
+    /**
+     * Reads the {@code index}th bit.
+     * 
+     * @param index the index of the target bit.
+     * @return {@code true} if and only if the target bit is set.
+     */
+    public boolean readBit(int index) {
+        checkBitAccessIndex(index);
+        
+        Container container = containers[index >>> CHUNK_BITS];
+        
+        return container != null
+                && container.contains(index & (CHUNK_SIZE - 1));
+    }
+    
+    /**
+     * Returns the number of set bits within {@code [0, index)}.
+     * 
+     * @param index the target index.
+     * @return the rank of {@code index}.
+     */
+    public int rank(int index) {
+        if (index < 0 || index > numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The index (%d) is not within the range " + 
+                            "[0..%d].", 
+                            index, 
+                            numberOfBits));
+        }
+        
+        if (index == numberOfBits) {
+            return numberOfSetBits;
+        }
+        
+        updateChunkRanks();
+        
+        int chunkIndex = index >>> CHUNK_BITS;
+        Container container = containers[chunkIndex];
+        
+        return chunkRanks[chunkIndex] + 
+               (container == null ? 
+                0 : 
+                container.rank(index & (CHUNK_SIZE - 1)));
+    }
+    
+    /**
+     * Returns the index of the {@code bitIndex}th set bit.
+     * 
+     * @param bitIndex the one-based index of the target set bit.
+     * @return the index of the target set bit.
+     */
+    public int select(int bitIndex) {
+        if (bitIndex <= 0 || bitIndex > numberOfSetBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The input selection index (%d) is not within " + 
+                            "the range [1..%d].", 
+                            bitIndex, 
+                            numberOfSetBits));
+        }
+        
+        updateChunkRanks();
+        
+        // Invariant: chunkRanks[low] < bitIndex <= chunkRanks[high].
+        int low = 0;
+        int high = containers.length;
+        
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            
+            if (chunkRanks[middle] < bitIndex) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        
+        return (low << CHUNK_BITS) + 
+               containers[low].select(bitIndex - 1 - chunkRanks[low]);
+    }
+    
+    /**
+     * Returns the index of the first set bit at or after {@code fromIndex}, 
+     * or {@code -1} if there is no such bit.
+     * 
+     * @param fromIndex the index at which to start.
+     * @return the index of the next set bit or {@code -1}.
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex < 0 || fromIndex > numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The index (%d) is not within the range " + 
+                            "[0..%d].", 
+                            fromIndex, 
+                            numberOfBits));
+        }
+        
+        int offset = fromIndex & (CHUNK_SIZE - 1);
+        
+        for (int chunkIndex = fromIndex >>> CHUNK_BITS;
+                 chunkIndex < containers.length;
+                 chunkIndex++, offset = 0) {
+            
+            Container container = containers[chunkIndex];
+            
+            if (container != null) {
+                int nextOffset = container.next(offset);
+                
+                if (nextOffset >= 0) {
+                    return (chunkIndex << CHUNK_BITS) + nextOffset;
+                }
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Passes the indices of all the set bits to {@code action} in ascending 
+     * order.
+     * 
+     * @param action the action to perform on each set bit index.
+     */
+    public void forEachSetBit(IntConsumer action) {
+        for (int chunkIndex = 0; chunkIndex < containers.length; chunkIndex++) {
+            if (containers[chunkIndex] != null) {
+                containers[chunkIndex].forEach(chunkIndex << CHUNK_BITS, 
+                                               action);
+            }
+        }
+    }
+    
+    /**
+     * Stores the bitwise AND of this bit vector and {@code other} in this bit 
+     * vector, container by container.
+     * 
+     * @param other the right operand.
+     */
+    public void and(HybridRankSelectBitVector other) {
+        checkSameLength(other);
+        
+        for (int i = 0; i < containers.length; i++) {
+            containers[i] = and(containers[i], other.containers[i]);
+        }
+        
+        recountSetBits();
+    }
+    
+    /**
+     * Stores the bitwise OR of this bit vector and {@code other} in this bit 
+     * vector, container by container.
+     * 
+     * @param other the right operand.
+     */
+    public void or(HybridRankSelectBitVector other) {
+        checkSameLength(other);
+        
+        for (int i = 0; i < containers.length; i++) {
+            containers[i] = or(containers[i], other.containers[i]);
+        }
+        
+        recountSetBits();
+    }
+    
+    /**
+     * Converts each container to the smallest of the three kinds. The writes 
+     * never create the lists of runs, so this is worthwhile after writing 
+     * long runs of bits.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < containers.length; i++) {
+            if (containers[i] != null) {
+                long[] words = new long[BITMAP_WORDS];
+                containers[i].orInto(words);
+                containers[i] = fromWords(words, true);
+            }
+        }
+    }
+    
+    /**
+     * Returns a report on the heap memory used by this bit vector. The 
+     * containers are reported as the data and the table of the chunk counts 
+     * as the rank index.
+     * 
+     * @return the memory usage report.
+     */
+    public MemoryUsageReport memoryUsage() {
+        // Assumes compressed object pointers:
+        long dataBytes = MemoryUsageReport.arrayBytes(containers.length, 
+                                                      Integer.BYTES);
+        long rankIndexBytes = MemoryUsageReport.arrayBytes(chunkRanks.length, 
+                                                           Integer.BYTES);
+        
+        for (Container container : containers) {
+            if (container != null) {
+                dataBytes += container.getDataBytes();
+                rankIndexBytes += container.getIndexBytes();
+            }
+        }
+        
+        return new MemoryUsageReport(numberOfBits, 
+                                     dataBytes, 
+                                     rankIndexBytes, 
+                                     0L, 
+                                     0L);
+    }
+    
+    @Override
+    public String toString() {
+        int arrays = 0;
+        int bitmaps = 0;
+        int runs = 0;
+        
+        for (Container container : containers) {
+            if (container instanceof ArrayContainer) {
+                arrays++;
+            } else if (container instanceof BitmapContainer) {
+                bitmaps++;
+            } else if (container instanceof RunContainer) {
+                runs++;
+            }
+        }
+        
+        return String.format(
+                "[Hybrid bit vector, size = %d bits, set bits = %d, " + 
+                "array containers = %d, bitmap containers = %d, " + 
+                "run containers = %d]", 
+                numberOfBits, 
+                numberOfSetBits, 
+                arrays, 
+                bitmaps, 
+                runs);
+    }
+    
+    /**
+     * Returns the kind of the container of the {@code chunkIndex}th chunk: 
+     * {@code "array"}, {@code "bitmap"}, {@code "run"} or {@code null} for an 
+     * empty chunk.
+     * 
+     * @param chunkIndex the index of the target chunk.
+     * @return the container kind.
+     */
+    String getContainerKind(int chunkIndex) {
+        Container container = containers[chunkIndex];
+        
+        if (container instanceof ArrayContainer) {
+            return "array";
+        }
+        
+        if (container instanceof BitmapContainer) {
+            return "bitmap";
+        }
+        
+        return container == null ? null : "run";
+    }
+    
+    /**
+     * Recomputes the stale entries of {@code chunkRanks}.
+     */
+    private void updateChunkRanks() {
+        for (int i = firstStaleChunkIndex; i < containers.length; i++) {
+            chunkRanks[i + 1] = chunkRanks[i] + getCardinality(containers[i]);
+        }
+        
+        firstStaleChunkIndex = containers.length;
+    }
+    
+    private void recountSetBits() {
+        numberOfSetBits = 0;
+        
+        for (Container container : containers) {
+            numberOfSetBits += getCardinality(container);
+        }
+        
+        firstStaleChunkIndex = 0;
+    }
+    
+    private static int getCardinality(Container container) {
+        return container == null ? 0 : container.getCardinality();
+    }
+    
+    /**
+     * Returns the intersection of two containers.
+     * 
+     * @param container1 the first container, or {@code null} if empty.
+     * @param container2 the second container, or {@code null} if empty.
+     * @return the intersection, or {@code null} if empty.
+     */
+    private static Container and(Container container1, Container container2) {
+        if (container1 == null || container2 == null) {
+            return null;
+        }
+        
+        if (container2 instanceof ArrayContainer) {
+            Container swap = container1;
+            container1 = container2;
+            container2 = swap;
+        }
+        
+        if (container1 instanceof ArrayContainer) {
+            // Probe the other container with each element of the array:
+            ArrayContainer array = (ArrayContainer) container1;
+            char[] values = new char[array.size];
+            int size = 0;
+            
+            for (int i = 0; i < array.size; i++) {
+                if (container2.contains(array.values[i])) {
+                    values[size++] = array.values[i];
+                }
+            }
+            
+            return size == 0 ? null : new ArrayContainer(values, size);
+        }
+        
+        long[] words1 = new long[BITMAP_WORDS];
+        long[] words2 = new long[BITMAP_WORDS];
+        
+        container1.orInto(words1);
+        container2.orInto(words2);
+        
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            words1[i] &= words2[i];
+        }
+        
+        return fromWords(words1, false);
+    }
+    
+    /**
+     * Returns the union of two containers. May return {@code container1}, 
+     * which belongs to the receiver, but never returns {@code container2}, 
+     * which belongs to another bit vector and may be modified later.
+     * 
+     * @param container1 the first container, or {@code null} if empty.
+     * @param container2 the second container, or {@code null} if empty.
+     * @return the union, or {@code null} if empty.
+     */
+    private static Container or(Container container1, Container container2) {
+        if (container2 == null) {
+            return container1;
+        }
+        
+        if (container1 == null) {
+            return container2.copy();
+        }
+        
+        if (container1 instanceof ArrayContainer
+                && container2 instanceof ArrayContainer) {
+            ArrayContainer array1 = (ArrayContainer) container1;
+            ArrayContainer array2 = (ArrayContainer) container2;
+            
+            if (array1.size + array2.size <= ARRAY_MAX_SIZE) {
+                return merge(array1, array2);
+            }
+        }
+        
+        long[] words = new long[BITMAP_WORDS];
+        
+        container1.orInto(words);
+        container2.orInto(words);
+        
+        return fromWords(words, false);
+    }
+    
+    /**
+     * Merges two array containers, dropping the duplicates.
+     * 
+     * @param array1 the first array container.
+     * @param array2 the second array container.
+     * @return the merged array container.
+     */
+    private static ArrayContainer merge(ArrayContainer array1, 
+                                        ArrayContainer array2) {
+        char[] values = new char[array1.size + array2.size];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        
+        while (i < array1.size && j < array2.size) {
+            char value1 = array1.values[i];
+            char value2 = array2.values[j];
+            
+            if (value1 <= value2) {
+                values[size++] = value1;
+                i++;
+                
+                if (value1 == value2) {
+                    j++;
+                }
+            } else {
+                values[size++] = value2;
+                j++;
+            }
+        }
+        
+        while (i < array1.size) {
+            values[size++] = array1.values[i++];
+        }
+        
+        while (j < array2.size) {
+            values[size++] = array2.values[j++];
+        }
+        
+        return new ArrayContainer(values, size);
+    }
+    
+    /**
+     * Returns the smallest container holding the bits of {@code words}. The 
+     * returned bitmap container may take over {@code words}.
+     * 
+     * @param words     the bits of a chunk.
+     * @param allowRuns whether to consider a list of runs.
+     * @return the container, or {@code null} if no bit is set.
+     */
+    private static Container fromWords(long[] words, boolean allowRuns) {
+        int cardinality = 0;
+        int numberOfRuns = 0;
+        long previousBit = 0L;
+        
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+            // A run starts at each set bit preceded by a clear bit:
+            numberOfRuns += Long.bitCount(word & ~(word << 1 | previousBit));
+            previousBit = word >>> (Long.SIZE - 1);
+        }
+        
+        if (cardinality == 0) {
+            return null;
+        }
+        
+        if (allowRuns
+                && (long) numberOfRuns * RunContainer.BYTES_PER_RUN
+                    < Math.min((long) cardinality * Character.BYTES, 
+                               (long) BITMAP_WORDS * Long.BYTES)) {
+            return new RunContainer(words, numberOfRuns, cardinality);
+        }
+        
+        if (cardinality > ARRAY_MAX_SIZE) {
+            return new BitmapContainer(words, cardinality);
+        }
+        
+        char[] values = new char[cardinality];
+        int size = 0;
+        
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+            for (long word = words[i]; word != 0L; word &= word - 1) {
+                values[size++] = 
+                        (char)(i * Long.SIZE + 
+                               Long.numberOfTrailingZeros(word));
+            }
+        }
+        
+        return new ArrayContainer(values, size);
+    }
+    
+    /**
+     * Returns the offset of the first set bit in {@code words} at or after 
+     * {@code fromOffset}, or {@code -1} if there is none.
+     * 
+     * @param words      the bits of a chunk.
+     * @param fromOffset the offset at which to start.
+     * @return the offset of the next set bit or {@code -1}.
+     */
+    private static int nextSetBit(long[] words, int fromOffset) {
+        int wordIndex = fromOffset / Long.SIZE;
+        long word = words[wordIndex] & (-1L << fromOffset);
+        
+        while (word == 0L) {
+            if (++wordIndex == BITMAP_WORDS) {
+                return -1;
+            }
+            
+            word = words[wordIndex];
+        }
+        
+        return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+    }
+    
+    /**
+     * Returns the offset of the first clear bit in {@code words} at or after 
+     * {@code fromOffset}, or {@link #CHUNK_SIZE} if there is none.
+     * 
+     * @param words      the bits of a chunk.
+     * @param fromOffset the offset at which to start.
+     * @return the offset of the next clear bit or {@link #CHUNK_SIZE}.
+     */
+    private static int nextClearBit(long[] words, int fromOffset) {
+        int wordIndex = fromOffset / Long.SIZE;
+        long word = ~words[wordIndex] & (-1L << fromOffset);
+        
+        while (word == 0L) {
+            if (++wordIndex == BITMAP_WORDS) {
+                return CHUNK_SIZE;
+            }
+            
+            word = ~words[wordIndex];
+        }
+        
+        return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+    }
+    
+    private void checkBitAccessIndex(int index) {
+        if (index < 0 || index >= numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The bit access index (%d) is not within the " + 
+                            "range [0..%d).", 
+                            index, 
+                            numberOfBits));
+        }
+    }
+    
+    private void checkSameLength(HybridRankSelectBitVector other) {
+        if (other.numberOfBits != numberOfBits) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Bit vector length mismatch: %d vs. %d.", 
+                            numberOfBits, 
+                            other.numberOfBits));
+        }
+    }
+    
+    /**
+     * The set bits of a single chunk. All the offsets are relative to the 
+     * chunk start.
+     */
+    private abstract static class Container {
+        
+        abstract int getCardinality();
+        
+        abstract boolean contains(int offset);
+        
+        /**
+         * Returns the number of set bits before {@code offset}.
+         */
+        abstract int rank(int offset);
+        
+        /**
+         * Returns the offset of the set bit preceded by {@code rank} set 
+         * bits.
+         */
+        abstract int select(int rank);
+        
+        /**
+         * Returns the offset of the first set bit at or after 
+         * {@code offset}, or {@code -1} if there is none.
+         */
+        abstract int next(int offset);
+        
+        /**
+         * Sets the bit at {@code offset} and returns the container now 
+         * holding the bits: this one or a converted one.
+         */
+        abstract Container add(int offset);
+        
+        /**
+         * Clears the bit at {@code offset} and returns the container now 
+         * holding the bits: this one, a converted one or {@code null} if no 
+         * bit remains.
+         */
+        abstract Container remove(int offset);
+        
+        /**
+         * Sets the bits of this container in {@code words}.
+         */
+        abstract void orInto(long[] words);
+        
+        abstract void forEach(int chunkStartIndex, IntConsumer action);
+        
+        /**
+         * Returns a container that can be modified independently of this 
+         * one.
+         */
+        abstract Container copy();
+        
+        abstract long getDataBytes();
+        
+        long getIndexBytes() {
+            return 0L;
+        }
+    }
+    
+    /**
+     * Stores the sorted offsets of the set bits.
+     */
+    private static final class ArrayContainer extends Container {
+        
+        private char[] values;
+        private int size;
+        
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+        
+        @Override
+        int getCardinality() {
+            return size;
+        }
+        
+        @Override
+        boolean contains(int offset) {
+            return Arrays.binarySearch(values, 0, size, (char) offset) >= 0;
+        }
+        
+        @Override
+        int rank(int offset) {
+            int i = Arrays.binarySearch(values, 0, size, (char) offset);
+            return i >= 0 ? i : -i - 1;
+        }
+        
+        @Override
+        int select(int rank) {
+            return values[rank];
+        }
+        
+        @Override
+        int next(int offset) {
+            int i = rank(offset);
+            return i < size ? values[i] : -1;
+        }
+        
+        @Override
+        Container add(int offset) {
+            int i = Arrays.binarySearch(values, 0, size, (char) offset);
+            
+            if (i >= 0) {
+                return this;
+            }
+            
+            if (size == ARRAY_MAX_SIZE) {
+                long[] words = new long[BITMAP_WORDS];
+                orInto(words);
+                return new BitmapContainer(words, size).add(offset);
+            }
+            
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 
+                                       Math.min(ARRAY_MAX_SIZE, 2 * size));
+            }
+            
+            i = -i - 1;
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = (char) offset;
+            size++;
+            return this;
+        }
+        
+        @Override
+        Container remove(int offset) {
+            int i = Arrays.binarySearch(values, 0, size, (char) offset);
+            
+            if (i < 0) {
+                return this;
+            }
+            
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            return size == 0 ? null : this;
+        }
+        
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < size; i++) {
+                words[values[i] / Long.SIZE] |= 1L << values[i];
+            }
+        }
+        
+        @Override
+        void forEach(int chunkStartIndex, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(chunkStartIndex + values[i]);
+            }
+        }
+        
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, size), size);
+        }
+        
+        @Override
+        long getDataBytes() {
+            return MemoryUsageReport.arrayBytes(values.length, 
+                                                Character.BYTES);
+        }
+    }
+    
+    /**
+     * Stores the bits of the chunk verbatim.
+     */
+    private static final class BitmapContainer extends Container {
+        
+        private final long[] words;
+        private int cardinality;
+        
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+        
+        @Override
+        int getCardinality() {
+            return cardinality;
+        }
+        
+        @Override
+        boolean contains(int offset) {
+            return (words[offset / Long.SIZE] & (1L << offset)) != 0L;
+        }
+        
+        @Override
+        int rank(int offset) {
+            int wordIndex = offset / Long.SIZE;
+            int rank = 0;
+            
+            for (int i = 0; i < wordIndex; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+            
+            return rank + 
+                   Long.bitCount(words[wordIndex] & ((1L << offset) - 1));
+        }
+        
+        @Override
+        int select(int rank) {
+            int wordIndex = 0;
+            
+            for (int count = Long.bitCount(words[0]);
+                     count <= rank;
+                     count = Long.bitCount(words[++wordIndex])) {
+                
+                rank -= count;
+            }
+            
+            return wordIndex * Long.SIZE + 
+                   RankSelectBitVector.selectInWord(words[wordIndex], 
+                                                    rank + 1);
+        }
+        
+        @Override
+        int next(int offset) {
+            return nextSetBit(words, offset);
+        }
+        
+        @Override
+        Container add(int offset) {
+            if (!contains(offset)) {
+                words[offset / Long.SIZE] |= 1L << offset;
+                cardinality++;
+            }
+            
+            return this;
+        }
+        
+        @Override
+        Container remove(int offset) {
+            if (!contains(offset)) {
+                return this;
+            }
+            
+            words[offset / Long.SIZE] &= ~(1L << offset);
+            cardinality--;
+            
+            return cardinality > ARRAY_MAX_SIZE ? 
+                   this : 
+                   fromWords(words, false);
+        }
+        
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] |= this.words[i];
+            }
+        }
+        
+        @Override
+        void forEach(int chunkStartIndex, IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                for (long word = words[i]; word != 0L; word &= word - 1) {
+                    action.accept(chunkStartIndex + 
+                                  i * Long.SIZE + 
+                                  Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+        
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+        
+        @Override
+        long getDataBytes() {
+            return MemoryUsageReport.arrayBytes(words.length, Long.BYTES);
+        }
+    }
+    
+    /**
+     * Stores the runs of set bits as their starting offsets and lengths, and 
+     * the number of set bits preceding each run for the rank and the select. 
+     * Immutable: a write converts it to an array or a bitmap container.
+     */
+    private static final class RunContainer extends Container {
+        
+        /**
+         * A run takes a starting offset, a length and a preceding count.
+         */
+        static final int BYTES_PER_RUN = 
+                2 * Character.BYTES + Integer.BYTES;
+        
+        private final char[] runStarts;
+        
+        /**
+         * The lengths of the runs minus one, so that a run may span the 
+         * entire chunk.
+         */
+        private final char[] runLengths;
+        
+        private final int[] runRanks;
+        private final int cardinality;
+        
+        RunContainer(long[] words, int numberOfRuns, int cardinality) {
+            this.runStarts = new char[numberOfRuns];
+            this.runLengths = new char[numberOfRuns];
+            this.runRanks = new int[numberOfRuns];
+            this.cardinality = cardinality;
+            
+            int rank = 0;
+            int offset = nextSetBit(words, 0);
+            
+            for (int run = 0; run < numberOfRuns; run++) {
+                int runEnd = nextClearBit(words, offset);
+                
+                runStarts[run] = (char) offset;
+                runLengths[run] = (char)(runEnd - offset - 1);
+                runRanks[run] = rank;
+                rank += runEnd - offset;
+                
+                if (runEnd < CHUNK_SIZE) {
+                    offset = nextSetBit(words, runEnd);
+                }
+            }
+        }
+        
+        @Override
+        int getCardinality() {
+            return cardinality;
+        }
+        
+        @Override
+        boolean contains(int offset) {
+            int run = findRun(offset);
+            return run >= 0 && offset <= runStarts[run] + runLengths[run];
+        }
+        
+        @Override
+        int rank(int offset) {
+            int run = findRun(offset);
+            
+            if (run < 0) {
+                return 0;
+            }
+            
+            return runRanks[run] + 
+                   Math.min(offset - runStarts[run], runLengths[run] + 1);
+        }
+        
+        @Override
+        int select(int rank) {
+            int run = Arrays.binarySearch(runRanks, rank);
+            
+            if (run < 0) {
+                run = -run - 2;
+            }
+            
+            return runStarts[run] + rank - runRanks[run];
+        }
+        
+        @Override
+        int next(int offset) {
+            int run = findRun(offset);
+            
+            if (run >= 0 && offset <= runStarts[run] + runLengths[run]) {
+                return offset;
+            }
+            
+            return run + 1 < runStarts.length ? runStarts[run + 1] : -1;
+        }
+        
+        @Override
+        Container add(int offset) {
+            return contains(offset) ? this : toMutable().add(offset);
+        }
+        
+        @Override
+        Container remove(int offset) {
+            return contains(offset) ? toMutable().remove(offset) : this;
+        }
+        
+        @Override
+        void orInto(long[] words) {
+            for (int run = 0; run < runStarts.length; run++) {
+                int from = runStarts[run];
+                int to = from + runLengths[run] + 1;
+                int fromWordIndex = from / Long.SIZE;
+                int toWordIndex = (to - 1) / Long.SIZE;
+                
+                for (int i = fromWordIndex; i <= toWordIndex; i++) {
+                    long mask = -1L;
+                    
+                    if (i == fromWordIndex) {
+                        mask &= -1L << from;
+                    }
+                    
+                    if (i == toWordIndex) {
+                        mask &= -1L >>> -to;
+                    }
+                    
+                    words[i] |= mask;
+                }
+            }
+        }
+        
+        @Override
+        void forEach(int chunkStartIndex, IntConsumer action) {
+            for (int run = 0; run < runStarts.length; run++) {
+                int to = runStarts[run] + runLengths[run] + 1;
+                
+                for (int offset = runStarts[run]; offset < to; offset++) {
+                    action.accept(chunkStartIndex + offset);
+                }
+            }
+        }
+        
+        @Override
+        Container copy() {
+            return this;
+        }
+        
+        @Override
+        long getDataBytes() {
+            return MemoryUsageReport.arrayBytes(runStarts.length, 
+                                                Character.BYTES) + 
+                   MemoryUsageReport.arrayBytes(runLengths.length, 
+                                                Character.BYTES);
+        }
+        
+        @Override
+        long getIndexBytes() {
+            return MemoryUsageReport.arrayBytes(runRanks.length, 
+                                                Integer.BYTES);
+        }
+        
+        /**
+         * Returns the index of the last run starting at or before 
+         * {@code offset}, or {@code -1} if there is none.
+         */
+        private int findRun(int offset) {
+            int run = Arrays.binarySearch(runStarts, (char) offset);
+            return run >= 0 ? run : -run - 2;
+        }
+        
+        private Container toMutable() {
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words);
+            return fromWords(words, false);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.coderodde.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JDK Flight Recorder event emitted around each index rebuild of a 
+ * {@link RankSelectBitVector}.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+@Name("com.github.coderodde.util.IndexRebuild")
+@Label("Rank/Select Index Rebuild")
+@Category({ "Rank/Select Bit Vector" })
+@Description("Rebuild of the rank/select index of a bit vector.")
+final class IndexRebuildEvent extends Event {
+    
+    @Label("Number of Bits")
+    int numberOfBits;
+    
+    @Label("Number of Set Bits")
+    int numberOfSetBits;
+    
+    @Label("Triggered by Query")
+    @Description("Whether a query on a modified bit vector caused the rebuild.")
+    boolean triggeredByQuery;
+}
@@ -0,0 +1,135 @@
+package com.github.coderodde.util;
+
+/**
+ * This class describes the heap memory used by a bit vector. All the sizes are 
+ * in bytes and include the array headers. The lookup tables may be shared by 
+ * many bit vectors, so they are reported separately from the per-instance 
+ * index.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class MemoryUsageReport {
+    
+    /**
+     * The assumed size of an array header on a 64-bit JVM with compressed 
+     * object pointers.
+     */
+    static final long ARRAY_HEADER_BYTES = 16L;
+    
+    private final long numberOfBits;
+    private final long dataBytes;
+    private final long rankIndexBytes;
+    private final long selectIndexBytes;
+    private final long lookupTableBytes;
+    
+    MemoryUsageReport(long numberOfBits,
+                      long dataBytes,
+                      long rankIndexBytes,
+                      long selectIndexBytes,
+                      long lookupTableBytes) {
+        this.numberOfBits = numberOfBits;
+        this.dataBytes = dataBytes;
+        this.rankIndexBytes = rankIndexBytes;
+        this.selectIndexBytes = selectIndexBytes;
+        this.lookupTableBytes = lookupTableBytes;
+    }
+    
+    /**
+     * Returns the number of bytes used by the bit storage.
+     * 
+     * @return the size of the bit storage.
+     */
+    public long getDataBytes() {
+        return dataBytes;
+    }
+    
+    /**
+     * Returns the number of bytes used by the rank index counters.
+     * 
+     * @return the size of the rank index.
+     */
+    public long getRankIndexBytes() {
+        return rankIndexBytes;
+    }
+    
+    /**
+     * Returns the number of bytes used by the structures that serve only the 
+     * select queries.
+     * 
+     * @return the size of the select index.
+     */
+    public long getSelectIndexBytes() {
+        return selectIndexBytes;
+    }
+    
+    /**
+     * Returns the number of bytes used by the lookup tables. The lookup tables
+     * may be shared with other bit vectors.
+     * 
+     * @return the size of the lookup tables.
+     */
+    public long getLookupTableBytes() {
+        return lookupTableBytes;
+    }
+    
+    /**
+     * Returns the total number of bytes, including the lookup tables.
+     * 
+     * @return the total size.
+     */
+    public long getTotalBytes() {
+        return dataBytes + rankIndexBytes + selectIndexBytes + lookupTableBytes;
+    }
+    
+    /**
+     * Returns the number of index bits (rank and select, without the shared 
+     * lookup tables) per one supported bit.
+     * 
+     * @return the index overhead in bits per bit.
+     */
+    public double getIndexBitsPerBit() {
+        return bitsPerBit(rankIndexBytes + selectIndexBytes);
+    }
+    
+    /**
+     * Returns the total number of bits per one supported bit, including the 
+     * lookup tables.
+     * 
+     * @return the total size in bits per bit.
+     */
+    public double getTotalBitsPerBit() {
+        return bitsPerBit(getTotalBytes());
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "[Memory usage: data = %d B, rank index = %d B, " + 
+                "select index = %d B, lookup tables = %d B, " + 
+                "index = %.3f bits/bit, total = %.3f bits/bit]",
+                dataBytes,
+                rankIndexBytes,
+                selectIndexBytes,
+                lookupTableBytes,
+                getIndexBitsPerBit(),
+                getTotalBitsPerBit());
+    }
+    
+    /**
+     * Returns the number of bytes occupied by an array.
+     * 
+     * @param length      the length of the array.
+     * @param elementSize the size of an array component in bytes.
+     * @return the size of the array in bytes.
+     */
+    static long arrayBytes(int length, int elementSize) {
+        long bytes = ARRAY_HEADER_BYTES + (long) length * elementSize;
+        // Arrays are 8-byte aligned:
+        return (bytes + 7L) & ~7L;
+    }
+    
+    private double bitsPerBit(long bytes) {
+        return (double)(bytes * Byte.SIZE) / numberOfBits;
+    }
+}
@@ -0,0 +1,305 @@
+package com.github.coderodde.util;
+
+import java.util.BitSet;
+
+/**
+ * This class implements a bit vector partitioned into shards, each of which is
+ * a separately indexed {@link RankSelectBitVector}. A small table of the 
+ * number of set bits before each shard routes the global ranks and selects to
+ * the right shard. A write marks only its shard dirty, so rebuilding after a 
+ * write touches a single shard instead of the whole bit vector, and 
+ * {@link #buildIndices()} rebuilds all the dirty shards in parallel.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class PartitionedRankSelectBitVector {
+    
+    /**
+     * The default number of bits in a shard.
+     */
+    public static final int DEFAULT_SHARD_SIZE = 1 << 24;
+    
+    /**
+     * The total number of bits.
+     */
+    private final int numberOfBits;
+    
+    /**
+     * The number of bits in each shard but the last one.
+     */
+    private final int shardSize;
+    
+    /**
+     * The shards.
+     */
+    private final RankSelectBitVector[] shards;
+    
+    /**
+     * The number of set bits before each shard, followed by the total number
+     * of set bits. Valid while {@code hasDirtyPrefixCounts} is unset.
+     */
+    private final int[] prefixCounts;
+    
+    /**
+     * The shards written since the last {@link #buildIndices()}. A superset 
+     * of the shards with a pending rebuild.
+     */
+    private final BitSet dirtyShards = new BitSet();
+    
+    /**
+     * Whether some shard counts changed since {@code prefixCounts} was 
+     * computed.
+     */
+    private boolean hasDirtyPrefixCounts;
+    
+    /**
+     * Constructs a new bit vector with shards of {@link #DEFAULT_SHARD_SIZE} 
+     * bits.
+     * 
+     * @param numberOfBits the number of bits to support.
+     */
+    public PartitionedRankSelectBitVector(int numberOfBits) {
+        this(numberOfBits, DEFAULT_SHARD_SIZE);
+    }
+    
+    /**
+     * Constructs a new bit vector.
+     * 
+     * @param numberOfBits the number of bits to support.
+     * @param shardSize    the number of bits in a shard, a positive multiple 
+     *                     of 64.
+     */
+    public PartitionedRankSelectBitVector(int numberOfBits, int shardSize) {
+        if (numberOfBits <= 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Non-positive number of bits (%d).", 
+                            numberOfBits));
+        }
+        
+        if (shardSize <= 0 || shardSize % Long.SIZE != 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The shard size (%d) is not a positive multiple " + 
+                            "of 64.", 
+                            shardSize));
+        }
+        
+        this.numberOfBits = numberOfBits;
+        this.shardSize = shardSize;
+        
+        int numberOfShards = (int)(((long) numberOfBits + shardSize - 1) 
+                                   / shardSize);
+        
+        this.shards = new RankSelectBitVector[numberOfShards];
+        this.prefixCounts = new int[numberOfShards + 1];
+        
+        for (int i = 0; i < numberOfShards; i++) {
+            shards[i] = new RankSelectBitVector(
+                    Math.min(shardSize, numberOfBits - i * shardSize));
+        }
+        
+        dirtyShards.set(0, numberOfShards);
+    }
+    
+    /**
+     * Returns the number of bits this bit vector supports.
+     * 
+     * @return the number of bits.
+     */
+    public int getNumberOfSupportedBits() {
+        return numberOfBits;
+    }
+    
+    /**
+     * Returns the number of shards.
+     * 
+     * @return the number of shards.
+     */
+    public int getNumberOfShards() {
+        return shards.length;
+    }
+    
+    /**
+     * Returns the number of set bits.
+     * 
+     * @return the number of set bits.
+     */
+    public int getNumberOfSetBits() {
+        updatePrefixCounts();
+        return prefixCounts[shards.length];
+    }
+    
+    /**
+     * Returns the number of shards written since their last rebuild.
+     * 
+     * @return the number of dirty shards.
+     */
+    public int getNumberOfDirtyShards() {
+        // A queried shard may have rebuilt itself:
+        return (int) dirtyShards.stream()
+                                .filter(i -> !shards[i].isIndexed())
+                                .count();
+    }
+    
+    /**
+     * Writes the {@code index}th bit and marks its shard dirty.
+     * 
+     * @param index the index of the target bit.
+     * @param on    the value of the bit.
+     */
+    public void writeBit(int index, boolean on) {
+        checkBitAccessIndex(index);
+        
+        int shardIndex = index / shardSize;
+        RankSelectBitVector shard = shards[shardIndex];
+        int shardBitIndex = index % shardSize;
+        
+        if (shard.readBit(shardBitIndex) == on) {
+            return;
+        }
+        
+        shard.writeBit(shardBitIndex, on);
+        dirtyShards.set(shardIndex);
+        hasDirtyPrefixCounts = true;
+    }
+    
+    /**
+     * Turns the {@code index}th bit on.
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOn(int index) {
+        writeBit(index, true);
+    }
+    
+    /**
+     * Turns the {@code index}th bit off.
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOff(int index) {
+        writeBit(index, false);
+    }
+    
+    /**
+     * Reads the {@code index}th bit.
+     * 
+     * @param index the bit index.
+     * @return {@code true} if and only if the bit is set.
+     */
+    public boolean readBit(int index) {
+        checkBitAccessIndex(index);
+        return shards[index / shardSize].readBit(index % shardSize);
+    }
+    
+    /**
+     * Rebuilds the indices of all the dirty shards in parallel. Afterwards, 
+     * no query triggers a rebuild until the next write.
+     */
+    public void buildIndices() {
+        dirtyShards.stream()
+                   .parallel()
+                   .forEach(shardIndex -> shards[shardIndex].buildIndices());
+        
+        dirtyShards.clear();
+        updatePrefixCounts();
+    }
+    
+    /**
+     * Returns the number of set bits within {@code [0, index)}. A dirty shard
+     * is rebuilt alone when queried.
+     * 
+     * @param index the target index.
+     * @return the rank of {@code index}.
+     */
+    public int rank(int index) {
+        if (index < 0 || index > numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The index (%d) is not within the range " + 
+                            "[0..%d].",
+                            index,
+                            numberOfBits));
+        }
+        
+        updatePrefixCounts();
+        
+        int shardIndex = index / shardSize;
+        
+        if (shardIndex == shards.length) {
+            return prefixCounts[shardIndex];
+        }
+        
+        return prefixCounts[shardIndex] + 
+               shards[shardIndex].rankThird(index % shardSize);
+    }
+    
+    /**
+     * Returns the index of the {@code bitIndex}th set bit. The shard is found 
+     * by a binary search over the prefix counts.
+     * 
+     * @param bitIndex the one-based index of the target set bit.
+     * @return the index of the target set bit.
+     */
+    public int select(int bitIndex) {
+        updatePrefixCounts();
+        
+        int numberOfSetBits = prefixCounts[shards.length];
+        
+        if (bitIndex <= 0 || bitIndex > numberOfSetBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The input selection index (%d) is not within " + 
+                            "the range [1..%d].",
+                            bitIndex,
+                            numberOfSetBits));
+        }
+        
+        // The last shard with less than 'bitIndex' set bits before it:
+        int low = 0;
+        int high = shards.length - 1;
+        
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            
+            if (prefixCounts[middle] < bitIndex) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        
+        return low * shardSize + 
+               shards[low].selectThird(bitIndex - prefixCounts[low]);
+    }
+    
+    /**
+     * Recomputes the prefix counts from the set bit counts of the shards, 
+     * which are kept up to date by the writes without a rebuild.
+     */
+    private void updatePrefixCounts() {
+        if (!hasDirtyPrefixCounts) {
+            return;
+        }
+        
+        for (int i = 0; i < shards.length; i++) {
+            prefixCounts[i + 1] = 
+                    prefixCounts[i] + shards[i].getNumberOfSetBits();
+        }
+        
+        hasDirtyPrefixCounts = false;
+    }
+    
+    private void checkBitAccessIndex(int index) {
+        if (index < 0 || index >= numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The bit access index (%d) is not within the " + 
+                            "range [0..%d).",
+                            index,
+                            numberOfBits));
+        }
+    }
+}
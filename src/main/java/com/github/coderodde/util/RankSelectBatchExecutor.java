@@ -0,0 +1,312 @@
+package com.github.coderodde.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class answers large arrays of rank and select queries against a 
+ * single {@link RankSelectBitVector} in parallel on a {@link ForkJoinPool}. 
+ * The results are written to caller-provided {@code int[]} arrays, so no 
+ * query result is boxed.
+ * <p>
+ * If enabled, the queries are first sorted by their argument, packed 
+ * together with their positions into {@code long}s. Each task then answers a 
+ * contiguous run of sorted queries with a {@link RankSelectBitVectorCursor}, 
+ * so that consecutive queries hit the same or nearby superblocks and short 
+ * gaps are bridged by word scans instead of full ranks and selects. By 
+ * default, only the select queries are sorted: the unsorted rank queries are 
+ * interleaved by 
+ * {@link RankSelectBitVector#rankBatch(int[], int[], int, int)}, which is 
+ * faster than sorting them first.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class RankSelectBatchExecutor {
+    
+    /**
+     * The maximum number of queries answered by a single task.
+     */
+    private static final int TASK_QUERIES = 1 << 12;
+    
+    /**
+     * The minimum number of queries worth sorting.
+     */
+    private static final int SORT_THRESHOLD = 1 << 10;
+    
+    /**
+     * The pool running the tasks.
+     */
+    private final ForkJoinPool pool;
+    
+    /**
+     * Whether to sort the rank queries before answering them.
+     */
+    private final boolean sortRanks;
+    
+    /**
+     * Whether to sort the select queries before answering them.
+     */
+    private final boolean sortSelects;
+    
+    /**
+     * Constructs a new executor running on the common pool and sorting only 
+     * the select queries.
+     */
+    public RankSelectBatchExecutor() {
+        this(ForkJoinPool.commonPool(), false, true);
+    }
+    
+    /**
+     * Constructs a new executor.
+     * 
+     * @param pool        the pool running the tasks.
+     * @param sortRanks   whether to sort the rank queries for locality.
+     * @param sortSelects whether to sort the select queries for locality.
+     */
+    public RankSelectBatchExecutor(ForkJoinPool pool, 
+                                   boolean sortRanks, 
+                                   boolean sortSelects) {
+        this.pool = Objects.requireNonNull(pool, "pool is null.");
+        this.sortRanks = sortRanks;
+        this.sortSelects = sortSelects;
+    }
+    
+    /**
+     * Computes {@code ranks[i] = bitVector.rankThird(indices[i])} for all 
+     * {@code i}.
+     * 
+     * @param bitVector the bit vector to query.
+     * @param indices   the rank arguments.
+     * @param ranks     the array receiving the ranks.
+     */
+    public void rank(RankSelectBitVector bitVector, 
+                     int[] indices, 
+                     int[] ranks) {
+        checkLengths(indices, ranks);
+        
+        for (int index : indices) {
+            if (index < 0 || index > bitVector.getNumberOfSupportedBits()) {
+                throw new IndexOutOfBoundsException(
+                        String.format(
+                                "The rank index (%d) is not within the " + 
+                                "range [0..%d].",
+                                index,
+                                bitVector.getNumberOfSupportedBits()));
+            }
+        }
+        
+        run(bitVector, indices, ranks, true);
+    }
+    
+    /**
+     * Computes {@code indices[i] = bitVector.selectThird(bitIndices[i])} for 
+     * all {@code i}.
+     * 
+     * @param bitVector  the bit vector to query.
+     * @param bitIndices the one-based select arguments.
+     * @param indices    the array receiving the indices of the selected bits.
+     */
+    public void select(RankSelectBitVector bitVector, 
+                       int[] bitIndices, 
+                       int[] indices) {
+        checkLengths(bitIndices, indices);
+        
+        for (int bitIndex : bitIndices) {
+            if (bitIndex <= 0 || bitIndex > bitVector.getNumberOfSetBits()) {
+                throw new IndexOutOfBoundsException(
+                        String.format(
+                                "The select index (%d) is not within the " + 
+                                "range [1..%d].",
+                                bitIndex,
+                                bitVector.getNumberOfSetBits()));
+            }
+        }
+        
+        run(bitVector, bitIndices, indices, false);
+    }
+    
+    private void run(RankSelectBitVector bitVector,
+                     int[] queries, 
+                     int[] results, 
+                     boolean rank) {
+        // The tasks must not race on a rebuild:
+        bitVector.buildIndices();
+        
+        boolean sortQueries = rank ? sortRanks : sortSelects;
+        
+        if (!sortQueries || queries.length < SORT_THRESHOLD) {
+            pool.invoke(new UnsortedTask(bitVector, 
+                                         queries, 
+                                         results, 
+                                         rank, 
+                                         0, 
+                                         queries.length));
+            return;
+        }
+        
+        // The argument in the upper half, the position in the lower half:
+        long[] sortedQueries = new long[queries.length];
+        
+        for (int i = 0; i < queries.length; i++) {
+            sortedQueries[i] = (long) queries[i] << Integer.SIZE | i;
+        }
+        
+        Arrays.parallelSort(sortedQueries);
+        
+        pool.invoke(new SortedTask(bitVector, 
+                                   sortedQueries, 
+                                   results, 
+                                   rank, 
+                                   0, 
+                                   queries.length));
+    }
+    
+    private static void checkLengths(int[] queries, int[] results) {
+        if (queries.length != results.length) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The number of queries (%d) does not match the " + 
+                            "length of the result array (%d).",
+                            queries.length,
+                            results.length));
+        }
+    }
+    
+    /**
+     * Answers the queries within {@code [fromIndex, toIndex)} of an unsorted 
+     * query array directly. The ranks are interleaved via 
+     * {@link RankSelectBitVector#rankBatch(int[], int[], int, int)}.
+     */
+    @SuppressWarnings("serial") // The tasks are never serialized.
+    private static final class UnsortedTask extends RecursiveAction {
+        
+        private final RankSelectBitVector bitVector;
+        private final int[] queries;
+        private final int[] results;
+        private final boolean rank;
+        private final int fromIndex;
+        private final int toIndex;
+        
+        UnsortedTask(RankSelectBitVector bitVector, 
+                     int[] queries, 
+                     int[] results, 
+                     boolean rank, 
+                     int fromIndex, 
+                     int toIndex) {
+            this.bitVector = bitVector;
+            this.queries = queries;
+            this.results = results;
+            this.rank = rank;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+        
+        @Override
+        protected void compute() {
+            if (toIndex - fromIndex > TASK_QUERIES) {
+                int middleIndex = (fromIndex + toIndex) >>> 1;
+                
+                invokeAll(new UnsortedTask(bitVector, 
+                                           queries, 
+                                           results, 
+                                           rank, 
+                                           fromIndex, 
+                                           middleIndex),
+                          new UnsortedTask(bitVector, 
+                                           queries, 
+                                           results, 
+                                           rank, 
+                                           middleIndex, 
+                                           toIndex));
+                return;
+            }
+            
+            if (rank) {
+                bitVector.rankBatch(queries, results, fromIndex, toIndex);
+            } else {
+                for (int i = fromIndex; i < toIndex; i++) {
+                    results[i] = bitVector.selectThird(queries[i]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Answers the queries within {@code [fromIndex, toIndex)} of a sorted, 
+     * packed query array with a cursor.
+     */
+    @SuppressWarnings("serial") // The tasks are never serialized.
+    private static final class SortedTask extends RecursiveAction {
+        
+        private final RankSelectBitVector bitVector;
+        private final long[] sortedQueries;
+        private final int[] results;
+        private final boolean rank;
+        private final int fromIndex;
+        private final int toIndex;
+        
+        SortedTask(RankSelectBitVector bitVector, 
+                   long[] sortedQueries, 
+                   int[] results, 
+                   boolean rank, 
+                   int fromIndex, 
+                   int toIndex) {
+            this.bitVector = bitVector;
+            this.sortedQueries = sortedQueries;
+            this.results = results;
+            this.rank = rank;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+        
+        @Override
+        protected void compute() {
+            if (toIndex - fromIndex > TASK_QUERIES) {
+                int middleIndex = (fromIndex + toIndex) >>> 1;
+                
+                invokeAll(new SortedTask(bitVector, 
+                                         sortedQueries, 
+                                         results, 
+                                         rank, 
+                                         fromIndex, 
+                                         middleIndex),
+                          new SortedTask(bitVector, 
+                                         sortedQueries, 
+                                         results, 
+                                         rank, 
+                                         middleIndex, 
+                                         toIndex));
+                return;
+            }
+            
+            RankSelectBitVectorCursor cursor = bitVector.cursor();
+            
+            if (rank) {
+                for (int i = fromIndex; i < toIndex; i++) {
+                    long query = sortedQueries[i];
+                    cursor.advanceTo((int)(query >>> Integer.SIZE));
+                    results[(int) query] = cursor.rank();
+                }
+                
+                return;
+            }
+            
+            int index = -1;
+            
+            for (int i = fromIndex; i < toIndex; i++) {
+                long query = sortedQueries[i];
+                int bitIndex = (int)(query >>> Integer.SIZE);
+                
+                // Repeated arguments leave the cursor where it is:
+                if (bitIndex > cursor.rank()) {
+                    index = cursor.skipOnes(bitIndex - cursor.rank());
+                }
+                
+                results[(int) query] = index;
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.github.coderodde.util;
 
-import static java.lang.Math.ceil;
-import static java.lang.Math.pow;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
 
 /**
  * This class defines a packed bit vector that supports {@code rank()} operation
@@ -9,23 +11,110 @@ import static java.lang.Math.pow;
  * implementation counts the bits via {@link java.lang.Long#bitCount(long)}. We 
  * also tried to JNI POPCNT-instruction, but it was somewhat slower than 
  * {@linkplain java.lang.Long#bitCount(long) }.
+ * <p>
+ * The bitwise operations ({@code and}, {@code or}, {@code xor}, 
+ * {@code andNot} and {@code not}) work on whole words and rebuild the rank 
+ * index in the same pass, so that the result is ready for queries without a 
+ * separate call to {@link #buildIndices()}.
  * 
- * @version 1.0.2
+ * @version 1.1.0
  * @since 1.0.0
  */
 public final class RankSelectBitVector {
     
+    /**
+     * The minimum number of words in a bit vector for which the bitwise 
+     * operations are split into parallel tasks.
+     */
+    private static final int PARALLEL_THRESHOLD_WORDS = 1 << 16;
+    
+    /**
+     * The approximate number of bits processed by a single parallel task.
+     */
+    private static final int PARALLEL_TASK_BITS = 1 << 20;
+    
+    /**
+     * The number of queries interleaved by {@link #rankBatch}.
+     */
+    private static final int RANK_BATCH_SIZE = 16;
+    
+    /**
+     * A write marking more than the {@code 1 / PARTIAL_REBUILD_RATIO}th of the
+     * superblocks dirty falls back to rebuilding the entire index.
+     */
+    private static final int PARTIAL_REBUILD_RATIO = 4;
+    
+    // The codes of the word operations applied by applyWordOperation():
+    private static final int OPERATION_NONE     = 0;
+    private static final int OPERATION_AND      = 1;
+    private static final int OPERATION_OR       = 2;
+    private static final int OPERATION_XOR      = 3;
+    private static final int OPERATION_AND_NOT  = 4;
+    private static final int OPERATION_NOT      = 5;
+    
+    /**
+     * Caches the flattened {@code third} tables indexed by {@code k}.
+     */
+    private static final byte[][] LOOKUP_TABLES = new byte[Integer.SIZE][];
+    
+    // Constants for the broadword select in selectInWord():
+    private static final long BYTES_ONE      = 0x0101010101010101L;
+    private static final long BYTES_HIGH_BIT = 0x8080808080808080L;
+    
+    /**
+     * Maps {@code (r << 8) | b} to the position of the {@code r}th 
+     * (zero-based) set bit in the byte value {@code b}.
+     */
+    private static final byte[] SELECT_IN_BYTE = new byte[Byte.SIZE << 8];
+    
+    static {
+        for (int byteValue = 0; byteValue < 256; byteValue++) {
+            int rank = 0;
+            
+            for (int bit = 0; bit < Byte.SIZE; bit++) {
+                if ((byteValue & (1 << bit)) != 0) {
+                    SELECT_IN_BYTE[rank++ << Byte.SIZE | byteValue] = 
+                            (byte) bit;
+                }
+            }
+        }
+    }
+    
     /**
      * Indicates whether some bits were changed since the previous building of
      * the index data structures.
      */
     private boolean hasDirtyState = true;
     
+    /**
+     * Flags the superblocks whose bits were changed since the previous 
+     * building of the index, or {@code null} if none were flagged yet. Used
+     * only while {@code hasDirtyState} is {@code false}: then only the flagged
+     * superblocks need to be rebuilt.
+     */
+    private long[] dirtySuperblocks;
+    
+    /**
+     * The number of superblocks flagged in {@code dirtySuperblocks}.
+     */
+    private int numberOfDirtySuperblocks;
+    
+    /**
+     * The smallest superblock index flagged in {@code dirtySuperblocks}.
+     */
+    private int firstDirtySuperblockIndex;
+    
     /**
      * The actual bit storage array.
      */
     private final long[] wordData;
     
+    /**
+     * The number of words in use, including the padding word. The arrays may 
+     * have extra capacity beyond the words in use.
+     */
+    private final int numberOfWords;
+    
     /**
      * The actual requested number of bits in this bit vector. Will be smaller 
      * than the total capacity.
@@ -37,6 +126,11 @@ public final class RankSelectBitVector {
      */
     private int numberOfSetBits;
     
+    /**
+     * The block sizes of the rank index.
+     */
+    private final BlockLayout layout;
+    
     /**
      * The block size in the {@code first} table.
      */
@@ -50,10 +144,21 @@ public final class RankSelectBitVector {
     // The following three tables hold the index necessary for efficient rank 
     // operation. According to internet, 'third' has space 
     // O(sgrt(n) * log log n * log n, 'second' has space O(n / log(n)), and
-    // 'first' has space O(n / log^2(n)).
+    // 'first' has space O(n / log^2(n)). 'third' depends only on 'k', and is
+    // shared by all the bit vectors with the same 'k'.
     private final int[] first;
     private final int[] second;
-    private final int[][] third;
+    private final byte[] third;
+    
+    // In the compact index mode, 'second' is null and the block counts are 
+    // stored in the narrowest of the following two arrays that can hold 
+    // counts up to 'ell - k'. The other one is null.
+    private final byte[] secondBytes;
+    private final char[] secondChars;
+    
+    // In the lazy index mode, bit 's' of this array tells whether the 'second'
+    // entries of the superblock 's' are built. Otherwise, this is null.
+    private final AtomicLongArray indexedSuperblocks;
     
     /**
      * Constructs a new bit vector.
@@ -61,27 +166,347 @@ public final class RankSelectBitVector {
      * @param numberOfRequestedBits the actual number of bits to support.
      */
     public RankSelectBitVector(int numberOfRequestedBits) {
+        this(numberOfRequestedBits, false);
+    }
+    
+    /**
+     * Constructs a new bit vector. If {@code compactIndex} is {@code true}, 
+     * the block counts in the {@code second} table are stored in a 
+     * {@code byte[]} or a {@code char[]} instead of an {@code int[]}, 
+     * whichever is the narrowest that fits the superblock size. With the 
+     * default block sizes, this shrinks the {@code second} table by a factor 
+     * of four at the cost of a widening load in each rank.
+     * 
+     * @param numberOfRequestedBits the actual number of bits to support.
+     * @param compactIndex          whether to use the compact index mode.
+     */
+    public RankSelectBitVector(int numberOfRequestedBits, 
+                               boolean compactIndex) {
+        this(numberOfRequestedBits, 
+             BlockLayout.defaultFor(numberOfRequestedBits), 
+             compactIndex);
+    }
+    
+    /**
+     * Constructs a new bit vector with explicit block sizes.
+     * 
+     * @param numberOfRequestedBits the actual number of bits to support.
+     * @param layout                the block sizes of the rank index.
+     */
+    public RankSelectBitVector(int numberOfRequestedBits, BlockLayout layout) {
+        this(numberOfRequestedBits, layout, false);
+    }
+    
+    /**
+     * Constructs a new bit vector with explicit block sizes. Blocks larger 
+     * than {@value BlockLayout#MAXIMUM_LOOKUP_BLOCK_SIZE} bits finish the rank
+     * with popcounts instead of the lookup table.
+     * 
+     * @param numberOfRequestedBits the actual number of bits to support.
+     * @param layout                the block sizes of the rank index.
+     * @param compactIndex          whether to use the compact index mode.
+     */
+    public RankSelectBitVector(int numberOfRequestedBits, 
+                               BlockLayout layout,
+                               boolean compactIndex) {
+        this(numberOfRequestedBits, layout, compactIndex, false);
+    }
+    
+    /**
+     * Constructs a new bit vector with explicit block sizes. If 
+     * {@code lazyIndex} is {@code true}, building the index only computes the
+     * superblock counts in a single popcount sweep over the words, and the 
+     * block counts of each superblock are built on the first query touching 
+     * the superblock. The lazy building is thread-safe: concurrent queries may
+     * build the same superblock twice, but always with the same result.
+     * 
+     * @param numberOfRequestedBits the actual number of bits to support.
+     * @param layout                the block sizes of the rank index.
+     * @param compactIndex          whether to use the compact index mode.
+     * @param lazyIndex             whether to use the lazy index mode.
+     */
+    public RankSelectBitVector(int numberOfRequestedBits, 
+                               BlockLayout layout,
+                               boolean compactIndex,
+                               boolean lazyIndex) {
+        this(numberOfRequestedBits, 
+             layout, 
+             compactIndex, 
+             lazyIndex,
+             new long[getStorageLength(numberOfRequestedBits)]);
+    }
+    
+    /**
+     * Constructs a new bit vector on top of the given bit storage. The index 
+     * is built on the first query.
+     * 
+     * @param numberOfRequestedBits the actual number of bits to support.
+     * @param layout                the block sizes of the rank index.
+     * @param compactIndex          whether to use the compact index mode.
+     * @param lazyIndex             whether to use the lazy index mode.
+     * @param wordData              the bit storage with the padding word.
+     */
+    private RankSelectBitVector(int numberOfRequestedBits, 
+                                BlockLayout layout,
+                                boolean compactIndex,
+                                boolean lazyIndex,
+                                long[] wordData) {
         checkNumberOfRequestedBits(numberOfRequestedBits);
         
         this.numberOfRequestedBits = numberOfRequestedBits;
+        this.layout = layout;
         
-        // Calculate the actual number of storage bytes:
-        int numberOfLongs = numberOfRequestedBits / Long.SIZE + 
-                           (numberOfRequestedBits % Long.SIZE != 0 ? 1 : 0);
+        // Calculate the actual number of storage bytes. Includes a padding 
+        // tail long in order to simplify the last rank/select:
+        this.numberOfWords = getStorageLength(numberOfRequestedBits);
+        this.wordData = wordData;
         
-        numberOfLongs++; // Padding tail long in order to simplify the last 
-                         // rank/select.
+        int n = numberOfWords * Long.SIZE;
         
-        this.wordData = new long[numberOfLongs];
+        this.ell = layout.getSuperblockSize();
+        this.k = layout.getBlockSize();
         
-        int n = wordData.length * Long.SIZE;
+        this.first = new int[n / ell + 1];
+        this.third = layout.usesLookupTable() ? getLookupTable(k) : null;
         
-        this.ell = (int) pow(ceil(log2(n) / 2.0), 2.0);
-        this.k = (int) ceil(log2(n) / 2.0);
+        int secondLength = n / k + 1;
         
-        this.first = new int[n / ell + 1];
-        this.second = new int[n / k + 1];
-        this.third = new int[(int) pow(2.0, this.k - 1)][];
+        switch (layout.getBlockCountWidth(compactIndex)) {
+            case Byte.SIZE:
+                this.second = null;
+                this.secondBytes = new byte[secondLength];
+                this.secondChars = null;
+                break;
+            
+            case Character.SIZE:
+                this.second = null;
+                this.secondBytes = null;
+                this.secondChars = new char[secondLength];
+                break;
+            
+            default:
+                this.second = new int[secondLength];
+                this.secondBytes = null;
+                this.secondChars = null;
+                break;
+        }
+        
+        if (lazyIndex) {
+            int numberOfSuperblocks = n / ell + (n % ell != 0 ? 1 : 0);
+            
+            this.indexedSuperblocks = 
+                    new AtomicLongArray(
+                            (numberOfSuperblocks + Long.SIZE - 1) / Long.SIZE);
+        } else {
+            this.indexedSuperblocks = null;
+        }
+    }
+    
+    /**
+     * Constructs a new, already indexed bit vector on top of the given 
+     * arrays. The arrays may be longer than needed; only their prefixes 
+     * corresponding to {@code numberOfRequestedBits} are used.
+     * 
+     * @param numberOfRequestedBits the actual number of bits to support.
+     * @param layout                the block sizes of the rank index.
+     * @param wordData              the bit storage with the padding word.
+     * @param first                 the superblock counts.
+     * @param second                the block counts.
+     * @param numberOfSetBits       the number of set bits.
+     */
+    RankSelectBitVector(int numberOfRequestedBits,
+                        BlockLayout layout,
+                        long[] wordData,
+                        int[] first,
+                        int[] second,
+                        int numberOfSetBits) {
+        checkNumberOfRequestedBits(numberOfRequestedBits);
+        
+        this.numberOfRequestedBits = numberOfRequestedBits;
+        this.layout = layout;
+        this.numberOfWords = getStorageLength(numberOfRequestedBits);
+        this.wordData = wordData;
+        this.ell = layout.getSuperblockSize();
+        this.k = layout.getBlockSize();
+        this.first = first;
+        this.second = second;
+        this.secondBytes = null;
+        this.secondChars = null;
+        this.third = layout.usesLookupTable() ? getLookupTable(k) : null;
+        this.indexedSuperblocks = null;
+        this.numberOfSetBits = numberOfSetBits;
+        this.hasDirtyState = false;
+    }
+    
+    /**
+     * Constructs a new bit vector over the caller-owned array {@code words} 
+     * without copying it, using the default layout for 
+     * {@code numberOfRequestedBits}. Only the rank index is allocated.
+     * <p>
+     * Bit {@code i} is bit {@code i % 64} of {@code words[i / 64]}. The array
+     * must be at least {@link #getStorageLength(int)} words long; the last of
+     * those words is the padding word, and all its bits as well as the bits 
+     * of the preceding word beyond {@code numberOfRequestedBits} must be 
+     * zero. The words beyond the storage length are never accessed.
+     * <p>
+     * The mutation rules are as follows:
+     * <ul>
+     *   <li>The writes and the in-place bitwise operations of the returned bit
+     *       vector write through to {@code words}.</li>
+     *   <li>After the caller modifies {@code words} directly, it must call 
+     *       {@link #invalidateIndices()} before the next query. Until then, 
+     *       the results of the queries are unspecified.</li>
+     * </ul>
+     * 
+     * @param words                 the bit storage.
+     * @param numberOfRequestedBits the number of bits to support.
+     * @return the bit vector wrapping {@code words}.
+     * @throws IllegalArgumentException if {@code words} is too short or has 
+     *                                  bits set beyond 
+     *                                  {@code numberOfRequestedBits}.
+     */
+    public static RankSelectBitVector wrap(long[] words, 
+                                           int numberOfRequestedBits) {
+        return wrap(words, 
+                    numberOfRequestedBits, 
+                    BlockLayout.defaultFor(numberOfRequestedBits),
+                    false);
+    }
+    
+    /**
+     * Constructs a new bit vector over the caller-owned array {@code words} 
+     * without copying it. See {@link #wrap(long[], int)} for the storage and 
+     * the mutation rules.
+     * 
+     * @param words                 the bit storage.
+     * @param numberOfRequestedBits the number of bits to support.
+     * @param layout                the block sizes of the rank index.
+     * @param compactIndex          whether to use the compact index mode.
+     * @return the bit vector wrapping {@code words}.
+     */
+    public static RankSelectBitVector wrap(long[] words, 
+                                           int numberOfRequestedBits,
+                                           BlockLayout layout,
+                                           boolean compactIndex) {
+        return wrap(words, numberOfRequestedBits, layout, compactIndex, false);
+    }
+    
+    /**
+     * Constructs a new bit vector over the caller-owned array {@code words} 
+     * without copying it. See {@link #wrap(long[], int)} for the storage and 
+     * the mutation rules, and 
+     * {@link #RankSelectBitVector(int, BlockLayout, boolean, boolean)} for the
+     * lazy index mode. In the lazy index mode, the superblock counts are 
+     * computed right away, so that the first query only builds the block 
+     * counts of the superblocks it touches.
+     * 
+     * @param words                 the bit storage.
+     * @param numberOfRequestedBits the number of bits to support.
+     * @param layout                the block sizes of the rank index.
+     * @param compactIndex          whether to use the compact index mode.
+     * @param lazyIndex             whether to use the lazy index mode.
+     * @return the bit vector wrapping {@code words}.
+     */
+    public static RankSelectBitVector wrap(long[] words, 
+                                           int numberOfRequestedBits,
+                                           BlockLayout layout,
+                                           boolean compactIndex,
+                                           boolean lazyIndex) {
+        checkNumberOfRequestedBits(numberOfRequestedBits);
+        
+        int storageLength = getStorageLength(numberOfRequestedBits);
+        
+        if (words.length < storageLength) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The storage has %d words, %d bits need %d " + 
+                            "words including the padding word.", 
+                            words.length,
+                            numberOfRequestedBits,
+                            storageLength));
+        }
+        
+        RankSelectBitVector bitVector = 
+                new RankSelectBitVector(numberOfRequestedBits,
+                                        layout, 
+                                        compactIndex,
+                                        lazyIndex,
+                                        words);
+        
+        if (!bitVector.hasCleanTail()) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The storage has bits set beyond the first %d " + 
+                            "bits.", 
+                            numberOfRequestedBits));
+        }
+        
+        if (lazyIndex) {
+            // The sweep counts the set bits as well:
+            bitVector.rebuildIndices(false);
+        } else {
+            bitVector.numberOfSetBits = 
+                    bitVector.countOnes(0, numberOfRequestedBits);
+        }
+        
+        return bitVector;
+    }
+    
+    /**
+     * Constructs a new bit vector over the array backing {@code buffer} 
+     * without copying it, using the default layout for 
+     * {@code numberOfRequestedBits}. The buffer must be backed by an 
+     * accessible array whose first element is the first element of the 
+     * buffer; direct buffers cannot be wrapped and must be copied, for 
+     * example with {@link RankSelectBitVectorBuilder#appendWords}. See 
+     * {@link #wrap(long[], int)} for the storage and the mutation rules.
+     * 
+     * @param buffer                the bit storage.
+     * @param numberOfRequestedBits the number of bits to support.
+     * @return the bit vector wrapping the array of {@code buffer}.
+     */
+    public static RankSelectBitVector wrap(LongBuffer buffer, 
+                                           int numberOfRequestedBits) {
+        if (!buffer.hasArray() 
+                || buffer.arrayOffset() + buffer.position() != 0) {
+            throw new IllegalArgumentException(
+                    "The buffer is not backed by an accessible array " + 
+                    "starting at the buffer position.");
+        }
+        
+        if (buffer.remaining() < getStorageLength(numberOfRequestedBits)) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The buffer has %d words remaining, %d bits " + 
+                            "need %d words including the padding word.", 
+                            buffer.remaining(),
+                            numberOfRequestedBits,
+                            getStorageLength(numberOfRequestedBits)));
+        }
+        
+        return wrap(buffer.array(), numberOfRequestedBits);
+    }
+    
+    /**
+     * Discards the rank index after the bit storage has been modified 
+     * directly. The number of set bits is recounted with a popcount sweep 
+     * right away, and the index is rebuilt on the next query or 
+     * {@link #buildIndices()}.
+     * 
+     * @throws IllegalStateException if the storage has bits set beyond 
+     *                               {@link #getNumberOfSupportedBits()}.
+     */
+    public void invalidateIndices() {
+        if (!hasCleanTail()) {
+            throw new IllegalStateException(
+                    String.format(
+                            "The storage has bits set beyond the first %d " + 
+                            "bits.", 
+                            numberOfRequestedBits));
+        }
+        
+        numberOfSetBits = countOnes(0, numberOfRequestedBits);
+        hasDirtyState = true;
     }
     
     @Override
@@ -110,52 +535,115 @@ public final class RankSelectBitVector {
      * Preprocesses the internal data structures in {@code O(n)}.
      */
     public void buildIndices() {
-        if (hasDirtyState == false) {
+        if (isIndexed()) {
             // Nothing to do.
             return;
         }
         
-        //// Deal with the 'first'.
-        // n - total number of bit slots:
-        int n = wordData.length * Long.SIZE;
+        rebuildIndices(false);
+    }
+    
+    /**
+     * Returns the block sizes of the rank index.
+     * 
+     * @return the block layout.
+     */
+    public BlockLayout getLayout() {
+        return layout;
+    }
+    
+    /**
+     * Returns {@code true} if and only if this bit vector builds the block 
+     * counts of each superblock on the first query touching it.
+     * 
+     * @return {@code true} if the index is lazy.
+     */
+    public boolean hasLazyIndex() {
+        return indexedSuperblocks != null;
+    }
+    
+    /**
+     * Returns {@code true} if and only if this bit vector stores its block 
+     * counts in the compact encoding.
+     * 
+     * @return {@code true} if the index is compact.
+     */
+    public boolean hasCompactIndex() {
+        return second == null;
+    }
+    
+    /**
+     * Returns the number of bits the {@code first} and {@code second} tables 
+     * occupy per one supported bit. The shared lookup table 
+     * {@code third} is not included. Only the entries in use are counted, so 
+     * the spare capacity of the arrays handed over by 
+     * {@link RankSelectBitVectorBuilder} is not.
+     * 
+     * @return the rank index overhead in bits per bit.
+     */
+    public double getRankIndexBitsPerBit() {
+        long secondBits;
+        
+        long numberOfSecondEntries = getNumberOfSecondEntries();
         
-        // elll - the l value:
-        for (int i = ell; i < n; i++) {
-            if (i % ell == 0) {
-                int firstArraySlotIndex = i / ell;
-                int startIndex = i - ell;
-                int endIndex   = i - 1;
-                
-                first[firstArraySlotIndex]     =
-                first[firstArraySlotIndex - 1] + 
-                bruteForceRank(startIndex,
-                               endIndex);
-            }
+        if (second != null) {
+            secondBits = numberOfSecondEntries * Integer.SIZE;
+        } else if (secondBytes != null) {
+            secondBits = numberOfSecondEntries * Byte.SIZE;
+        } else {
+            secondBits = numberOfSecondEntries * Character.SIZE;
         }
         
-        //// Deal with the 'second'.
-        for (int i = k; i < n; i++) {
-            if (i % k == 0) {
-                second[i/k] = bruteForceRank(ell * (i / ell), i - 1);
-            }
+        long firstBits = (long) getNumberOfFirstEntries() * Integer.SIZE;
+        
+        return (double)(firstBits + secondBits) / numberOfRequestedBits;
+    }
+    
+    /**
+     * Returns a report on the heap memory used by this bit vector. The select
+     * operations work on the rank index, so the select index is empty. Only 
+     * the storage words and the index entries in use are counted: neither the 
+     * spare capacity of the arrays handed over by 
+     * {@link RankSelectBitVectorBuilder} nor the words of a wrapped array 
+     * beyond {@link #getStorageLength(int)}.
+     * 
+     * @return the memory usage report.
+     */
+    public MemoryUsageReport memoryUsage() {
+        int numberOfSecondEntries = getNumberOfSecondEntries();
+        long rankIndexBytes = 
+                MemoryUsageReport.arrayBytes(getNumberOfFirstEntries(), 
+                                             Integer.BYTES);
+        
+        if (second != null) {
+            rankIndexBytes += 
+                    MemoryUsageReport.arrayBytes(numberOfSecondEntries, 
+                                                 Integer.BYTES);
+        } else if (secondBytes != null) {
+            rankIndexBytes += 
+                    MemoryUsageReport.arrayBytes(numberOfSecondEntries, 
+                                                 Byte.BYTES);
+        } else {
+            rankIndexBytes += 
+                    MemoryUsageReport.arrayBytes(numberOfSecondEntries, 
+                                                 Character.BYTES);
         }
         
-        //// Deal with the 'third': four Russians' technique:
-        for (int selectorIndex = 0;
-                 selectorIndex < third.length;
-                 selectorIndex++) {
-            
-            third[selectorIndex] = new int[k - 1];
-            third[selectorIndex][0] = (bitIsSet(selectorIndex, k - 2) ? 1 : 0);
-            
-            for (int j = 1; j < k - 1; j++) {
-                third[selectorIndex][j] = 
-                third[selectorIndex][j - 1] + 
-                        (bitIsSet(selectorIndex, k - j - 2) ? 1 : 0);
-            }
+        if (indexedSuperblocks != null) {
+            rankIndexBytes += 
+                    MemoryUsageReport.arrayBytes(indexedSuperblocks.length(), 
+                                                 Long.BYTES);
         }
         
-        hasDirtyState = false;
+        return new MemoryUsageReport(
+                numberOfRequestedBits,
+                MemoryUsageReport.arrayBytes(numberOfWords, Long.BYTES),
+                rankIndexBytes,
+                0L,
+                third == null ? 
+                        0L : 
+                        MemoryUsageReport.arrayBytes(third.length, 
+                                                     Byte.BYTES));
     }
     
     /**
@@ -177,284 +665,2168 @@ public final class RankSelectBitVector {
     }
     
     /**
-     * Sets the {@code index}th bit to one (1).
+     * Sets the {@code index}th bit to one (1).
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOn(int index) {
+        writeBit(index, true);
+    }
+    
+    /**
+     * Sets the {@code index}th bit to zero (0).
+     * 
+     * @param index the index of the target bit.
+     */
+    public void writeBitOff(int index) {
+        writeBit(index, false);
+    }
+    
+    /**
+     * Writes the {@code index}th bit to {@code on}.
+     * 
+     * @param index the index of the target bit.
+     * @param on    the selector of the bit: if {@code true}, the bit will be 
+     *              set to one, otherwise set zero.
+     */
+    public void writeBit(int index, boolean on) {
+        checkBitAccessIndex(index);
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordWrite();
+        }
+        
+        writeBitImpl(index, on);
+    }
+    
+    /**
+     * Sets all the bits within {@code [fromIndex, toIndex)} to one (1).
+     * 
+     * @param fromIndex the starting, inclusive bit index.
+     * @param toIndex   the ending, exclusive bit index.
+     */
+    public void setRange(int fromIndex, int toIndex) {
+        writeRange(OPERATION_OR, fromIndex, toIndex);
+    }
+    
+    /**
+     * Sets all the bits within {@code [fromIndex, toIndex)} to zero (0).
+     * 
+     * @param fromIndex the starting, inclusive bit index.
+     * @param toIndex   the ending, exclusive bit index.
+     */
+    public void clearRange(int fromIndex, int toIndex) {
+        writeRange(OPERATION_AND_NOT, fromIndex, toIndex);
+    }
+    
+    /**
+     * Flips all the bits within {@code [fromIndex, toIndex)}.
+     * 
+     * @param fromIndex the starting, inclusive bit index.
+     * @param toIndex   the ending, exclusive bit index.
+     */
+    public void flipRange(int fromIndex, int toIndex) {
+        writeRange(OPERATION_XOR, fromIndex, toIndex);
+    }
+    
+    /**
+     * Sets the bits at all the {@code positions} to one (1). The positions 
+     * may be unsorted and contain duplicates, yet consecutive positions 
+     * within the same word are written at once.
+     * 
+     * @param positions the indices of the target bits.
+     * @throws IndexOutOfBoundsException if any of the positions is out of 
+     *                                   range. No bits are written then.
+     */
+    public void setBits(int[] positions) {
+        writeBits(OPERATION_OR, positions);
+    }
+    
+    /**
+     * Sets the bits at all the {@code positions} to zero (0). The positions 
+     * may be unsorted and contain duplicates, yet consecutive positions 
+     * within the same word are written at once.
+     * 
+     * @param positions the indices of the target bits.
+     * @throws IndexOutOfBoundsException if any of the positions is out of 
+     *                                   range. No bits are written then.
+     */
+    public void clearBits(int[] positions) {
+        writeBits(OPERATION_AND_NOT, positions);
+    }
+    
+    /**
+     * Reads the {@code index}th bit where indexation starts from zero (0).
+     * 
+     * @param index the bit index.
+     * @return {@code true} if and only if the {@code index}th bit is set.
+     */
+    public boolean readBit(int index) {
+        checkBitAccessIndex(index);
+        return readBitImpl(index);
+    }
+    
+    /**
+     * Returns the rank of {@code index}, i.e., the number of set bits in the 
+     * subvector {@code vector[1..index]}. Runs in {@code O((log n)^2)} time.
+     * 
+     * @param index the target index.
+     * @return the rank for the input target.
+     */
+    public int rankFirst(int index) {
+        checkBitIndexForRank(index);
+        makeSureStateIsCompiled();
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordRank();
+        }
+        
+        return rankFirstImpl(index);
+    }
+    
+    private int rankFirstImpl(int index) {
+        int startIndex = ell * (index / ell);
+        int endIndex = index - 1;
+        
+        return first[index / ell] + bruteForceRank(startIndex, endIndex);
+    }
+    
+    /**
+     * Returns the {@code index}th rank. Runs in {@code O(log n)} time.
+     * 
+     * @param index the target index.
+     * @return the rank of the input index.
+     */
+    public int rankSecond(int index) {
+        checkBitIndexForRank(index);
+        makeSureStateIsCompiled();
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordRank();
+        }
+        
+        return rankSecondImpl(index);
+    }
+    
+    private int rankSecondImpl(int index) {
+        int startIndex = k * (index / k);
+        int endIndex = index - 1;
+        
+        return first[index / ell] +
+               getSecond(index / k) + 
+               bruteForceRank(startIndex, 
+                              endIndex);
+    }
+    
+    /**
+     * Returns the {@code index}th rank. Runs in {@code O(1)} time.
+     * 
+     * @param index the target index.
+     * @return the rank of the input index.
+     */
+    public int rankThird(int index) {
+        checkBitIndexForRank(index);
+        makeSureStateIsCompiled();
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordRank();
+        }
+        
+        return rankImpl(index);
+    }
+    
+    /**
+     * Computes {@code ranks[i] = rankThird(indices[i])} for all {@code i}. 
+     * See {@link #rankBatch(int[], int[], int, int)}.
+     * 
+     * @param indices the target indices.
+     * @param ranks   the array receiving the ranks.
+     */
+    public void rankBatch(int[] indices, int[] ranks) {
+        rankBatch(indices, ranks, 0, indices.length);
+    }
+    
+    /**
+     * Computes {@code ranks[i] = rankThird(indices[i])} for all {@code i} 
+     * within {@code [fromIndex, toIndex)}. The queries are answered in groups
+     * of 16 in two stages: first the {@code first} and
+     * {@code second} counters of the whole group are loaded, then the words. 
+     * The loads within a stage are independent of each other, so on a bit 
+     * vector larger than the caches, their misses overlap instead of being 
+     * paid one query after another.
+     * 
+     * @param indices   the target indices.
+     * @param ranks     the array receiving the ranks.
+     * @param fromIndex the first query to answer, inclusive.
+     * @param toIndex   the last query to answer, exclusive.
+     */
+    public void rankBatch(int[] indices, 
+                          int[] ranks, 
+                          int fromIndex, 
+                          int toIndex) {
+        if (fromIndex < 0 
+                || fromIndex > toIndex 
+                || toIndex > Math.min(indices.length, ranks.length)) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The query range [%d..%d) is not within the " + 
+                            "arrays of lengths %d and %d.",
+                            fromIndex,
+                            toIndex,
+                            indices.length,
+                            ranks.length));
+        }
+        
+        for (int i = fromIndex; i < toIndex; i++) {
+            checkBitIndexForRank(indices[i]);
+        }
+        
+        makeSureStateIsCompiled();
+        
+        for (int groupStartIndex = fromIndex; 
+                 groupStartIndex < toIndex; 
+                 groupStartIndex += RANK_BATCH_SIZE) {
+            
+            int groupEndIndex = 
+                    Math.min(toIndex, groupStartIndex + RANK_BATCH_SIZE);
+            
+            // Stage 1: the counters of the whole group:
+            for (int i = groupStartIndex; i < groupEndIndex; i++) {
+                int index = indices[i];
+                ranks[i] = first[index / ell] + getSecond(index / k);
+            }
+            
+            // Stage 2: the words of the whole group:
+            for (int i = groupStartIndex; i < groupEndIndex; i++) {
+                int index = indices[i];
+                ranks[i] += countOnes(index - index % k, index);
+            }
+        }
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordRanks(toIndex - fromIndex);
+        }
+    }
+    
+    /**
+     * Returns the number of set bits within {@code [fromIndex, toIndex)}. 
+     * Short ranges are counted directly from the words, longer ones take the 
+     * difference of two {@code O(1)} ranks with a single bounds check.
+     * 
+     * @param fromIndex the starting index of the range, inclusive.
+     * @param toIndex   the ending index of the range, exclusive.
+     * @return the number of set bits within the range.
+     */
+    public int count(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordRank();
+        }
+        
+        return countImpl(fromIndex, toIndex);
+    }
+    
+    /**
+     * Returns the rank of {@code index} relative to the window 
+     * {@code [fromIndex, toIndex)}, i.e., the number of set bits within 
+     * {@code [fromIndex, index)}.
+     * 
+     * @param fromIndex the starting index of the window, inclusive.
+     * @param toIndex   the ending index of the window, exclusive.
+     * @param index     the target index within {@code [fromIndex, toIndex]}.
+     * @return the rank of {@code index} within the window.
+     */
+    public int rankInRange(int fromIndex, int toIndex, int index) {
+        checkRange(fromIndex, toIndex);
+        
+        if (index < fromIndex || index > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The index (%d) is not within the range " + 
+                            "[%d..%d].",
+                            index,
+                            fromIndex,
+                            toIndex));
+        }
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordRank();
+        }
+        
+        return countImpl(fromIndex, index);
+    }
+    
+    /**
+     * Returns the index of the {@code bitIndex}th 1-bit at or after 
+     * {@code fromIndex}. If the target bit is within the word of 
+     * {@code fromIndex}, no index lookups are made.
+     * 
+     * @param fromIndex the index at which to start.
+     * @param bitIndex  the one-based index of the target 1-bit.
+     * @return the index of the target 1-bit.
+     */
+    public int selectInRange(int fromIndex, int bitIndex) {
+        checkBitAccessIndex(fromIndex);
+        
+        if (bitIndex <= 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The input selection index is not positive " + 
+                            "(%d).",
+                            bitIndex));
+        }
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordSelect();
+        }
+        
+        int wordIndex = fromIndex / Long.SIZE;
+        long word = wordData[wordIndex] & (-1L << fromIndex);
+        
+        if (Long.bitCount(word) >= bitIndex) {
+            return wordIndex * Long.SIZE + selectInWord(word, bitIndex);
+        }
+        
+        makeSureStateIsCompiled();
+        
+        int targetBitIndex = rankImpl(fromIndex) + bitIndex;
+        
+        if (targetBitIndex > numberOfSetBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "There are less than %d set bits at or after " + 
+                            "the index %d.",
+                            bitIndex,
+                            fromIndex));
+        }
+        
+        return selectImplThird(targetBitIndex,
+                               fromIndex, 
+                               numberOfRequestedBits - fromIndex,
+                               targetBitIndex - bitIndex);
+    }
+    
+    /**
+     * Returns the index of the first set bit at or after {@code fromIndex}, 
+     * or {@code -1} if there is no such bit. If the bit is within the word of 
+     * {@code fromIndex}, no index lookups are made; otherwise, a rank and a 
+     * select jump over the clear bits.
+     * 
+     * @param fromIndex the index at which to start, within 
+     *                  {@code [0, getNumberOfSupportedBits()]}.
+     * @return the index of the next set bit or {@code -1}.
+     */
+    public int nextSetBit(int fromIndex) {
+        checkBitIndexForRank(fromIndex);
+        
+        int wordIndex = fromIndex / Long.SIZE;
+        long word = wordData[wordIndex] & (-1L << fromIndex);
+        
+        if (word != 0L) {
+            // The bits beyond the requested bits are always clear:
+            return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+        
+        makeSureStateIsCompiled();
+        
+        int rank = rankImpl(fromIndex);
+        
+        if (rank == numberOfSetBits) {
+            return -1;
+        }
+        
+        return selectImplThird(rank + 1,
+                               fromIndex, 
+                               numberOfRequestedBits - fromIndex,
+                               rank);
+    }
+    
+    /**
+     * Returns a view of the bits within {@code [fromIndex, toIndex)}. The view 
+     * shares the bit storage and the index with this bit vector, so it 
+     * reflects the later writes to this bit vector, and its queries allocate 
+     * nothing.
+     * 
+     * @param fromIndex the starting index of the slice, inclusive.
+     * @param toIndex   the ending index of the slice, exclusive.
+     * @return the view of the slice.
+     */
+    public RankSelectBitVectorSlice slice(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        return new RankSelectBitVectorSlice(this, fromIndex, toIndex);
+    }
+    
+    /**
+     * Returns a cursor positioned at the index zero. The cursor is 
+     * invalidated by the writes to this bit vector.
+     * 
+     * @return a new cursor.
+     */
+    public RankSelectBitVectorCursor cursor() {
+        return new RankSelectBitVectorCursor(this);
+    }
+    
+    /**
+     * Returns {@code true} if the index is up to date with the bits.
+     * 
+     * @return {@code true} if no rebuild is pending.
+     */
+    boolean isIndexed() {
+        return !hasDirtyState && numberOfDirtySuperblocks == 0;
+    }
+    
+    /**
+     * Returns the {@code wordIndex}th word of the storage. The word after the 
+     * last one holding the requested bits is the padding word, which is 
+     * always zero.
+     * 
+     * @param wordIndex the index of the word.
+     * @return the word.
+     */
+    long readWord(int wordIndex) {
+        return wordData[wordIndex];
+    }
+    
+    /**
+     * Implements the {@code O(1)} rank without checking the index or the 
+     * state of the index.
+     * 
+     * @param index the target index.
+     * @return the rank of the input index.
+     */
+    private int rankImpl(int index) {
+        int f = first[index / ell];
+        int s = getSecond(index / k);
+        
+        int thirdEntryIndex = index % k - 1;
+        
+        if (thirdEntryIndex == -1) {
+            return f + s;
+        }
+        
+        if (third == null) {
+            return f + s + countOnes(index - thirdEntryIndex - 1, index);
+        }
+        
+        int selectorIndex = computeSelectorIndex(index);
+        
+        return f + s + third[selectorIndex * (k - 1) + thirdEntryIndex];
+    }
+    
+    /**
+     * Returns the index of the {@code index}th 1-bit. Relies on 
+     * {@link #rankFirst(int)}, which runs in {@code O((log n)^2)}, which yields
+     * {@code O((log n)^3)} running time for the {@code selectFirst}.
+     * 
+     * @param bitIndex the target index.
+     * @return the index of the {@code index}th 1-bit.
+     */
+    public int selectFirst(int bitIndex) {
+        checkBitIndexForSelect(bitIndex);
+        makeSureStateIsCompiled();
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordSelect();
+        }
+        
+        return selectImplFirst(bitIndex, 0, getNumberOfSupportedBits(), 0);
+    }
+    
+    /**
+     * Returns the index of the {@code index}th 1-bit. Relies on 
+     * {@link #rankSecond(int)}, which runs in {@code O(log n)}, which yields
+     * {@code O((log n)^2)} running time for the {@code selectSecond}.
+     * 
+     * @param bitIndex the target index.
+     * @return the index of the {@code index}th 1-bit.
+     */
+    public int selectSecond(int bitIndex) {
+        checkBitIndexForSelect(bitIndex);
+        makeSureStateIsCompiled();
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordSelect();
+        }
+        
+        return selectImplSecond(bitIndex, 0, getNumberOfSupportedBits(), 0);
+    }
+    
+    /**
+     * Returns the index of the {@code index}th 1-bit. Relies on 
+     * {@link #rankThird(int)}, which runs in {@code O(1)}, which yields
+     * {@code O(log n)} running time for the {@code selectThird}.
+     * 
+     * @param bitIndex the target index.
+     * @return the index of the {@code index}th 1-bit.
+     */
+    public int selectThird(int bitIndex) {
+        checkBitIndexForSelect(bitIndex);
+        makeSureStateIsCompiled();
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordSelect();
+        }
+        
+        return selectImplThird(bitIndex, 0, getNumberOfSupportedBits(), 0);
+    }
+    
+    /**
+     * Sets this bit vector to the bitwise AND of itself and {@code other}. The
+     * rank index is rebuilt in the same pass.
+     * 
+     * @param other the other bit vector of the same length.
+     */
+    public void and(RankSelectBitVector other) {
+        checkSameLength(other);
+        applyWordOperation(OPERATION_AND, wordData, other.wordData);
+    }
+    
+    /**
+     * Sets this bit vector to the bitwise OR of itself and {@code other}. The
+     * rank index is rebuilt in the same pass.
+     * 
+     * @param other the other bit vector of the same length.
+     */
+    public void or(RankSelectBitVector other) {
+        checkSameLength(other);
+        applyWordOperation(OPERATION_OR, wordData, other.wordData);
+    }
+    
+    /**
+     * Sets this bit vector to the bitwise XOR of itself and {@code other}. The
+     * rank index is rebuilt in the same pass.
+     * 
+     * @param other the other bit vector of the same length.
+     */
+    public void xor(RankSelectBitVector other) {
+        checkSameLength(other);
+        applyWordOperation(OPERATION_XOR, wordData, other.wordData);
+    }
+    
+    /**
+     * Clears all the bits in this bit vector that are set in {@code other}. 
+     * The rank index is rebuilt in the same pass.
+     * 
+     * @param other the other bit vector of the same length.
+     */
+    public void andNot(RankSelectBitVector other) {
+        checkSameLength(other);
+        applyWordOperation(OPERATION_AND_NOT, wordData, other.wordData);
+    }
+    
+    /**
+     * Flips all the bits of this bit vector. The rank index is rebuilt in the
+     * same pass.
+     */
+    public void not() {
+        applyWordOperation(OPERATION_NOT, wordData, null);
+    }
+    
+    /**
+     * Returns a new bit vector holding the bitwise AND of {@code left} and 
+     * {@code right}. The returned bit vector is indexed.
+     * 
+     * @param left  the left operand.
+     * @param right the right operand of the same length.
+     * @return the bitwise AND of the two input bit vectors.
+     */
+    public static RankSelectBitVector and(RankSelectBitVector left, 
+                                          RankSelectBitVector right) {
+        return combine(OPERATION_AND, left, right);
+    }
+    
+    /**
+     * Returns a new bit vector holding the bitwise OR of {@code left} and 
+     * {@code right}. The returned bit vector is indexed.
+     * 
+     * @param left  the left operand.
+     * @param right the right operand of the same length.
+     * @return the bitwise OR of the two input bit vectors.
+     */
+    public static RankSelectBitVector or(RankSelectBitVector left, 
+                                         RankSelectBitVector right) {
+        return combine(OPERATION_OR, left, right);
+    }
+    
+    /**
+     * Returns a new bit vector holding the bitwise XOR of {@code left} and 
+     * {@code right}. The returned bit vector is indexed.
+     * 
+     * @param left  the left operand.
+     * @param right the right operand of the same length.
+     * @return the bitwise XOR of the two input bit vectors.
+     */
+    public static RankSelectBitVector xor(RankSelectBitVector left, 
+                                          RankSelectBitVector right) {
+        return combine(OPERATION_XOR, left, right);
+    }
+    
+    /**
+     * Returns a new bit vector holding the bits of {@code left} that are not 
+     * set in {@code right}. The returned bit vector is indexed.
+     * 
+     * @param left  the left operand.
+     * @param right the right operand of the same length.
+     * @return the bitwise AND NOT of the two input bit vectors.
+     */
+    public static RankSelectBitVector andNot(RankSelectBitVector left, 
+                                             RankSelectBitVector right) {
+        return combine(OPERATION_AND_NOT, left, right);
+    }
+    
+    /**
+     * Returns a new bit vector holding the concatenation of {@code parts}. 
+     * The result has the layout and the index mode of the first part. The 
+     * words are shifted and copied in bulk. The index of a part is reused as 
+     * is, with its superblock counts offset by the number of set bits before 
+     * the part, if the part is indexed, has the same layout and index mode as 
+     * the result, and starts at a superblock boundary; only the superblocks 
+     * not covered by such parts are recomputed. The returned bit vector is 
+     * indexed.
+     * 
+     * @param parts the bit vectors to concatenate.
+     * @return the concatenation of the input bit vectors.
+     */
+    public static RankSelectBitVector concat(RankSelectBitVector... parts) {
+        if (parts.length == 0) {
+            throw new IllegalArgumentException(
+                    "No bit vectors to concatenate.");
+        }
+        
+        long totalNumberOfBits = 0L;
+        
+        for (RankSelectBitVector part : parts) {
+            totalNumberOfBits += part.numberOfRequestedBits;
+        }
+        
+        if (totalNumberOfBits > Integer.MAX_VALUE - Long.SIZE) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The concatenation has too many bits (%d).", 
+                            totalNumberOfBits));
+        }
+        
+        RankSelectBitVector result = 
+                new RankSelectBitVector((int) totalNumberOfBits,
+                                        parts[0].layout,
+                                        parts[0].hasCompactIndex());
+        
+        int offset = 0;
+        
+        for (RankSelectBitVector part : parts) {
+            result.copyWords(part, offset);
+            offset += part.numberOfRequestedBits;
+        }
+        
+        result.indexConcatenation(parts);
+        return result;
+    }
+    
+    /**
+     * Returns a new bit vector holding the complement of {@code bitVector}. The
+     * returned bit vector is indexed.
+     * 
+     * @param bitVector the bit vector to complement.
+     * @return the complement of the input bit vector.
+     */
+    public static RankSelectBitVector not(RankSelectBitVector bitVector) {
+        RankSelectBitVector result = 
+                new RankSelectBitVector(bitVector.numberOfRequestedBits,
+                                        bitVector.layout,
+                                        bitVector.hasCompactIndex());
+        
+        result.applyWordOperation(OPERATION_NOT, bitVector.wordData, null);
+        return result;
+    }
+    
+    /**
+     * Returns the number of bits set in both this bit vector and 
+     * {@code other}, i.e., the cardinality of their intersection. No result 
+     * bit vector is materialized.
+     * 
+     * @param other the other bit vector of the same length.
+     * @return the cardinality of the intersection.
+     */
+    public int andCardinality(RankSelectBitVector other) {
+        return andCardinality(other, 0, numberOfRequestedBits);
+    }
+    
+    /**
+     * Returns the number of bits within {@code [fromIndex, toIndex)} set in
+     * both this bit vector and {@code other}. Calling with 
+     * {@code fromIndex = 0} yields the rank of {@code toIndex} in the 
+     * intersection. Superblocks that are known to be empty in either bit 
+     * vector are skipped.
+     * 
+     * @param other     the other bit vector of the same length.
+     * @param fromIndex the starting index of the range, inclusive.
+     * @param toIndex   the ending index of the range, exclusive.
+     * @return the cardinality of the intersection within the range.
+     */
+    public int andCardinality(RankSelectBitVector other,
+                              int fromIndex,
+                              int toIndex) {
+        return combinedCardinality(OPERATION_AND, other, fromIndex, toIndex);
+    }
+    
+    /**
+     * Returns the cardinality of the union of this bit vector and 
+     * {@code other}.
+     * 
+     * @param other the other bit vector of the same length.
+     * @return the cardinality of the union.
+     */
+    public int orCardinality(RankSelectBitVector other) {
+        return orCardinality(other, 0, numberOfRequestedBits);
+    }
+    
+    /**
+     * Returns the number of bits within {@code [fromIndex, toIndex)} set in
+     * this bit vector or {@code other}.
+     * 
+     * @param other     the other bit vector of the same length.
+     * @param fromIndex the starting index of the range, inclusive.
+     * @param toIndex   the ending index of the range, exclusive.
+     * @return the cardinality of the union within the range.
+     */
+    public int orCardinality(RankSelectBitVector other,
+                             int fromIndex, 
+                             int toIndex) {
+        return combinedCardinality(OPERATION_OR, other, fromIndex, toIndex);
+    }
+    
+    /**
+     * Returns the cardinality of the symmetric difference of this bit vector
+     * and {@code other}.
+     * 
+     * @param other the other bit vector of the same length.
+     * @return the cardinality of the symmetric difference.
+     */
+    public int xorCardinality(RankSelectBitVector other) {
+        return xorCardinality(other, 0, numberOfRequestedBits);
+    }
+    
+    /**
+     * Returns the number of bits within {@code [fromIndex, toIndex)} set in
+     * exactly one of this bit vector and {@code other}.
+     * 
+     * @param other     the other bit vector of the same length.
+     * @param fromIndex the starting index of the range, inclusive.
+     * @param toIndex   the ending index of the range, exclusive.
+     * @return the cardinality of the symmetric difference within the range.
+     */
+    public int xorCardinality(RankSelectBitVector other,
+                              int fromIndex,
+                              int toIndex) {
+        return combinedCardinality(OPERATION_XOR, other, fromIndex, toIndex);
+    }
+    
+    /**
+     * Returns the number of bits set in this bit vector but not in 
+     * {@code other}.
+     * 
+     * @param other the other bit vector of the same length.
+     * @return the cardinality of the difference.
+     */
+    public int andNotCardinality(RankSelectBitVector other) {
+        return andNotCardinality(other, 0, numberOfRequestedBits);
+    }
+    
+    /**
+     * Returns the number of bits within {@code [fromIndex, toIndex)} set in
+     * this bit vector but not in {@code other}. 
+     * 
+     * @param other     the other bit vector of the same length.
+     * @param fromIndex the starting index of the range, inclusive.
+     * @param toIndex   the ending index of the range, exclusive.
+     * @return the cardinality of the difference within the range.
+     */
+    public int andNotCardinality(RankSelectBitVector other,
+                                 int fromIndex,
+                                 int toIndex) {
+        return combinedCardinality(OPERATION_AND_NOT, 
+                                   other,
+                                   fromIndex, 
+                                   toIndex);
+    }
+    
+    private int selectImplFirst(int bitIndex,
+                                int rangeStartIndex,
+                                int rangeLength,
+                                int rangeStartRank) {
+        
+        if (rangeLength <= Long.SIZE) {
+            return selectFromIndex(rangeStartIndex, 
+                                   bitIndex - rangeStartRank);
+        }
+        
+        int halfRangeLength = rangeLength / 2;
+        int r = rankFirstImpl(halfRangeLength + rangeStartIndex);
+        
+        if (r >= bitIndex) {
+            return selectImplFirst(bitIndex, 
+                                   rangeStartIndex,
+                                   halfRangeLength,
+                                   rangeStartRank);
+        } else {
+            return selectImplFirst(bitIndex, 
+                                   rangeStartIndex + halfRangeLength,
+                                   rangeLength - halfRangeLength,
+                                   r);
+        }
+    }
+    
+    private int selectImplSecond(int bitIndex,
+                                 int rangeStartIndex,
+                                 int rangeLength,
+                                 int rangeStartRank) {
+        
+        if (rangeLength <= Long.SIZE) {
+            return selectFromIndex(rangeStartIndex, 
+                                   bitIndex - rangeStartRank);
+        }
+        
+        int halfRangeLength = rangeLength / 2;
+        int r = rankSecondImpl(halfRangeLength + rangeStartIndex);
+        
+        if (r >= bitIndex) {
+            return selectImplSecond(bitIndex, 
+                                    rangeStartIndex,
+                                    halfRangeLength,
+                                    rangeStartRank);
+        } else {
+            return selectImplSecond(bitIndex, 
+                                    rangeStartIndex + halfRangeLength,
+                                    rangeLength - halfRangeLength,
+                                    r);
+        }
+    }
+    
+    private int selectImplThird(int bitIndex,
+                                int rangeStartIndex,
+                                int rangeLength,
+                                int rangeStartRank) {
+        
+        if (rangeLength <= Long.SIZE) {
+            return selectFromIndex(rangeStartIndex, 
+                                   bitIndex - rangeStartRank);
+        }
+        
+        int halfRangeLength = rangeLength / 2;
+        int r = rankImpl(halfRangeLength + rangeStartIndex);
+        
+        if (r >= bitIndex) {
+            return selectImplThird(bitIndex, 
+                                   rangeStartIndex,
+                                   halfRangeLength,
+                                   rangeStartRank);
+        } else {
+            return selectImplThird(bitIndex, 
+                                   rangeStartIndex + halfRangeLength,
+                                   rangeLength - halfRangeLength,
+                                   r);
+        }
+    }
+    
+    /**
+     * Returns the index of the {@code bitIndex}th set bit at or after 
+     * {@code startIndex}, given that the target bit is within the 
+     * {@code Long.SIZE} bits starting from {@code startIndex}. Finishes in 
+     * constant time via {@link #selectInWord(long, int)}.
+     * 
+     * @param startIndex the index at which to start.
+     * @param bitIndex   the one-based index of the target 1-bit.
+     * @return the index of the target 1-bit.
+     */
+    private int selectFromIndex(int startIndex, int bitIndex) {
+        int wordIndex = startIndex / Long.SIZE;
+        long word = wordData[wordIndex] & (-1L << startIndex);
+        int wordBitCount = Long.bitCount(word);
+        
+        if (wordBitCount < bitIndex) {
+            // The target bit is in the next word:
+            bitIndex -= wordBitCount;
+            word = wordData[++wordIndex];
+        }
+        
+        return wordIndex * Long.SIZE + selectInWord(word, bitIndex);
+    }
+    
+    /**
+     * Implements {@link #count(int, int)} for a validated range.
+     */
+    private int countImpl(int fromIndex, int toIndex) {
+        if (toIndex - fromIndex <= Long.SIZE) {
+            // Spans at most two words, so no need for the index:
+            return countOnes(fromIndex, toIndex);
+        }
+        
+        makeSureStateIsCompiled();
+        return rankImpl(toIndex) - rankImpl(fromIndex);
+    }
+    
+    /**
+     * Returns the index of the {@code bitIndex}th set bit in {@code word} in 
+     * constant time. The byte containing the target bit is located by 
+     * comparing the bytewise prefix popcounts of {@code word} against the 
+     * target rank in parallel, and the bit within that byte is looked up from
+     * {@link #SELECT_IN_BYTE}.
+     * <p>
+     * {@code Long.numberOfTrailingZeros(Long.expand(1L << (bitIndex - 1), 
+     * word))} would compute the same, but {@code Long.expand} is fast only 
+     * where the JIT maps it to the BMI2 instruction {@code PDEP}. Elsewhere it
+     * falls back to a bit-by-bit loop, and even some BMI2 processors run 
+     * {@code PDEP} in slow microcode. The broadword variant takes a fixed 
+     * dozen of ordinary operations on every platform.
+     * 
+     * @param word     the word to search.
+     * @param bitIndex the one-based index of the target set bit. Must not 
+     *                 exceed {@code Long.bitCount(word)}.
+     * @return the zero-based position of the target bit within the word.
+     */
+    static int selectInWord(long word, int bitIndex) {
+        int rank = bitIndex - 1;
+        
+        // Bytewise popcounts:
+        long counts = word - ((word >>> 1) & 0x5555555555555555L);
+        counts = (counts & 0x3333333333333333L) + 
+                 ((counts >>> 2) & 0x3333333333333333L);
+        counts = (counts + (counts >>> 4)) & 0x0F0F0F0F0F0F0F0FL;
+        
+        // The ith byte holds the number of set bits in the bytes 0..i:
+        long prefixCounts = counts * BYTES_ONE;
+        
+        // The high bit of the ith byte is set if and only if the prefix count 
+        // of the ith byte does not exceed 'rank':
+        long notExceeding = ((rank * BYTES_ONE | BYTES_HIGH_BIT) - 
+                             prefixCounts) & BYTES_HIGH_BIT;
+        
+        int byteOffset = Long.bitCount(notExceeding) * Byte.SIZE;
+        int rankInByte = 
+                rank - (int)((prefixCounts << Byte.SIZE) >>> byteOffset & 0xFF);
+        
+        int byteValue = (int)(word >>> byteOffset) & 0xFF;
+        
+        return byteOffset + SELECT_IN_BYTE[rankInByte << Byte.SIZE | byteValue];
+    }
+    
+    /**
+     * The delegate for manipulating bits.
+     * 
+     * @param index the index of the target bit.
+     * @param on    the flag deciding the value of the bit in question.
+     */
+    private void writeBitImpl(int index, boolean on) {
+        boolean previousBitValue = readBit(index);
+        
+        if (on) {
+            if (previousBitValue == false) {
+                markSuperblocksDirty(index / ell, index / ell + 1);
+                numberOfSetBits++;
+            }
+            
+            turnBitOn(index);
+        } else {
+            if (previousBitValue == true) {
+                markSuperblocksDirty(index / ell, index / ell + 1);
+                numberOfSetBits--;
+            }
+            
+            turnBitOff(index);
+        }
+    }
+    
+    /**
+     * Applies {@code operation} with a mask of ones over 
+     * {@code [fromIndex, toIndex)} to the words overlapping the range. Only
+     * the superblocks overlapping the range are marked dirty.
+     * 
+     * @param operation one of {@code OPERATION_OR}, 
+     *                  {@code OPERATION_AND_NOT} and {@code OPERATION_XOR}.
+     * @param fromIndex the starting, inclusive bit index.
+     * @param toIndex   the ending, exclusive bit index.
+     */
+    private void writeRange(int operation, int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        
+        if (fromIndex == toIndex) {
+            return;
+        }
+        
+        int fromWordIndex = fromIndex / Long.SIZE;
+        int toWordIndex = (toIndex - 1) / Long.SIZE;
+        int delta = 0;
+        
+        for (int wordIndex = fromWordIndex; 
+                 wordIndex <= toWordIndex; 
+                 wordIndex++) {
+            
+            long mask = -1L;
+            
+            if (wordIndex == fromWordIndex) {
+                mask &= -1L << fromIndex;
+            }
+            
+            if (wordIndex == toWordIndex) {
+                mask &= -1L >>> -toIndex;
+            }
+            
+            long word = wordData[wordIndex];
+            long newWord;
+            
+            switch (operation) {
+                case OPERATION_OR:
+                    newWord = word | mask;
+                    break;
+                
+                case OPERATION_AND_NOT:
+                    newWord = word & ~mask;
+                    break;
+                
+                default:
+                    newWord = word ^ mask;
+                    break;
+            }
+            
+            wordData[wordIndex] = newWord;
+            delta += Long.bitCount(newWord) - Long.bitCount(word);
+        }
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordWrite();
+        }
+        
+        // Setting or clearing that leaves the count intact changes no bits:
+        if (delta == 0 && operation != OPERATION_XOR) {
+            return;
+        }
+        
+        numberOfSetBits += delta;
+        markSuperblocksDirty(fromIndex / ell, (toIndex - 1) / ell + 1);
+    }
+    
+    /**
+     * Applies {@code operation} to the words holding the {@code positions}, 
+     * one word operation per run of positions within the same word. Only the
+     * superblocks holding changed bits are marked dirty.
+     * 
+     * @param operation either {@code OPERATION_OR} or 
+     *                  {@code OPERATION_AND_NOT}.
+     * @param positions the indices of the target bits.
+     */
+    private void writeBits(int operation, int[] positions) {
+        for (int position : positions) {
+            checkBitAccessIndex(position);
+        }
+        
+        int delta = 0;
+        int i = 0;
+        
+        while (i < positions.length) {
+            int wordIndex = positions[i] / Long.SIZE;
+            long mask = 0L;
+            
+            do {
+                mask |= 1L << positions[i++];
+            } while (i < positions.length 
+                    && positions[i] / Long.SIZE == wordIndex);
+            
+            long word = wordData[wordIndex];
+            long newWord = operation == OPERATION_OR ? 
+                           word | mask : 
+                           word & ~mask;
+            
+            long changedBits = word ^ newWord;
+            
+            if (changedBits == 0L) {
+                continue;
+            }
+            
+            wordData[wordIndex] = newWord;
+            delta += Long.bitCount(newWord) - Long.bitCount(word);
+            
+            // A word may straddle two superblocks:
+            int wordStartIndex = wordIndex * Long.SIZE;
+            int fromIndex = 
+                    wordStartIndex + Long.numberOfTrailingZeros(changedBits);
+            int lastIndex = 
+                    wordStartIndex + Long.SIZE - 1 - 
+                    Long.numberOfLeadingZeros(changedBits);
+            
+            markSuperblocksDirty(fromIndex / ell, lastIndex / ell + 1);
+        }
+        
+        numberOfSetBits += delta;
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordWrite();
+        }
+    }
+    
+    /**
+     * Marks the superblocks within {@code [fromSuperblockIndex, 
+     * toSuperblockIndex)} dirty. Falls back to marking the entire index dirty
+     * if too many superblocks would become dirty.
+     * 
+     * @param fromSuperblockIndex the first superblock to mark, inclusive.
+     * @param toSuperblockIndex   the last superblock to mark, exclusive.
+     */
+    private void markSuperblocksDirty(int fromSuperblockIndex, 
+                                      int toSuperblockIndex) {
+        if (hasDirtyState) {
+            return;
+        }
+        
+        int numberOfSuperblocks = getNumberOfSuperblocks();
+        
+        if ((long)(numberOfDirtySuperblocks + 
+                   toSuperblockIndex - 
+                   fromSuperblockIndex) * PARTIAL_REBUILD_RATIO 
+                > numberOfSuperblocks) {
+            hasDirtyState = true;
+            return;
+        }
+        
+        if (dirtySuperblocks == null) {
+            dirtySuperblocks = 
+                    new long[(numberOfSuperblocks + Long.SIZE - 1) / 
+                             Long.SIZE];
+        }
+        
+        if (numberOfDirtySuperblocks == 0 
+                || firstDirtySuperblockIndex > fromSuperblockIndex) {
+            firstDirtySuperblockIndex = fromSuperblockIndex;
+        }
+        
+        for (int superblockIndex = fromSuperblockIndex; 
+                 superblockIndex < toSuperblockIndex; 
+                 superblockIndex++) {
+            
+            int flagIndex = superblockIndex / Long.SIZE;
+            long mask = 1L << superblockIndex;
+            
+            if ((dirtySuperblocks[flagIndex] & mask) == 0L) {
+                dirtySuperblocks[flagIndex] |= mask;
+                numberOfDirtySuperblocks++;
+            }
+        }
+    }
+    
+    /**
+     * Unmarks all the dirty superblocks. Called after the entire index is 
+     * rebuilt.
+     */
+    private void clearDirtySuperblocks() {
+        if (numberOfDirtySuperblocks > 0) {
+            Arrays.fill(dirtySuperblocks, 0L);
+            numberOfDirtySuperblocks = 0;
+        }
+    }
+    
+    /**
+     * Rebuilds the counts of the dirty superblocks and shifts the 
+     * {@code first} entries following them by the changes of the counts. 
+     * Unmarks the dirty superblocks.
+     */
+    private void rebuildDirtySuperblocks() {
+        int n = numberOfWords * Long.SIZE;
+        int numberOfFirstEntries = getNumberOfFirstEntries();
+        // The index of the next 'first' entry still to be shifted:
+        int nextFirstIndex = firstDirtySuperblockIndex + 1;
+        int shift = 0;
+        
+        for (int flagIndex = firstDirtySuperblockIndex / Long.SIZE;
+                 flagIndex < dirtySuperblocks.length;
+                 flagIndex++) {
+            
+            long flags = dirtySuperblocks[flagIndex];
+            dirtySuperblocks[flagIndex] = 0L;
+            
+            while (flags != 0L) {
+                int superblockIndex = 
+                        flagIndex * Long.SIZE + 
+                        Long.numberOfTrailingZeros(flags);
+                
+                flags &= flags - 1;
+                
+                for (; nextFirstIndex <= superblockIndex; nextFirstIndex++) {
+                    first[nextFirstIndex] += shift;
+                }
+                
+                int count;
+                
+                if (indexedSuperblocks == null) {
+                    count = indexSuperblock(superblockIndex);
+                } else {
+                    // The lazy index mode rebuilds the block counts on 
+                    // demand:
+                    int startIndex = superblockIndex * ell;
+                    count = countOnes(startIndex, 
+                                      Math.min(startIndex + ell, n));
+                    
+                    indexedSuperblocks.getAndAccumulate(
+                            superblockIndex / Long.SIZE, 
+                            1L << superblockIndex, 
+                            (a, b) -> a & ~b);
+                }
+                
+                if (superblockIndex + 1 < numberOfFirstEntries) {
+                    int newFirst = first[superblockIndex] + count;
+                    shift = newFirst - first[superblockIndex + 1];
+                    first[superblockIndex + 1] = newFirst;
+                    nextFirstIndex = superblockIndex + 2;
+                }
+            }
+        }
+        
+        if (shift != 0) {
+            for (; nextFirstIndex < numberOfFirstEntries; nextFirstIndex++) {
+                first[nextFirstIndex] += shift;
+            }
+        }
+        
+        numberOfDirtySuperblocks = 0;
+    }
+    
+    /**
+     * Copies {@code words} to the beginning of the bit storage. The bits 
+     * beyond the requested bits are ignored.
+     * 
+     * @param words the words to copy.
+     */
+    void setWords(long[] words) {
+        int numberOfCopiedWords = 
+                Math.min(words.length, 
+                         (numberOfRequestedBits + Long.SIZE - 1) / Long.SIZE);
+        
+        System.arraycopy(words, 0, wordData, 0, numberOfCopiedWords);
+        
+        if (numberOfCopiedWords > 0) {
+            wordData[numberOfCopiedWords - 1] &= 
+                    getValidBitsMask(numberOfCopiedWords - 1);
+        }
+        
+        hasDirtyState = true;
+        
+        // Rebuilding the index recounts the set bits:
+        rebuildIndices(false);
+    }
+    
+    /**
+     * Implements the actual reading of a bit.
+     * 
+     * @param index the index of the target bit to read.
+     * @return the value of the target bit.
+     */
+    boolean readBitImpl(int index) {
+        int targetLongIndex = index / Long.SIZE;
+        int targetLongBitIndex = index % Long.SIZE;
+        long targetLong = wordData[targetLongIndex];
+        return (targetLong & (1L << targetLongBitIndex)) != 0;
+    }
+    
+    /**
+     * Makes sure that the state of the internal data structures is up to date.
+     */
+    private void makeSureStateIsCompiled() {
+        if (!isIndexed()) {
+            rebuildIndices(true);
+        }
+    }
+    
+    /**
+     * Rebuilds the index and reports the rebuild to the metrics and the JDK 
+     * Flight Recorder.
+     * 
+     * @param triggeredByQuery whether a query requested the rebuild.
+     */
+    private void rebuildIndices(boolean triggeredByQuery) {
+        IndexRebuildEvent event = new IndexRebuildEvent();
+        event.begin();
+        
+        long startTime = RankSelectBitVectorMetrics.ENABLED ? 
+                         System.nanoTime() : 
+                         0L;
+        
+        if (!hasDirtyState) {
+            rebuildDirtySuperblocks();
+        } else if (indexedSuperblocks != null) {
+            sweepSuperblockCounts();
+        } else {
+            applyWordOperation(OPERATION_NONE, null, null);
+        }
+        
+        if (RankSelectBitVectorMetrics.ENABLED) {
+            RankSelectBitVectorMetrics.recordRebuild(
+                    System.nanoTime() - startTime,
+                    triggeredByQuery);
+        }
+        
+        if (event.shouldCommit()) {
+            event.numberOfBits = numberOfRequestedBits;
+            event.numberOfSetBits = numberOfSetBits;
+            event.triggeredByQuery = triggeredByQuery;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Turns the {@code index}th bit on. Indexation is zero-based.
+     * 
+     * @param index the target bit index.
+     */
+    private void turnBitOn(int index) {
+        int targetLongIndex = index / Long.SIZE;
+        int targetLongBitIndex = index % Long.SIZE;
+        long mask = 1L;
+        mask <<= targetLongBitIndex;
+        wordData[targetLongIndex] |= mask;
+    }
+    
+    /**
+     * Turns the {@code index}th bit off. Indexation is zero-based.
+     * 
+     * @param index the target bit index.
+     */
+    private void turnBitOff(int index) {
+        int targetLongIndex = index / Long.SIZE;
+        int targetLongBitIndex = index % Long.SIZE;
+        long mask = 1L;
+        mask <<= targetLongBitIndex;
+        wordData[targetLongIndex] &= ~mask;
+    }
+    
+    private static RankSelectBitVector combine(int operation, 
+                                               RankSelectBitVector left,
+                                               RankSelectBitVector right) {
+        left.checkSameLength(right);
+        
+        RankSelectBitVector result = 
+                new RankSelectBitVector(left.numberOfRequestedBits,
+                                        left.layout,
+                                        left.hasCompactIndex());
+        
+        result.applyWordOperation(operation, left.wordData, right.wordData);
+        return result;
+    }
+    
+    /**
+     * Returns a copy of this bit vector with the same layout and index mode.
+     * Only the words are copied; the index of the copy is built on its first 
+     * query or {@link #buildIndices()}.
+     * 
+     * @return an unindexed copy of this bit vector.
+     */
+    RankSelectBitVector copyWithoutIndex() {
+        RankSelectBitVector copy = 
+                new RankSelectBitVector(numberOfRequestedBits, 
+                                        layout, 
+                                        hasCompactIndex(),
+                                        hasLazyIndex());
+        
+        System.arraycopy(wordData, 0, copy.wordData, 0, numberOfWords);
+        copy.numberOfSetBits = numberOfSetBits;
+        return copy;
+    }
+    
+    /**
+     * ORs the bits of {@code part} into this bit vector starting from the 
+     * bit index {@code offset}.
+     * 
+     * @param part   the bit vector to copy.
+     * @param offset the index of the first target bit.
+     */
+    private void copyWords(RankSelectBitVector part, int offset) {
+        int targetWordIndex = offset / Long.SIZE;
+        int shift = offset % Long.SIZE;
+        int numberOfPartWords = 
+                (part.numberOfRequestedBits + Long.SIZE - 1) / Long.SIZE;
+        
+        if (shift == 0) {
+            System.arraycopy(part.wordData, 
+                             0, 
+                             wordData, 
+                             targetWordIndex, 
+                             numberOfPartWords);
+            return;
+        }
+        
+        // The bits beyond the requested bits are clear in both, so the 
+        // spill into the word after the last one is harmless:
+        for (int i = 0; i < numberOfPartWords; i++) {
+            long word = part.wordData[i];
+            wordData[targetWordIndex + i] |= word << shift;
+            wordData[targetWordIndex + i + 1] |= word >>> (Long.SIZE - shift);
+        }
+    }
+    
+    /**
+     * Builds the index of this bit vector holding the concatenation of 
+     * {@code parts}, reusing the indices of the parts where possible.
+     * 
+     * @param parts the concatenated bit vectors.
+     */
+    private void indexConcatenation(RankSelectBitVector[] parts) {
+        int n = numberOfWords * Long.SIZE;
+        int numberOfSuperblocks = n / ell + (n % ell != 0 ? 1 : 0);
+        int blocksPerSuperblock = ell / k;
+        int superblockIndex = 0;
+        int offset = 0;
+        
+        first[0] = 0;
+        
+        for (RankSelectBitVector part : parts) {
+            if (canReuseIndexOf(part, offset)) {
+                int fromSuperblockIndex = offset / ell;
+                
+                indexSuperblocks(superblockIndex, fromSuperblockIndex);
+                
+                // Only the superblocks that are complete within the part:
+                int numberOfReusedSuperblocks = 
+                        part.numberOfRequestedBits / ell;
+                
+                copySecond(part, 
+                           fromSuperblockIndex * blocksPerSuperblock,
+                           numberOfReusedSuperblocks * blocksPerSuperblock);
+                
+                int base = first[fromSuperblockIndex];
+                
+                for (int i = 1; i <= numberOfReusedSuperblocks; i++) {
+                    first[fromSuperblockIndex + i] = base + part.first[i];
+                }
+                
+                superblockIndex = 
+                        fromSuperblockIndex + numberOfReusedSuperblocks;
+            }
+            
+            offset += part.numberOfRequestedBits;
+        }
+        
+        indexSuperblocks(superblockIndex, numberOfSuperblocks);
+        
+        numberOfSetBits = rankImpl(numberOfRequestedBits);
+        hasDirtyState = false;
+        clearDirtySuperblocks();
+    }
+    
+    /**
+     * Recomputes the {@code second} entries of the superblocks within 
+     * {@code [fromSuperblockIndex, toSuperblockIndex)} and the {@code first}
+     * entries following them.
+     * 
+     * @param fromSuperblockIndex the first superblock to index, inclusive.
+     * @param toSuperblockIndex   the last superblock to index, exclusive.
+     */
+    private void indexSuperblocks(int fromSuperblockIndex, 
+                                  int toSuperblockIndex) {
+        for (int superblockIndex = fromSuperblockIndex;
+                 superblockIndex < toSuperblockIndex; 
+                 superblockIndex++) {
+            
+            int count = indexSuperblock(superblockIndex);
+            
+            if (superblockIndex + 1 < getNumberOfFirstEntries()) {
+                first[superblockIndex + 1] = first[superblockIndex] + count;
+            }
+        }
+    }
+    
+    /**
+     * Returns {@code true} if the index of {@code part} can be copied to the 
+     * index of this bit vector when {@code part} is placed at {@code offset}.
+     * 
+     * @param part   the part of the concatenation.
+     * @param offset the starting bit index of the part.
+     * @return {@code true} if the index of the part is reusable.
+     */
+    private boolean canReuseIndexOf(RankSelectBitVector part, int offset) {
+        return part.isIndexed()
+                && part.indexedSuperblocks == null
+                && part.layout.equals(layout)
+                && part.hasCompactIndex() == hasCompactIndex()
+                && offset % ell == 0;
+    }
+    
+    /**
+     * Copies the first {@code length} {@code second} entries of {@code part}
+     * starting at the block {@code fromBlockIndex}. Both use the same 
+     * representation.
+     * 
+     * @param part           the source bit vector.
+     * @param fromBlockIndex the first target block.
+     * @param length         the number of entries to copy.
+     */
+    private void copySecond(RankSelectBitVector part, 
+                            int fromBlockIndex,
+                            int length) {
+        if (second != null) {
+            System.arraycopy(part.second, 0, second, fromBlockIndex, length);
+        } else if (secondBytes != null) {
+            System.arraycopy(part.secondBytes, 
+                             0, 
+                             secondBytes, 
+                             fromBlockIndex, 
+                             length);
+        } else {
+            System.arraycopy(part.secondChars, 
+                             0, 
+                             secondChars, 
+                             fromBlockIndex, 
+                             length);
+        }
+    }
+    
+    /**
+     * Writes {@code operation(leftWords, rightWords)} to {@code wordData} and 
+     * rebuilds {@code first} and {@code second} in the same pass. Large bit 
+     * vectors are processed in parallel in tasks each covering a 
+     * word-aligned run of superblocks, so that no two tasks write to the same 
+     * word. If {@code operation} is {@link #OPERATION_NONE}, the words are 
+     * left intact and only the index is rebuilt.
+     * 
+     * @param operation  the operation code.
+     * @param leftWords  the words of the left operand.
+     * @param rightWords the words of the right operand.
+     */
+    private void applyWordOperation(int operation, 
+                                    long[] leftWords,
+                                    long[] rightWords) {
+        int n = numberOfWords * Long.SIZE;
+        int numberOfSuperblocks = n / ell + (n % ell != 0 ? 1 : 0);
+        
+        // The number of superblocks that spans a whole number of words:
+        int alignment = Long.SIZE / gcd(ell, Long.SIZE);
+        int superblocksPerTask = 
+                alignment * Math.max(1, PARALLEL_TASK_BITS / 
+                                        (ell * alignment));
+        
+        int numberOfTasks = numberOfSuperblocks / superblocksPerTask + 
+                           (numberOfSuperblocks % superblocksPerTask != 0 ? 
+                            1 : 0);
+        
+        int setBits;
+        
+        if (numberOfWords < PARALLEL_THRESHOLD_WORDS || numberOfTasks == 1) {
+            setBits = processTask(operation,
+                                  leftWords,
+                                  rightWords,
+                                  0,
+                                  numberOfSuperblocks);
+        } else {
+            setBits = IntStream.range(0, numberOfTasks)
+                               .parallel()
+                               .map(task -> processTask(
+                                       operation,
+                                       leftWords,
+                                       rightWords,
+                                       task * superblocksPerTask, 
+                                       Math.min(numberOfSuperblocks, 
+                                                (task + 1) * 
+                                                superblocksPerTask)))
+                               .sum();
+        }
+        
+        // processTask() left the superblock counts in 'first', shifted by one
+        // slot. Convert them to prefix sums:
+        first[0] = 0;
+        
+        for (int i = 1; i < getNumberOfFirstEntries(); i++) {
+            first[i] += first[i - 1];
+        }
+        
+        numberOfSetBits = setBits;
+        hasDirtyState = false;
+        clearDirtySuperblocks();
+    }
+    
+    /**
+     * Applies the word operation to the words of the superblocks 
+     * {@code [fromSuperblockIndex, toSuperblockIndex)}, and then computes the 
+     * {@code second} entries of the same superblocks. The count of the 
+     * {@code i}th superblock is stored in {@code first[i + 1]}.
+     * 
+     * @return the number of set bits in the processed superblocks.
+     */
+    private int processTask(int operation,
+                            long[] leftWords,
+                            long[] rightWords,
+                            int fromSuperblockIndex,
+                            int toSuperblockIndex) {
+        
+        if (operation != OPERATION_NONE) {
+            int fromWordIndex = 
+                    (int)((long) fromSuperblockIndex * ell / Long.SIZE);
+            
+            int toWordIndex = 
+                    (int) Math.min(numberOfWords,
+                                   ((long) toSuperblockIndex * ell + 
+                                    Long.SIZE - 1) / Long.SIZE);
+            
+            applyWordOperation(operation,
+                               leftWords,
+                               rightWords,
+                               fromWordIndex,
+                               toWordIndex);
+        }
+        
+        int setBits = 0;
+        
+        for (int superblockIndex = fromSuperblockIndex; 
+                 superblockIndex < toSuperblockIndex;
+                 superblockIndex++) {
+            
+            int count = indexSuperblock(superblockIndex);
+            
+            if (superblockIndex + 1 < getNumberOfFirstEntries()) {
+                first[superblockIndex + 1] = count;
+            }
+            
+            setBits += count;
+        }
+        
+        return setBits;
+    }
+    
+    private void applyWordOperation(int operation,
+                                    long[] leftWords,
+                                    long[] rightWords,
+                                    int fromWordIndex,
+                                    int toWordIndex) {
+        switch (operation) {
+            case OPERATION_AND:
+                for (int i = fromWordIndex; i < toWordIndex; i++) {
+                    wordData[i] = leftWords[i] & rightWords[i];
+                }
+                
+                break;
+            
+            case OPERATION_OR:
+                for (int i = fromWordIndex; i < toWordIndex; i++) {
+                    wordData[i] = leftWords[i] | rightWords[i];
+                }
+                
+                break;
+            
+            case OPERATION_XOR:
+                for (int i = fromWordIndex; i < toWordIndex; i++) {
+                    wordData[i] = leftWords[i] ^ rightWords[i];
+                }
+                
+                break;
+            
+            case OPERATION_AND_NOT:
+                for (int i = fromWordIndex; i < toWordIndex; i++) {
+                    wordData[i] = leftWords[i] & ~rightWords[i];
+                }
+                
+                break;
+            
+            case OPERATION_NOT:
+                for (int i = fromWordIndex; i < toWordIndex; i++) {
+                    wordData[i] = ~leftWords[i];
+                }
+                
+                // Clear the bits beyond the requested bits:
+                for (int i = Math.max(fromWordIndex, 
+                                      numberOfRequestedBits / Long.SIZE);
+                         i < toWordIndex; 
+                         i++) {
+                    
+                    wordData[i] &= getValidBitsMask(i);
+                }
+                
+                break;
+            
+            default:
+                throw new IllegalStateException(
+                        "Unknown operation: " + operation);
+        }
+    }
+    
+    /**
+     * Counts the bits of {@code operation(this, other)} within 
+     * {@code [fromIndex, toIndex)}. The superblock counters of whichever 
+     * operand is indexed are used to skip the superblocks that cannot 
+     * contribute to the result.
+     */
+    private int combinedCardinality(int operation,
+                                    RankSelectBitVector other,
+                                    int fromIndex,
+                                    int toIndex) {
+        checkSameLength(other);
+        checkRange(fromIndex, toIndex);
+        
+        if (fromIndex == toIndex) {
+            return 0;
+        }
+        
+        boolean thisIndexed = isIndexed();
+        // The superblocks of 'other' match only with equal superblock sizes:
+        boolean otherIndexed = other.isIndexed() && other.ell == ell;
+        boolean canSkip;
+        
+        switch (operation) {
+            case OPERATION_AND:
+                canSkip = thisIndexed || otherIndexed;
+                break;
+            
+            case OPERATION_AND_NOT:
+                canSkip = thisIndexed;
+                break;
+            
+            default:
+                canSkip = thisIndexed && otherIndexed;
+                break;
+        }
+        
+        if (!canSkip) {
+            return countCombinedOnes(operation, 
+                                     other.wordData,
+                                     fromIndex, 
+                                     toIndex);
+        }
+        
+        int count = 0;
+        int runStartIndex = fromIndex;
+        int fromSuperblockIndex = fromIndex / ell;
+        int toSuperblockIndex = (toIndex - 1) / ell;
+        
+        for (int superblockIndex = fromSuperblockIndex;
+                 superblockIndex <= toSuperblockIndex;
+                 superblockIndex++) {
+            
+            boolean thisEmpty = 
+                    thisIndexed && isEmptySuperblock(superblockIndex);
+            
+            boolean otherEmpty = 
+                    otherIndexed && other.isEmptySuperblock(superblockIndex);
+            
+            boolean skip;
+            
+            switch (operation) {
+                case OPERATION_AND:
+                    skip = thisEmpty || otherEmpty;
+                    break;
+                
+                case OPERATION_AND_NOT:
+                    skip = thisEmpty;
+                    break;
+                
+                default:
+                    skip = thisEmpty && otherEmpty;
+                    break;
+            }
+            
+            if (skip) {
+                // Count the pending run of superblocks and jump over the 
+                // current one:
+                int superblockStartIndex = superblockIndex * ell;
+                
+                count += countCombinedOnes(
+                        operation, 
+                        other.wordData, 
+                        runStartIndex,
+                        Math.max(runStartIndex, superblockStartIndex));
+                
+                runStartIndex = Math.min(toIndex, superblockStartIndex + ell);
+            }
+        }
+        
+        return count + countCombinedOnes(operation, 
+                                         other.wordData,
+                                         runStartIndex,
+                                         toIndex);
+    }
+    
+    /**
+     * Returns {@code true} if and only if the index says that the 
+     * {@code superblockIndex}th superblock contains no set bits.
      * 
-     * @param index the index of the target bit.
+     * @param superblockIndex the index of the target superblock.
+     * @return {@code true} if the target superblock is known to be empty.
      */
-    public void writeBitOn(int index) {
-        writeBit(index, true);
+    private boolean isEmptySuperblock(int superblockIndex) {
+        if (superblockIndex + 1 >= getNumberOfFirstEntries()) {
+            // The last, partial superblock has no ending counter:
+            return false;
+        }
+        
+        return first[superblockIndex] == first[superblockIndex + 1];
     }
     
-    /**
-     * Sets the {@code index}th bit to zero (0).
-     * 
-     * @param index the index of the target bit.
-     */
-    public void writeBitOff(int index) {
-        writeBit(index, false);
+    // Computes the number of set bits in operation(wordData, otherWords) 
+    // within the range [fromIndex, toIndex).
+    private int countCombinedOnes(int operation,
+                                  long[] otherWords,
+                                  int fromIndex,
+                                  int toIndex) {
+        if (fromIndex >= toIndex) {
+            return 0;
+        }
+        
+        int fromWordIndex = fromIndex / Long.SIZE;
+        int toWordIndex = (toIndex - 1) / Long.SIZE;
+        long fromMask = -1L << fromIndex;
+        long toMask = -1L >>> -toIndex;
+        
+        if (fromWordIndex == toWordIndex) {
+            return Long.bitCount(combineWords(operation, 
+                                              wordData[fromWordIndex],
+                                              otherWords[fromWordIndex])
+                                 & fromMask & toMask);
+        }
+        
+        int count = Long.bitCount(combineWords(operation,
+                                               wordData[fromWordIndex],
+                                               otherWords[fromWordIndex])
+                                  & fromMask);
+        
+        switch (operation) {
+            case OPERATION_AND:
+                for (int i = fromWordIndex + 1; i < toWordIndex; i++) {
+                    count += Long.bitCount(wordData[i] & otherWords[i]);
+                }
+                
+                break;
+            
+            case OPERATION_OR:
+                for (int i = fromWordIndex + 1; i < toWordIndex; i++) {
+                    count += Long.bitCount(wordData[i] | otherWords[i]);
+                }
+                
+                break;
+            
+            case OPERATION_XOR:
+                for (int i = fromWordIndex + 1; i < toWordIndex; i++) {
+                    count += Long.bitCount(wordData[i] ^ otherWords[i]);
+                }
+                
+                break;
+            
+            case OPERATION_AND_NOT:
+                for (int i = fromWordIndex + 1; i < toWordIndex; i++) {
+                    count += Long.bitCount(wordData[i] & ~otherWords[i]);
+                }
+                
+                break;
+            
+            default:
+                throw new IllegalStateException(
+                        "Unknown operation: " + operation);
+        }
+        
+        return count + Long.bitCount(combineWords(operation,
+                                                  wordData[toWordIndex],
+                                                  otherWords[toWordIndex])
+                                     & toMask);
     }
     
-    /**
-     * Writes the {@code index}th bit to {@code on}.
-     * 
-     * @param index the index of the target bit.
-     * @param on    the selector of the bit: if {@code true}, the bit will be 
-     *              set to one, otherwise set zero.
-     */
-    public void writeBit(int index, boolean on) {
-        checkBitAccessIndex(index);
-        writeBitImpl(index, on);
+    private static long combineWords(int operation, long word1, long word2) {
+        switch (operation) {
+            case OPERATION_AND:
+                return word1 & word2;
+            
+            case OPERATION_OR:
+                return word1 | word2;
+            
+            case OPERATION_XOR:
+                return word1 ^ word2;
+            
+            case OPERATION_AND_NOT:
+                return word1 & ~word2;
+            
+            default:
+                throw new IllegalStateException(
+                        "Unknown operation: " + operation);
+        }
     }
     
     /**
-     * Reads the {@code index}th bit where indexation starts from zero (0).
+     * Computes the {@code second} entries of the {@code superblockIndex}th 
+     * superblock.
      * 
-     * @param index the bit index.
-     * @return {@code true} if and only if the {@code index}th bit is set.
+     * @param superblockIndex the index of the target superblock.
+     * @return the number of set bits in the target superblock.
      */
-    public boolean readBit(int index) {
-        checkBitAccessIndex(index);
-        return readBitImpl(index);
+    private int indexSuperblock(int superblockIndex) {
+        int n = numberOfWords * Long.SIZE;
+        int startIndex = superblockIndex * ell;
+        int endIndex = Math.min(startIndex + ell, n);
+        int count = 0;
+        
+        for (int blockStartIndex = startIndex, blockIndex = startIndex / k;
+                 blockStartIndex < endIndex;
+                 blockStartIndex += k, blockIndex++) {
+            
+            setSecond(blockIndex, count);
+            count += countOnes(blockStartIndex,
+                               Math.min(blockStartIndex + k, endIndex));
+        }
+        
+        return count;
     }
     
-    /**
-     * Returns the rank of {@code index}, i.e., the number of set bits in the 
-     * subvector {@code vector[1..index]}. Runs in {@code O((log n)^2)} time.
-     * 
-     * @param index the target index.
-     * @return the rank for the input target.
-     */
-    public int rankFirst(int index) {
-        checkBitIndexForRank(index);
-        makeSureStateIsCompiled();
+    private int getSecond(int blockIndex) {
+        if (indexedSuperblocks != null) {
+            ensureSuperblockIndexed((int)((long) blockIndex * k / ell));
+        }
         
-        int startIndex = ell * (index / ell);
-        int endIndex = index - 1;
+        if (second != null) {
+            return second[blockIndex];
+        }
         
-        return first[index / ell] + bruteForceRank(startIndex, endIndex);
+        if (secondBytes != null) {
+            return secondBytes[blockIndex] & 0xFF;
+        }
+        
+        return secondChars[blockIndex];
     }
     
     /**
-     * Returns the {@code index}th rank. Runs in {@code O(log n)} time.
+     * Builds the block counts of the superblock {@code superblockIndex} unless
+     * already built. The counts are published by setting the flag of the 
+     * superblock, which is a volatile write.
      * 
-     * @param index the target index.
-     * @return the rank of the input index.
+     * @param superblockIndex the index of the target superblock.
      */
-    public int rankSecond(int index) {
-        checkBitIndexForRank(index);
-        makeSureStateIsCompiled();
+    private void ensureSuperblockIndexed(int superblockIndex) {
+        int flagIndex = superblockIndex / Long.SIZE;
+        long mask = 1L << superblockIndex;
         
-        int startIndex = k * (index / k);
-        int endIndex = index - 1;
+        if ((indexedSuperblocks.get(flagIndex) & mask) != 0L) {
+            return;
+        }
         
-        return first[index / ell] +
-               second[index / k] + 
-               bruteForceRank(startIndex, 
-                              endIndex);
+        indexSuperblock(superblockIndex);
+        indexedSuperblocks.getAndAccumulate(flagIndex, mask, (a, b) -> a | b);
     }
     
     /**
-     * Returns the {@code index}th rank. Runs in {@code O(1)} time.
-     * 
-     * @param index the target index.
-     * @return the rank of the input index.
+     * Rebuilds the index in the lazy index mode: computes the superblock 
+     * counts with a popcount sweep over the words and marks all the 
+     * superblocks as not indexed.
      */
-    public int rankThird(int index) {
-        checkBitIndexForRank(index);
-        makeSureStateIsCompiled();
+    private void sweepSuperblockCounts() {
+        int n = numberOfWords * Long.SIZE;
+        int numberOfFirstEntries = getNumberOfFirstEntries();
+        IntStream superblockIndices = IntStream.range(1, numberOfFirstEntries);
         
-        int f = first[index / ell];
-        int s = second[index / k];
+        if (numberOfWords >= PARALLEL_THRESHOLD_WORDS) {
+            superblockIndices = superblockIndices.parallel();
+        }
         
-        int thirdEntryIndex = index % k - 1;
+        // Each entry first receives the count of the preceding superblock:
+        superblockIndices.forEach(
+                i -> first[i] = countOnes((i - 1) * ell, i * ell));
         
-        if (thirdEntryIndex == -1) {
-            return f + s;
+        first[0] = 0;
+        
+        for (int i = 1; i < numberOfFirstEntries; i++) {
+            first[i] += first[i - 1];
         }
         
-        int selectorIndex = computeSelectorIndex(index);
+        int lastSuperblockStartIndex = (numberOfFirstEntries - 1) * ell;
+        
+        numberOfSetBits = first[numberOfFirstEntries - 1] + 
+                          countOnes(Math.min(lastSuperblockStartIndex, n), n);
+        
+        for (int i = 0; i < indexedSuperblocks.length(); i++) {
+            indexedSuperblocks.set(i, 0L);
+        }
         
-        return f + s + third[selectorIndex][thirdEntryIndex];
+        hasDirtyState = false;
+        clearDirtySuperblocks();
     }
     
-    /**
-     * Returns the index of the {@code index}th 1-bit. Relies on 
-     * {@link #rankFirst(int)}, which runs in {@code O((log n)^2)}, which yields
-     * {@code O((log n)^3)} running time for the {@code selectFirst}.
-     * 
-     * @param bitIndex the target index.
-     * @return the index of the {@code index}th 1-bit.
-     */
-    public int selectFirst(int bitIndex) {
-        checkBitIndexForSelect(bitIndex);
-        return selectImplFirst(bitIndex, 0, getNumberOfSupportedBits());
+    private void setSecond(int blockIndex, int count) {
+        if (second != null) {
+            second[blockIndex] = count;
+        } else if (secondBytes != null) {
+            secondBytes[blockIndex] = (byte) count;
+        } else {
+            secondChars[blockIndex] = (char) count;
+        }
     }
     
     /**
-     * Returns the index of the {@code index}th 1-bit. Relies on 
-     * {@link #rankSecond(int)}, which runs in {@code O(log n)}, which yields
-     * {@code O((log n)^2)} running time for the {@code selectSecond}.
+     * Returns the shared {@code third} table for the block size {@code k}, 
+     * building it via the four Russians' technique on first request. The 
+     * table is flattened: the {@code j}th entry of the row for the selector 
+     * {@code x} is at {@code x * (k - 1) + j} and holds the number of set 
+     * bits among the {@code j + 1} most significant bits of the 
+     * {@code (k - 1)}-bit selector.
      * 
-     * @param bitIndex the target index.
-     * @return the index of the {@code index}th 1-bit.
+     * @param k the block size.
+     * @return the lookup table for {@code k}.
      */
-    public int selectSecond(int bitIndex) {
-        checkBitIndexForSelect(bitIndex);
-        return selectImplSecond(bitIndex, 0, getNumberOfSupportedBits());
+    private static synchronized byte[] getLookupTable(int k) {
+        byte[] table = LOOKUP_TABLES[k];
+        
+        if (table != null) {
+            return table;
+        }
+        
+        int rowLength = k - 1;
+        int numberOfRows = 1 << rowLength;
+        table = new byte[numberOfRows * rowLength];
+        
+        for (int selectorIndex = 0;
+                 selectorIndex < numberOfRows;
+                 selectorIndex++) {
+            
+            int rowStartIndex = selectorIndex * rowLength;
+            table[rowStartIndex] = 
+                    (byte)(bitIsSet(selectorIndex, k - 2) ? 1 : 0);
+            
+            for (int j = 1; j < rowLength; j++) {
+                table[rowStartIndex + j] = 
+                        (byte)(table[rowStartIndex + j - 1] + 
+                               (bitIsSet(selectorIndex, k - j - 2) ? 1 : 0));
+            }
+        }
+        
+        LOOKUP_TABLES[k] = table;
+        return table;
     }
     
     /**
-     * Returns the index of the {@code index}th 1-bit. Relies on 
-     * {@link #rankThird(int)}, which runs in {@code O(1)}, which yields
-     * {@code O(log n)} running time for the {@code selectThird}.
+     * Returns the mask of the bits of the {@code wordIndex}th word that lie 
+     * within the requested bits.
      * 
-     * @param bitIndex the target index.
-     * @return the index of the {@code index}th 1-bit.
+     * @param wordIndex the index of the target word.
+     * @return the mask of the valid bits.
      */
-    public int selectThird(int bitIndex) {
-        checkBitIndexForSelect(bitIndex);
-        return selectImplThird(bitIndex, 0, getNumberOfSupportedBits());
-    }
-    
-    private int selectImplFirst(int bitIndex,
-                                int rangeStartIndex,
-                                int rangeLength) {
+    private long getValidBitsMask(int wordIndex) {
+        long startIndex = (long) wordIndex * Long.SIZE;
         
-        if (rangeLength == 1) {
-            return rangeStartIndex;
+        if (startIndex + Long.SIZE <= numberOfRequestedBits) {
+            return -1L;
         }
         
-        int halfRangeLength = rangeLength / 2;
-        int r = rankFirst(halfRangeLength + rangeStartIndex);
-        
-        if (r >= bitIndex) {
-            return selectImplFirst(bitIndex, 
-                                   rangeStartIndex,
-                                   halfRangeLength);
-        } else {
-            return selectImplFirst(bitIndex, 
-                                   rangeStartIndex + halfRangeLength,
-                                   rangeLength - halfRangeLength);
+        if (startIndex >= numberOfRequestedBits) {
+            return 0L;
         }
+        
+        return -1L >>> (Long.SIZE - (numberOfRequestedBits - startIndex));
     }
     
-    private int selectImplSecond(int bitIndex, 
-                                 int rangeStartIndex,
-                                 int rangeLength) {
+    // Computes the number of set bits in the range [fromIndex, toIndex).
+    private int countOnes(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return 0;
+        }
         
-        if (rangeLength == 1) {
-            return rangeStartIndex;
+        int fromWordIndex = fromIndex / Long.SIZE;
+        int toWordIndex = (toIndex - 1) / Long.SIZE;
+        long fromMask = -1L << fromIndex;
+        long toMask = -1L >>> -toIndex;
+        
+        if (fromWordIndex == toWordIndex) {
+            return Long.bitCount(wordData[fromWordIndex] & fromMask & toMask);
         }
         
-        int halfRangeLength = rangeLength / 2;
-        int r = rankSecond(halfRangeLength + rangeStartIndex);
+        int count = Long.bitCount(wordData[fromWordIndex] & fromMask);
         
-        if (r >= bitIndex) {
-            return selectImplSecond(bitIndex, 
-                                    rangeStartIndex,
-                                    halfRangeLength);
-        } else {
-            return selectImplSecond(bitIndex, 
-                                    rangeStartIndex + halfRangeLength,
-                                    rangeLength - halfRangeLength);
+        for (int i = fromWordIndex + 1; i < toWordIndex; i++) {
+            count += Long.bitCount(wordData[i]);
         }
+        
+        return count + Long.bitCount(wordData[toWordIndex] & toMask);
     }
     
-    private int selectImplThird(int bitIndex,
-                                int rangeStartIndex, 
-                                int rangeLength) {
-        
-        if (rangeLength == 1) {
-            return rangeStartIndex;
+    private void checkRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Negative range start index: %d.", 
+                                  fromIndex));
         }
         
-        int halfRangeLength = rangeLength / 2;
-        int r = rankThird(halfRangeLength + rangeStartIndex);
+        if (toIndex > numberOfRequestedBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "Too large range end index (%d), number of bits " + 
+                            "supported is %d.",
+                            toIndex,
+                            numberOfRequestedBits));
+        }
         
-        if (r >= bitIndex) {
-            return selectImplThird(bitIndex, 
-                                   rangeStartIndex,
-                                   halfRangeLength);
-        } else {
-            return selectImplThird(bitIndex, 
-                                   rangeStartIndex + halfRangeLength,
-                                   rangeLength - halfRangeLength);
+        if (fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "Range start index (%d) is larger than the " + 
+                            "range end index (%d).", 
+                            fromIndex,
+                            toIndex));
         }
     }
     
     /**
-     * The delegate for manipulating bits.
+     * Checks that the bits of the storage beyond the requested bits are zero.
      * 
-     * @param index the index of the target bit.
-     * @param on    the flag deciding the value of the bit in question.
+     * @return {@code true} if the tail of the storage is clear.
      */
-    private void writeBitImpl(int index, boolean on) {
-        boolean previousBitValue = readBit(index);
+    private boolean hasCleanTail() {
+        int lastWordIndex = numberOfWords - 1;
         
-        if (on) {
-            if (previousBitValue == false) {
-                hasDirtyState = true;
-                numberOfSetBits++;
-            }
-            
-            turnBitOn(index);
-        } else {
-            if (previousBitValue == true) {
-                hasDirtyState = true;
-                numberOfSetBits--;
-            }
-            
-            turnBitOff(index);
+        long lastWordMask = ~getValidBitsMask(lastWordIndex);
+        
+        if ((wordData[lastWordIndex] & lastWordMask) != 0L) {
+            return false;
+        }
+        
+        if (lastWordIndex == 0) {
+            return true;
         }
+        
+        return (wordData[lastWordIndex - 1] 
+                & ~getValidBitsMask(lastWordIndex - 1)) == 0L;
     }
     
     /**
-     * Implements the actual reading of a bit.
+     * Returns the number of {@code first} entries in use.
      * 
-     * @param index the index of the target bit to read.
-     * @return the value of the target bit.
+     * @return the number of superblock counters.
      */
-    boolean readBitImpl(int index) {
-        int targetLongIndex = index / Long.SIZE;
-        int targetLongBitIndex = index % Long.SIZE;
-        long targetLong = wordData[targetLongIndex];
-        return (targetLong & (1L << targetLongBitIndex)) != 0;
+    private int getNumberOfFirstEntries() {
+        return numberOfWords * Long.SIZE / ell + 1;
     }
     
     /**
-     * Makes sure that the state of the internal data structures is up to date.
+     * Returns the number of {@code second} entries in use.
+     * 
+     * @return the number of block counters.
      */
-    private void makeSureStateIsCompiled() {
-        if (hasDirtyState) {
-            buildIndices();
-            hasDirtyState = false;
-        }
+    private int getNumberOfSecondEntries() {
+        return numberOfWords * Long.SIZE / k + 1;
     }
     
-    /**
-     * Turns the {@code index}th bit on. Indexation is zero-based.
-     * 
-     * @param index the target bit index.
-     */
-    private void turnBitOn(int index) {
-        int targetLongIndex = index / Long.SIZE;
-        int targetLongBitIndex = index % Long.SIZE;
-        long mask = 1L;
-        mask <<= targetLongBitIndex;
-        wordData[targetLongIndex] |= mask;
+    private int getNumberOfSuperblocks() {
+        int n = numberOfWords * Long.SIZE;
+        return n / ell + (n % ell != 0 ? 1 : 0);
     }
     
     /**
-     * Turns the {@code index}th bit off. Indexation is zero-based.
+     * Returns the number of words, including the padding word, needed to 
+     * store {@code numberOfRequestedBits} bits. This is the minimum length of
+     * the arrays accepted by {@link #wrap(long[], int)}.
      * 
-     * @param index the target bit index.
+     * @param numberOfRequestedBits the number of bits to store.
+     * @return the number of words.
      */
-    private void turnBitOff(int index) {
-        int targetLongIndex = index / Long.SIZE;
-        int targetLongBitIndex = index % Long.SIZE;
-        long mask = 1L;
-        mask <<= targetLongBitIndex;
-        wordData[targetLongIndex] &= ~mask;
+    public static int getStorageLength(int numberOfRequestedBits) {
+        return numberOfRequestedBits / Long.SIZE + 
+              (numberOfRequestedBits % Long.SIZE != 0 ? 1 : 0) + 1;
+    }
+    
+    private void checkSameLength(RankSelectBitVector other) {
+        if (other.numberOfRequestedBits != numberOfRequestedBits) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Bit vector length mismatch: %d vs. %d.",
+                            numberOfRequestedBits,
+                            other.numberOfRequestedBits));
+        }
     }
     
     private void checkBitIndexForSelect(int selectionIndex) {
@@ -527,7 +2899,7 @@ public final class RankSelectBitVector {
      * @param bitIndex the bit index.
      * @return {@code true} if and only if the specified bit is set.
      */
-    private boolean bitIsSet(int value, int bitIndex) {
+    private static boolean bitIsSet(int value, int bitIndex) {
         return (value & (1 << bitIndex)) != 0;
     }
     
@@ -649,7 +3021,7 @@ public final class RankSelectBitVector {
         return rank;
     }
     
-    private void checkNumberOfRequestedBits(int numberOfRequestedBits) {
+    private static void checkNumberOfRequestedBits(int numberOfRequestedBits) {
         if (numberOfRequestedBits == 0) {
             throw new IllegalArgumentException("Requested zero (0) bits.");
         }
@@ -662,7 +3034,13 @@ public final class RankSelectBitVector {
         }
     }
     
-    private static double log2(double v) {
-        return Math.log(v) / Math.log(2.0);
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        
+        return a;
     }
 }
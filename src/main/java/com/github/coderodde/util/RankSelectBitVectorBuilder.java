@@ -0,0 +1,403 @@
+package com.github.coderodde.util;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * This class builds a {@link RankSelectBitVector} from a stream of bits whose 
+ * total length need not be known in advance. The storage grows 
+ * geometrically, and the {@code first} and {@code second} counters are 
+ * emitted as soon as each block fills, so {@link #build()} only finishes the 
+ * last, partial block and hands the arrays over to the bit vector without 
+ * copying.
+ * <p>
+ * Since the length is not known up front, the layout cannot depend on it; the
+ * default layout is word-aligned {@code 512/64}. A builder builds only one bit
+ * vector: after {@link #build()}, all the methods throw 
+ * {@link IllegalStateException}.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class RankSelectBitVectorBuilder {
+    
+    /**
+     * The layout used unless another one is given.
+     */
+    public static final BlockLayout DEFAULT_LAYOUT = BlockLayout.of(512, 64);
+    
+    /**
+     * The initial capacity of the word storage.
+     */
+    private static final int INITIAL_NUMBER_OF_WORDS = 16;
+    
+    /**
+     * The block sizes of the target bit vector.
+     */
+    private final BlockLayout layout;
+    
+    /**
+     * The superblock size.
+     */
+    private final int ell;
+    
+    /**
+     * The block size.
+     */
+    private final int k;
+    
+    private long[] wordData;
+    private int[] first;
+    private int[] second;
+    
+    /**
+     * The number of bits appended so far.
+     */
+    private long numberOfBits;
+    
+    /**
+     * The index of the next block whose counters are to be emitted.
+     */
+    private int nextBlockIndex;
+    
+    /**
+     * The number of set bits in the indexed blocks.
+     */
+    private int numberOfIndexedSetBits;
+    
+    /**
+     * The number of set bits in the indexed blocks of the current superblock.
+     */
+    private int superblockCount;
+    
+    /**
+     * Set once the bit vector is built.
+     */
+    private boolean built;
+    
+    /**
+     * Constructs a new builder with the default layout.
+     */
+    public RankSelectBitVectorBuilder() {
+        this(DEFAULT_LAYOUT);
+    }
+    
+    /**
+     * Constructs a new builder with the given layout.
+     * 
+     * @param layout the block sizes of the target bit vector.
+     */
+    public RankSelectBitVectorBuilder(BlockLayout layout) {
+        this(layout, INITIAL_NUMBER_OF_WORDS * Long.SIZE);
+    }
+    
+    /**
+     * Constructs a new builder with the given layout and with storage 
+     * preallocated for {@code expectedNumberOfBits} bits. If the expectation
+     * is exact, no array is ever reallocated.
+     * 
+     * @param layout               the block sizes of the target bit vector.
+     * @param expectedNumberOfBits the expected number of bits to append.
+     */
+    public RankSelectBitVectorBuilder(BlockLayout layout, 
+                                      int expectedNumberOfBits) {
+        if (expectedNumberOfBits < 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Negative expected number of bits (%d).", 
+                            expectedNumberOfBits));
+        }
+        
+        this.layout = layout;
+        this.ell = layout.getSuperblockSize();
+        this.k = layout.getBlockSize();
+        
+        int n = RankSelectBitVector.getStorageLength(expectedNumberOfBits) 
+              * Long.SIZE;
+        
+        this.wordData = new long[n / Long.SIZE];
+        this.first = new int[n / ell + 1];
+        this.second = new int[n / k + 1];
+    }
+    
+    /**
+     * Returns the number of bits appended so far.
+     * 
+     * @return the number of bits.
+     */
+    public int getNumberOfBits() {
+        return (int) numberOfBits;
+    }
+    
+    /**
+     * Appends a single bit.
+     * 
+     * @param on the value of the bit.
+     * @return this builder.
+     */
+    public RankSelectBitVectorBuilder append(boolean on) {
+        return appendWord(on ? 1L : 0L, 1);
+    }
+    
+    /**
+     * Appends the {@code length} least significant bits of {@code word}, the 
+     * least significant bit first.
+     * 
+     * @param word   the bits to append.
+     * @param length the number of bits to append, within {@code [0, 64]}.
+     * @return this builder.
+     */
+    public RankSelectBitVectorBuilder appendWord(long word, int length) {
+        checkNotBuilt();
+        
+        if (length < 0 || length > Long.SIZE) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The word length (%d) is not within [0..64].", 
+                            length));
+        }
+        
+        if (length == 0) {
+            return this;
+        }
+        
+        checkCapacity(length);
+        
+        word &= -1L >>> (Long.SIZE - length);
+        
+        int wordIndex = (int)(numberOfBits / Long.SIZE);
+        int bitOffset = (int)(numberOfBits % Long.SIZE);
+        
+        ensureWordCapacity(wordIndex + 2);
+        
+        wordData[wordIndex] |= word << bitOffset;
+        
+        if (bitOffset + length > Long.SIZE) {
+            wordData[wordIndex + 1] = word >>> (Long.SIZE - bitOffset);
+        }
+        
+        numberOfBits += length;
+        indexCompleteBlocks();
+        return this;
+    }
+    
+    /**
+     * Appends all the remaining words of {@code words}, each word the least 
+     * significant bit first. When the bits appended so far end at a word 
+     * boundary, the words are copied in bulk.
+     * 
+     * @param words the words to append.
+     * @return this builder.
+     */
+    public RankSelectBitVectorBuilder appendWords(LongBuffer words) {
+        checkNotBuilt();
+        
+        int length = words.remaining();
+        checkCapacity((long) length * Long.SIZE);
+        
+        if (numberOfBits % Long.SIZE != 0) {
+            while (words.hasRemaining()) {
+                appendWord(words.get(), Long.SIZE);
+            }
+            
+            return this;
+        }
+        
+        int wordIndex = (int)(numberOfBits / Long.SIZE);
+        
+        ensureWordCapacity(wordIndex + length + 1);
+        words.get(wordData, wordIndex, length);
+        
+        numberOfBits += (long) length * Long.SIZE;
+        indexCompleteBlocks();
+        return this;
+    }
+    
+    /**
+     * Appends a run of {@code length} equal bits.
+     * 
+     * @param on     the value of the bits in the run.
+     * @param length the length of the run.
+     * @return this builder.
+     */
+    public RankSelectBitVectorBuilder appendRun(boolean on, int length) {
+        checkNotBuilt();
+        
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Negative run length (%d).", length));
+        }
+        
+        checkCapacity(length);
+        
+        if (!on) {
+            // The storage is zeroed, just advance:
+            ensureWordCapacity((int)((numberOfBits + length) / Long.SIZE) + 2);
+            numberOfBits += length;
+            indexCompleteBlocks();
+            return this;
+        }
+        
+        // Fill up the current word, then whole words, then the rest:
+        int headLength = 
+                Math.min(length, 
+                         (int)((Long.SIZE - numberOfBits % Long.SIZE) 
+                                % Long.SIZE));
+        
+        appendWord(-1L, headLength);
+        length -= headLength;
+        
+        ensureWordCapacity((int)((numberOfBits + length) / Long.SIZE) + 2);
+        
+        int wordIndex = (int)(numberOfBits / Long.SIZE);
+        int numberOfWholeWords = length / Long.SIZE;
+        
+        Arrays.fill(wordData, wordIndex, wordIndex + numberOfWholeWords, -1L);
+        
+        numberOfBits += (long) numberOfWholeWords * Long.SIZE;
+        indexCompleteBlocks();
+        
+        return appendWord(-1L, length % Long.SIZE);
+    }
+    
+    /**
+     * Builds the bit vector. Finishes the counters of the last, partial block
+     * and passes the storage to the bit vector as is.
+     * 
+     * @return the built bit vector.
+     */
+    public RankSelectBitVector build() {
+        checkNotBuilt();
+        
+        if (numberOfBits == 0L) {
+            throw new IllegalStateException("No bits appended.");
+        }
+        
+        int numberOfRequestedBits = (int) numberOfBits;
+        int numberOfWords = 
+                RankSelectBitVector.getStorageLength(numberOfRequestedBits);
+        
+        int n = numberOfWords * Long.SIZE;
+        
+        ensureWordCapacity(numberOfWords);
+        
+        // Index the tail up to the end of the padding word as if complete. 
+        // The bits beyond 'numberOfBits' are zero, so that afterwards 
+        // 'numberOfIndexedSetBits' is the total number of set bits:
+        while ((long) nextBlockIndex * k < n) {
+            indexBlock(Math.min(k, n - nextBlockIndex * k));
+        }
+        
+        int numberOfFirstEntries = n / ell + 1;
+        ensureFirstCapacity(numberOfFirstEntries);
+        ensureSecondCapacity(n / k + 1);
+        
+        for (int superblockIndex = (nextBlockIndex * k - 1) / ell + 1;
+                 superblockIndex < numberOfFirstEntries;
+                 superblockIndex++) {
+            
+            first[superblockIndex] = numberOfIndexedSetBits;
+        }
+        
+        built = true;
+        
+        RankSelectBitVector bitVector = 
+                new RankSelectBitVector(numberOfRequestedBits, 
+                                        layout,
+                                        wordData,
+                                        first,
+                                        second,
+                                        numberOfIndexedSetBits);
+        wordData = null;
+        first = null;
+        second = null;
+        return bitVector;
+    }
+    
+    /**
+     * Emits the counters of all the complete blocks not yet indexed.
+     */
+    private void indexCompleteBlocks() {
+        while ((long)(nextBlockIndex + 1) * k <= numberOfBits) {
+            indexBlock(k);
+        }
+    }
+    
+    /**
+     * Emits the counters of the block {@code nextBlockIndex} consisting of 
+     * {@code blockLength} bits.
+     * 
+     * @param blockLength the length of the block.
+     */
+    private void indexBlock(int blockLength) {
+        int blockStartIndex = nextBlockIndex * k;
+        
+        if (blockStartIndex % ell == 0) {
+            int superblockIndex = blockStartIndex / ell;
+            ensureFirstCapacity(superblockIndex + 1);
+            first[superblockIndex] = numberOfIndexedSetBits;
+            superblockCount = 0;
+        }
+        
+        ensureSecondCapacity(nextBlockIndex + 1);
+        second[nextBlockIndex] = superblockCount;
+        
+        int count = countOnes(blockStartIndex, blockStartIndex + blockLength);
+        
+        superblockCount += count;
+        numberOfIndexedSetBits += count;
+        nextBlockIndex++;
+    }
+    
+    // Computes the number of set bits in the range [fromIndex, toIndex).
+    private int countOnes(int fromIndex, int toIndex) {
+        int count = 0;
+        
+        while (fromIndex < toIndex) {
+            int wordIndex = fromIndex / Long.SIZE;
+            int wordEndIndex = Math.min(toIndex, (wordIndex + 1) * Long.SIZE);
+            long mask = (-1L << fromIndex) & (-1L >>> -wordEndIndex);
+            
+            count += Long.bitCount(wordData[wordIndex] & mask);
+            fromIndex = wordEndIndex;
+        }
+        
+        return count;
+    }
+    
+    private void ensureWordCapacity(int capacity) {
+        if (wordData.length < capacity) {
+            wordData = Arrays.copyOf(wordData, 
+                                     Math.max(capacity, 2 * wordData.length));
+        }
+    }
+    
+    private void ensureFirstCapacity(int capacity) {
+        if (first.length < capacity) {
+            first = Arrays.copyOf(first, 
+                                  Math.max(capacity, 2 * first.length));
+        }
+    }
+    
+    private void ensureSecondCapacity(int capacity) {
+        if (second.length < capacity) {
+            second = Arrays.copyOf(second, 
+                                   Math.max(capacity, 2 * second.length));
+        }
+    }
+    
+    private void checkCapacity(long length) {
+        // Leave room for the padding word:
+        if (numberOfBits + length > Integer.MAX_VALUE - 2 * Long.SIZE) {
+            throw new IllegalStateException(
+                    "Too many bits for a RankSelectBitVector.");
+        }
+    }
+    
+    private void checkNotBuilt() {
+        if (built) {
+            throw new IllegalStateException(
+                    "The bit vector is already built.");
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.coderodde.util;
+
+/**
+ * This class implements a cursor for sequential rank and select scans over a
+ * {@link RankSelectBitVector}. The cursor has a position within 
+ * {@code [0, n]} and knows the rank of the position, i.e., the number of set 
+ * bits before it. It also caches the remaining bits of the current word, so
+ * that stepping to a nearby set bit costs a few word operations instead of a
+ * full select. Longer jumps fall back to the {@code O(1)} rank and the select
+ * of the bit vector, so a sequential scan runs in amortized {@code O(1)} time
+ * per step.
+ * <p>
+ * A cursor is not thread-safe and is invalidated by the writes to its bit 
+ * vector.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class RankSelectBitVectorCursor {
+    
+    /**
+     * The number of words scanned before falling back to the index.
+     */
+    private static final int MAXIMUM_SCANNED_WORDS = 8;
+    
+    /**
+     * The bit vector being scanned.
+     */
+    private final RankSelectBitVector bitVector;
+    
+    /**
+     * The number of bits in {@code bitVector}.
+     */
+    private final int numberOfBits;
+    
+    /**
+     * The current position.
+     */
+    private int position;
+    
+    /**
+     * The number of set bits before {@code position}.
+     */
+    private int rank;
+    
+    /**
+     * The index of the word holding the bits in {@code word}.
+     */
+    private int wordIndex;
+    
+    /**
+     * The set bits of the word {@code wordIndex} at or after 
+     * {@code position}.
+     */
+    private long word;
+    
+    RankSelectBitVectorCursor(RankSelectBitVector bitVector) {
+        this.bitVector = bitVector;
+        this.numberOfBits = bitVector.getNumberOfSupportedBits();
+        this.word = bitVector.readWord(0);
+    }
+    
+    /**
+     * Returns the current position of this cursor.
+     * 
+     * @return the current position.
+     */
+    public int position() {
+        return position;
+    }
+    
+    /**
+     * Returns the number of set bits before the current position.
+     * 
+     * @return the rank of the current position.
+     */
+    public int rank() {
+        return rank;
+    }
+    
+    /**
+     * Finds the first set bit at or after the current position and moves this
+     * cursor just past it. Afterwards, {@link #rank()} is the one-based index 
+     * of the found bit among all the set bits.
+     * 
+     * @return the index of the found bit, or {@code -1} if there is none.
+     */
+    public int nextOne() {
+        for (int scannedWords = 0; word == 0L; scannedWords++) {
+            if ((long)(wordIndex + 1) * Long.SIZE >= numberOfBits) {
+                moveToEnd();
+                return -1;
+            }
+            
+            if (scannedWords == MAXIMUM_SCANNED_WORDS) {
+                // A long run of zeros, jump over it:
+                int index = 
+                        bitVector.nextSetBit((wordIndex + 1) * Long.SIZE);
+                
+                if (index < 0) {
+                    moveToEnd();
+                    return -1;
+                }
+                
+                moveJustPast(index);
+                rank++;
+                return index;
+            }
+            
+            word = bitVector.readWord(++wordIndex);
+        }
+        
+        int index = wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+        
+        word &= word - 1L;
+        position = index + 1;
+        rank++;
+        return index;
+    }
+    
+    /**
+     * Moves this cursor to the position {@code targetPosition}. Short forward 
+     * moves count the bits passed over; other moves take an {@code O(1)} rank.
+     * 
+     * @param targetPosition the new position within {@code [0, n]}.
+     */
+    public void advanceTo(int targetPosition) {
+        if (targetPosition < 0 || targetPosition > numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The target position (%d) is not within the " + 
+                            "range [0..%d].",
+                            targetPosition,
+                            numberOfBits));
+        }
+        
+        int targetWordIndex = targetPosition / Long.SIZE;
+        
+        if (targetPosition < position 
+                || targetWordIndex - wordIndex > MAXIMUM_SCANNED_WORDS) {
+            rank = bitVector.rankThird(targetPosition);
+            wordIndex = targetWordIndex;
+            word = bitVector.readWord(wordIndex) & (-1L << targetPosition);
+            position = targetPosition;
+            return;
+        }
+        
+        while (wordIndex < targetWordIndex) {
+            rank += Long.bitCount(word);
+            word = bitVector.readWord(++wordIndex);
+        }
+        
+        long passedBits = word & ~(-1L << targetPosition);
+        
+        rank += Long.bitCount(passedBits);
+        word ^= passedBits;
+        position = targetPosition;
+    }
+    
+    /**
+     * Finds the {@code count}th set bit at or after the current position and
+     * moves this cursor just past it. Equivalent to {@code count} calls to 
+     * {@link #nextOne()}.
+     * 
+     * @param count the number of set bits to skip, at least one.
+     * @return the index of the last skipped set bit.
+     */
+    public int skipOnes(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Non-positive count (%d).", count));
+        }
+        
+        int numberOfCachedBits = Long.bitCount(word);
+        
+        if (count <= numberOfCachedBits) {
+            int index = wordIndex * Long.SIZE 
+                      + RankSelectBitVector.selectInWord(word, count);
+            
+            word &= (-1L << index) << 1;
+            position = index + 1;
+            rank += count;
+            return index;
+        }
+        
+        if ((long) rank + count > bitVector.getNumberOfSetBits()) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "There are less than %d set bits at or after " + 
+                            "the position %d.",
+                            count,
+                            position));
+        }
+        
+        int index = bitVector.selectThird(rank + count);
+        
+        moveJustPast(index);
+        rank += count;
+        return index;
+    }
+    
+    private void moveJustPast(int index) {
+        position = index + 1;
+        wordIndex = index / Long.SIZE;
+        word = bitVector.readWord(wordIndex) & ((-1L << index) << 1);
+    }
+    
+    private void moveToEnd() {
+        rank += Long.bitCount(word);
+        position = numberOfBits;
+        wordIndex = numberOfBits / Long.SIZE;
+        word = 0L;
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.coderodde.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * This class loads a {@link RankSelectBitVector} from packed little-endian 
+ * 64-bit words. Bit {@code i} of the vector is bit {@code i % 64} of the word 
+ * {@code i / 64}. The words are read in large buffers and copied in bulk to 
+ * the bit storage, and the rank index is built as the words arrive via 
+ * {@link RankSelectBitVectorBuilder}, so no per-bit work is done and the 
+ * whole input is never held in memory twice.
+ * <p>
+ * Exactly {@code ceil(numberOfBits / 64)} words are consumed from the input;
+ * the bits of the last word beyond {@code numberOfBits} are ignored.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class RankSelectBitVectorLoader {
+    
+    /**
+     * The size of the read buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+    
+    private RankSelectBitVectorLoader() {
+    
+    }
+    
+    /**
+     * Loads a bit vector of {@code numberOfBits} bits from {@code channel}
+     * using the default layout for {@code numberOfBits}.
+     * 
+     * @param channel      the channel to read.
+     * @param numberOfBits the number of bits to load.
+     * @return the loaded bit vector.
+     * @throws IOException  if an I/O error occurs.
+     * @throws EOFException if the channel ends too early.
+     */
+    public static RankSelectBitVector load(ReadableByteChannel channel, 
+                                           int numberOfBits) 
+            throws IOException {
+        return load(channel, 
+                    numberOfBits, 
+                    BlockLayout.defaultFor(numberOfBits));
+    }
+    
+    /**
+     * Loads a bit vector of {@code numberOfBits} bits from {@code channel}.
+     * 
+     * @param channel      the channel to read.
+     * @param numberOfBits the number of bits to load.
+     * @param layout       the block sizes of the rank index.
+     * @return the loaded bit vector.
+     * @throws IOException  if an I/O error occurs.
+     * @throws EOFException if the channel ends too early.
+     */
+    public static RankSelectBitVector load(ReadableByteChannel channel, 
+                                           int numberOfBits,
+                                           BlockLayout layout) 
+            throws IOException {
+        if (numberOfBits <= 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Non-positive number of bits (%d).", 
+                            numberOfBits));
+        }
+        
+        RankSelectBitVectorBuilder builder = 
+                new RankSelectBitVectorBuilder(layout, numberOfBits);
+        
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+        
+        int numberOfWholeWords = numberOfBits / Long.SIZE;
+        int tailLength = numberOfBits % Long.SIZE;
+        long remainingBytes = 
+                ((long) numberOfWholeWords + (tailLength != 0 ? 1 : 0)) 
+                * Long.BYTES;
+        
+        while (remainingBytes > 0L) {
+            // Never read past the last word:
+            buffer.limit((int) Math.min(buffer.capacity(), 
+                                        buffer.position() + remainingBytes));
+            
+            int bytesRead = channel.read(buffer);
+            
+            if (bytesRead < 0) {
+                throw new EOFException(
+                        String.format(
+                                "The channel ended %d bytes too early.", 
+                                remainingBytes));
+            }
+            
+            remainingBytes -= bytesRead;
+            buffer.flip();
+            
+            int numberOfWords = buffer.remaining() / Long.BYTES;
+            
+            if (remainingBytes == 0L && tailLength != 0) {
+                // The last word is handled separately below:
+                numberOfWords--;
+            }
+            
+            LongBuffer words = buffer.asLongBuffer();
+            words.limit(numberOfWords);
+            builder.appendWords(words);
+            
+            buffer.position(buffer.position() + numberOfWords * Long.BYTES);
+            
+            if (remainingBytes == 0L && tailLength != 0) {
+                builder.appendWord(buffer.getLong(), tailLength);
+            }
+            
+            // Keep the bytes of an incomplete word for the next read:
+            buffer.compact();
+        }
+        
+        return builder.build();
+    }
+    
+    /**
+     * Loads a bit vector of {@code numberOfBits} bits from {@code inputStream}
+     * using the default layout for {@code numberOfBits}.
+     * 
+     * @param inputStream  the stream to read.
+     * @param numberOfBits the number of bits to load.
+     * @return the loaded bit vector.
+     * @throws IOException  if an I/O error occurs.
+     * @throws EOFException if the stream ends too early.
+     */
+    public static RankSelectBitVector load(InputStream inputStream, 
+                                           int numberOfBits) 
+            throws IOException {
+        return load(Channels.newChannel(inputStream), numberOfBits);
+    }
+    
+    /**
+     * Loads a bit vector of {@code numberOfBits} bits from 
+     * {@code inputStream}.
+     * 
+     * @param inputStream  the stream to read.
+     * @param numberOfBits the number of bits to load.
+     * @param layout       the block sizes of the rank index.
+     * @return the loaded bit vector.
+     * @throws IOException  if an I/O error occurs.
+     * @throws EOFException if the stream ends too early.
+     */
+    public static RankSelectBitVector load(InputStream inputStream, 
+                                           int numberOfBits,
+                                           BlockLayout layout) 
+            throws IOException {
+        return load(Channels.newChannel(inputStream), numberOfBits, layout);
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.coderodde.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects process-wide counters of the {@link RankSelectBitVector}
+ * operations and index rebuilds. The collection is disabled by default and is 
+ * enabled by starting the JVM with 
+ * {@code -Dcom.github.coderodde.util.metrics=true}. Since {@link #ENABLED} is 
+ * a compile-time constant for the JIT compiler, the disabled instrumentation 
+ * is eliminated from the compiled code altogether.
+ * <p>
+ * Independently of this class, each index rebuild emits a JDK Flight Recorder 
+ * event named {@code com.github.coderodde.util.IndexRebuild}, so the rebuilds
+ * can be correlated with latency spikes in a recording.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class RankSelectBitVectorMetrics {
+    
+    /**
+     * The name of the system property enabling the metrics.
+     */
+    public static final String ENABLED_PROPERTY = 
+            "com.github.coderodde.util.metrics";
+    
+    /**
+     * Indicates whether the metrics are collected.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+    
+    /**
+     * The number of buckets in the rebuild duration histogram. The 
+     * {@code i}th bucket counts the rebuilds that took 
+     * {@code [2^i, 2^(i + 1))} microseconds, the bucket zero also counting the
+     * rebuilds that took less than a microsecond.
+     */
+    public static final int NUMBER_OF_HISTOGRAM_BUCKETS = 32;
+    
+    private static final LongAdder RANK_CALLS = new LongAdder();
+    private static final LongAdder SELECT_CALLS = new LongAdder();
+    private static final LongAdder WRITE_CALLS = new LongAdder();
+    private static final LongAdder REBUILDS = new LongAdder();
+    private static final LongAdder QUERY_TRIGGERED_REBUILDS = new LongAdder();
+    private static final LongAdder REBUILD_NANOS = new LongAdder();
+    private static final LongAdder[] REBUILD_DURATION_HISTOGRAM = 
+            new LongAdder[NUMBER_OF_HISTOGRAM_BUCKETS];
+    
+    static {
+        for (int i = 0; i < NUMBER_OF_HISTOGRAM_BUCKETS; i++) {
+            REBUILD_DURATION_HISTOGRAM[i] = new LongAdder();
+        }
+    }
+    
+    private RankSelectBitVectorMetrics() {
+        
+    }
+    
+    /**
+     * Returns the number of rank queries.
+     * 
+     * @return the number of rank queries.
+     */
+    public static long getRankCount() {
+        return RANK_CALLS.sum();
+    }
+    
+    /**
+     * Returns the number of select queries.
+     * 
+     * @return the number of select queries.
+     */
+    public static long getSelectCount() {
+        return SELECT_CALLS.sum();
+    }
+    
+    /**
+     * Returns the number of write calls (one per single-bit, range or batch 
+     * write). This is not the number of the bits written.
+     * 
+     * @return the number of write calls.
+     */
+    public static long getWriteCount() {
+        return WRITE_CALLS.sum();
+    }
+    
+    /**
+     * Returns the number of index rebuilds.
+     * 
+     * @return the number of index rebuilds.
+     */
+    public static long getRebuildCount() {
+        return REBUILDS.sum();
+    }
+    
+    /**
+     * Returns the number of index rebuilds that were triggered by a query on a
+     * bit vector modified after its previous rebuild.
+     * 
+     * @return the number of query-triggered rebuilds.
+     */
+    public static long getQueryTriggeredRebuildCount() {
+        return QUERY_TRIGGERED_REBUILDS.sum();
+    }
+    
+    /**
+     * Returns the total time spent in the index rebuilds.
+     * 
+     * @return the total rebuild time in nanoseconds.
+     */
+    public static long getTotalRebuildNanos() {
+        return REBUILD_NANOS.sum();
+    }
+    
+    /**
+     * Returns a snapshot of the rebuild duration histogram.
+     * 
+     * @return the rebuild duration histogram.
+     * @see #NUMBER_OF_HISTOGRAM_BUCKETS
+     */
+    public static long[] getRebuildDurationHistogram() {
+        long[] histogram = new long[NUMBER_OF_HISTOGRAM_BUCKETS];
+        
+        for (int i = 0; i < NUMBER_OF_HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = REBUILD_DURATION_HISTOGRAM[i].sum();
+        }
+        
+        return histogram;
+    }
+    
+    /**
+     * Resets all the counters.
+     */
+    public static void reset() {
+        RANK_CALLS.reset();
+        SELECT_CALLS.reset();
+        WRITE_CALLS.reset();
+        REBUILDS.reset();
+        QUERY_TRIGGERED_REBUILDS.reset();
+        REBUILD_NANOS.reset();
+        
+        for (LongAdder bucket : REBUILD_DURATION_HISTOGRAM) {
+            bucket.reset();
+        }
+    }
+    
+    static void recordRank() {
+        RANK_CALLS.increment();
+    }
+    
+    static void recordRanks(int count) {
+        RANK_CALLS.add(count);
+    }
+    
+    static void recordSelect() {
+        SELECT_CALLS.increment();
+    }
+    
+    static void recordWrite() {
+        WRITE_CALLS.increment();
+    }
+    
+    static void recordRebuild(long durationNanos, boolean triggeredByQuery) {
+        REBUILDS.increment();
+        REBUILD_NANOS.add(durationNanos);
+        
+        if (triggeredByQuery) {
+            QUERY_TRIGGERED_REBUILDS.increment();
+        }
+        
+        REBUILD_DURATION_HISTOGRAM[getBucketIndex(durationNanos)].increment();
+    }
+    
+    static int getBucketIndex(long durationNanos) {
+        long durationMicros = durationNanos / 1000L;
+        
+        if (durationMicros <= 1L) {
+            return 0;
+        }
+        
+        return Math.min(NUMBER_OF_HISTOGRAM_BUCKETS - 1, 
+                        Long.SIZE - 1 - 
+                        Long.numberOfLeadingZeros(durationMicros));
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.coderodde.util;
+
+import java.util.function.IntConsumer;
+
+/**
+ * This class implements a view of the range {@code [fromIndex, toIndex)} of a
+ * {@link RankSelectBitVector}. All the indices of the view are relative to 
+ * {@code fromIndex}: bit {@code i} of the view is bit {@code fromIndex + i} of
+ * the bit vector, and the ranks and the selects count only the bits within the
+ * range. The view shares the storage and the index with the bit vector, so 
+ * the writes to the bit vector are visible through the view. Each rank takes 
+ * two {@code O(1)} ranks of the bit vector, and no query allocates.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class RankSelectBitVectorSlice {
+    
+    /**
+     * The viewed bit vector.
+     */
+    private final RankSelectBitVector bitVector;
+    
+    /**
+     * The starting index of the view within {@code bitVector}, inclusive.
+     */
+    private final int fromIndex;
+    
+    /**
+     * The ending index of the view within {@code bitVector}, exclusive.
+     */
+    private final int toIndex;
+    
+    RankSelectBitVectorSlice(RankSelectBitVector bitVector, 
+                             int fromIndex, 
+                             int toIndex) {
+        this.bitVector = bitVector;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+    }
+    
+    /**
+     * Returns the starting index of this view within the bit vector.
+     * 
+     * @return the starting index, inclusive.
+     */
+    public int getFromIndex() {
+        return fromIndex;
+    }
+    
+    /**
+     * Returns the ending index of this view within the bit vector.
+     * 
+     * @return the ending index, exclusive.
+     */
+    public int getToIndex() {
+        return toIndex;
+    }
+    
+    /**
+     * Returns the number of bits in this view.
+     * 
+     * @return the number of bits.
+     */
+    public int getNumberOfSupportedBits() {
+        return toIndex - fromIndex;
+    }
+    
+    /**
+     * Returns the number of set bits in this view.
+     * 
+     * @return the number of set bits.
+     */
+    public int getNumberOfSetBits() {
+        return bitVector.count(fromIndex, toIndex);
+    }
+    
+    /**
+     * Reads the {@code index}th bit of this view.
+     * 
+     * @param index the bit index relative to this view.
+     * @return {@code true} if and only if the bit is set.
+     */
+    public boolean readBit(int index) {
+        checkBitAccessIndex(index);
+        return bitVector.readBit(fromIndex + index);
+    }
+    
+    /**
+     * Returns the number of set bits within {@code [0, index)} of this view.
+     * 
+     * @param index the target index relative to this view.
+     * @return the rank of {@code index} within this view.
+     */
+    public int rank(int index) {
+        if (index < 0 || index > getNumberOfSupportedBits()) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The index (%d) is not within the range " + 
+                            "[0..%d].",
+                            index,
+                            getNumberOfSupportedBits()));
+        }
+        
+        return bitVector.count(fromIndex, fromIndex + index);
+    }
+    
+    /**
+     * Returns the index, relative to this view, of the {@code bitIndex}th set
+     * bit of this view.
+     * 
+     * @param bitIndex the one-based index of the target set bit.
+     * @return the index of the target set bit.
+     */
+    public int select(int bitIndex) {
+        int numberOfSetBits = getNumberOfSetBits();
+        
+        if (bitIndex <= 0 || bitIndex > numberOfSetBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The input selection index (%d) is not within " + 
+                            "the range [1..%d].",
+                            bitIndex,
+                            numberOfSetBits));
+        }
+        
+        return bitVector.selectInRange(fromIndex, bitIndex) - fromIndex;
+    }
+    
+    /**
+     * Returns the index, relative to this view, of the first set bit at or 
+     * after {@code index}, or {@code -1} if there is no such bit in this view.
+     * 
+     * @param index the index at which to start, relative to this view.
+     * @return the index of the next set bit or {@code -1}.
+     */
+    public int nextSetBit(int index) {
+        if (index < 0 || index > getNumberOfSupportedBits()) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The index (%d) is not within the range " + 
+                            "[0..%d].",
+                            index,
+                            getNumberOfSupportedBits()));
+        }
+        
+        int nextIndex = bitVector.nextSetBit(fromIndex + index);
+        
+        if (nextIndex < 0 || nextIndex >= toIndex) {
+            return -1;
+        }
+        
+        return nextIndex - fromIndex;
+    }
+    
+    /**
+     * Passes the indices, relative to this view, of all the set bits of this
+     * view to {@code action} in ascending order.
+     * 
+     * @param action the action to perform on each set bit index.
+     */
+    public void forEachSetBit(IntConsumer action) {
+        for (int index = bitVector.nextSetBit(fromIndex);
+                 index >= 0 && index < toIndex;
+                 index = bitVector.nextSetBit(index + 1)) {
+            
+            action.accept(index - fromIndex);
+        }
+    }
+    
+    /**
+     * Returns a view of {@code [fromIndex, toIndex)} relative to this view.
+     * 
+     * @param fromIndex the starting index of the slice, inclusive.
+     * @param toIndex   the ending index of the slice, exclusive.
+     * @return the view of the slice.
+     */
+    public RankSelectBitVectorSlice slice(int fromIndex, int toIndex) {
+        if (fromIndex < 0 
+                || fromIndex > toIndex 
+                || toIndex > getNumberOfSupportedBits()) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The range [%d..%d) is not within [0..%d).",
+                            fromIndex,
+                            toIndex,
+                            getNumberOfSupportedBits()));
+        }
+        
+        return bitVector.slice(this.fromIndex + fromIndex, 
+                               this.fromIndex + toIndex);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("[Slice [%d..%d) of a bit vector of %d bits]", 
+                             fromIndex, 
+                             toIndex, 
+                             bitVector.getNumberOfSupportedBits());
+    }
+    
+    private void checkBitAccessIndex(int index) {
+        if (index < 0 || index >= getNumberOfSupportedBits()) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The bit access index (%d) is not within the " + 
+                            "range [0..%d).",
+                            index,
+                            getNumberOfSupportedBits()));
+        }
+    }
+}
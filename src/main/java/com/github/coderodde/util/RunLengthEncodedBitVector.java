@@ -0,0 +1,408 @@
+package com.github.coderodde.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This class implements an immutable bit vector stored as the runs of set 
+ * bits. The starting indices of the runs and the numbers of the set bits 
+ * preceding the runs are stored in two {@link EliasFanoSequence}s, so the 
+ * space depends on the number of the runs instead of the number of bits. A 
+ * rank is a predecessor search among the run starts, and a select is a 
+ * predecessor search among the preceding set bit counts; both take a few 
+ * word scans plus a binary search within one bucket of the Elias-Fano 
+ * sequence.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class RunLengthEncodedBitVector {
+    
+    /**
+     * The number of bits in this bit vector.
+     */
+    private final int numberOfBits;
+    
+    /**
+     * The number of bits set to one (1).
+     */
+    private final int numberOfSetBits;
+    
+    /**
+     * The starting indices of the runs.
+     */
+    private final EliasFanoSequence runStarts;
+    
+    /**
+     * The {@code i}th element is the number of set bits in the runs 
+     * preceding the {@code i}th run.
+     */
+    private final EliasFanoSequence runRanks;
+    
+    private RunLengthEncodedBitVector(int numberOfBits, 
+                                      int[] runStarts, 
+                                      int[] runRanks, 
+                                      int numberOfRuns, 
+                                      int numberOfSetBits) {
+        this.numberOfBits = numberOfBits;
+        this.numberOfSetBits = numberOfSetBits;
+        this.runStarts = new EliasFanoSequence(runStarts, numberOfRuns);
+        this.runRanks = new EliasFanoSequence(runRanks, numberOfRuns);
+    }
+    
+    /**
+     * Returns a run-length encoded copy of {@code bitVector}.
+     * 
+     * @param bitVector the bit vector to encode.
+     * @return the run-length encoded bit vector.
+     */
+    public static RunLengthEncodedBitVector of(RankSelectBitVector bitVector) {
+        int numberOfBits = bitVector.getNumberOfSupportedBits();
+        int[] runStarts = new int[8];
+        int[] runRanks = new int[8];
+        int numberOfRuns = 0;
+        int numberOfSetBits = 0;
+        
+        for (int index = bitVector.nextSetBit(0);
+                 index >= 0;
+                 index = bitVector.nextSetBit(index)) {
+            
+            int runEnd = nextClearBit(bitVector, index);
+            
+            if (numberOfRuns == runStarts.length) {
+                runStarts = Arrays.copyOf(runStarts, 2 * numberOfRuns);
+                runRanks = Arrays.copyOf(runRanks, 2 * numberOfRuns);
+            }
+            
+            runStarts[numberOfRuns] = index;
+            runRanks[numberOfRuns] = numberOfSetBits;
+            numberOfRuns++;
+            numberOfSetBits += runEnd - index;
+            
+            if (runEnd == numberOfBits) {
+                break;
+            }
+            
+            index = runEnd;
+        }
+        
+        return new RunLengthEncodedBitVector(numberOfBits, 
+                                             runStarts, 
+                                             runRanks, 
+                                             numberOfRuns, 
+                                             numberOfSetBits);
+    }
+    
+    /**
+     * Returns a run-length encoded bit vector of {@code numberOfBits} bits in 
+     * which the {@code i}th run of set bits starts at {@code runStarts[i]} 
+     * and spans {@code runLengths[i]} bits. The runs must be sorted and may 
+     * not overlap; the adjacent runs are merged.
+     * 
+     * @param numberOfBits the number of bits.
+     * @param runStarts    the starting indices of the runs.
+     * @param runLengths   the lengths of the runs.
+     * @return the run-length encoded bit vector.
+     * @throws IllegalArgumentException if {@code numberOfBits} is not 
+     *                                  positive, or the runs are unsorted, 
+     *                                  overlap or do not fit in 
+     *                                  {@code numberOfBits}.
+     */
+    public static RunLengthEncodedBitVector ofRuns(int numberOfBits, 
+                                                   int[] runStarts, 
+                                                   int[] runLengths) {
+        if (numberOfBits == 0) {
+            throw new IllegalArgumentException("Requested zero (0) bits.");
+        }
+        
+        if (numberOfBits < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Negative number of bits (%d).", 
+                                  numberOfBits));
+        }
+        
+        if (runStarts.length != runLengths.length) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "The number of run starts (%d) and run lengths " + 
+                            "(%d) differ.", 
+                            runStarts.length, 
+                            runLengths.length));
+        }
+        
+        int[] starts = new int[runStarts.length];
+        int[] ranks = new int[runStarts.length];
+        int numberOfRuns = 0;
+        int numberOfSetBits = 0;
+        long previousRunEnd = 0L;
+        
+        for (int i = 0; i < runStarts.length; i++) {
+            long runEnd = (long) runStarts[i] + runLengths[i];
+            
+            if (runStarts[i] < previousRunEnd
+                    || runLengths[i] < 0
+                    || runEnd > numberOfBits) {
+                throw new IllegalArgumentException(
+                        String.format(
+                                "The run %d [%d..%d) overlaps the previous " + 
+                                "run or is not within [0..%d).", 
+                                i, 
+                                runStarts[i], 
+                                runEnd, 
+                                numberOfBits));
+            }
+            
+            if (runLengths[i] == 0) {
+                continue;
+            }
+            
+            if (numberOfRuns == 0 || runStarts[i] != previousRunEnd) {
+                starts[numberOfRuns] = runStarts[i];
+                ranks[numberOfRuns] = numberOfSetBits;
+                numberOfRuns++;
+            }
+            
+            numberOfSetBits += runLengths[i];
+            previousRunEnd = runEnd;
+        }
+        
+        return new RunLengthEncodedBitVector(numberOfBits, 
+                                             starts, 
+                                             ranks, 
+                                             numberOfRuns, 
+                                             numberOfSetBits);
+    }
+    
+    /**
+     * Returns the number of bits in this bit vector.
+     * 
+     * @return the number of bits.
+     */
+    public int getNumberOfSupportedBits() {
+        return numberOfBits;
+    }
+    
+    /**
+     * Returns the number of bits that are set.
+     * 
+     * @return the number of set bits.
+     */
+    public int getNumberOfSetBits() {
+        return numberOfSetBits;
+    }
+    
+    /**
+     * Returns the number of runs of set bits.
+     * 
+     * @return the number of runs.
+     */
+    public int getNumberOfRuns() {
+        return runStarts.size();
+    }
+    
+    /**
+     * Reads the {@code index}th bit.
+     * 
+     * @param index the index of the target bit.
+     * @return {@code true} if and only if the target bit is set.
+     */
+    public boolean readBit(int index) {
+        checkBitAccessIndex(index);
+        
+        // The last run starting at or before 'index':
+        int runIndex = runStarts.rank(index + 1) - 1;
+        
+        return runIndex >= 0 && index < getRunEnd(runIndex);
+    }
+    
+    /**
+     * Returns the number of set bits within {@code [0, index)}.
+     * 
+     * @param index the target index.
+     * @return the rank of {@code index}.
+     */
+    public int rank(int index) {
+        if (index < 0 || index > numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The index (%d) is not within the range " + 
+                            "[0..%d].", 
+                            index, 
+                            numberOfBits));
+        }
+        
+        // The last run starting before 'index':
+        int runIndex = runStarts.rank(index) - 1;
+        
+        if (runIndex < 0) {
+            return 0;
+        }
+        
+        int runStart = runStarts.get(runIndex);
+        int runRank = runRanks.get(runIndex);
+        
+        return runRank + Math.min(index, getRunEnd(runIndex)) - runStart;
+    }
+    
+    /**
+     * Returns the index of the {@code bitIndex}th set bit.
+     * 
+     * @param bitIndex the one-based index of the target set bit.
+     * @return the index of the target set bit.
+     */
+    public int select(int bitIndex) {
+        if (bitIndex <= 0 || bitIndex > numberOfSetBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The input selection index (%d) is not within " + 
+                            "the range [1..%d].", 
+                            bitIndex, 
+                            numberOfSetBits));
+        }
+        
+        // The last run preceded by less than 'bitIndex' set bits:
+        int runIndex = runRanks.rank(bitIndex) - 1;
+        
+        return runStarts.get(runIndex) + bitIndex - 1 -
+               runRanks.get(runIndex);
+    }
+    
+    /**
+     * Returns the index of the first set bit at or after {@code fromIndex}, 
+     * or {@code -1} if there is no such bit.
+     * 
+     * @param fromIndex the index at which to start.
+     * @return the index of the next set bit or {@code -1}.
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex < 0 || fromIndex > numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The index (%d) is not within the range " + 
+                            "[0..%d].", 
+                            fromIndex, 
+                            numberOfBits));
+        }
+        
+        if (fromIndex == numberOfBits) {
+            // Also keeps 'fromIndex + 1' below from overflowing:
+            return -1;
+        }
+        
+        int runIndex = runStarts.rank(fromIndex + 1) - 1;
+        
+        if (runIndex >= 0 && fromIndex < getRunEnd(runIndex)) {
+            return fromIndex;
+        }
+        
+        return runIndex + 1 < runStarts.size() ? 
+               runStarts.get(runIndex + 1) : 
+               -1;
+    }
+    
+    /**
+     * Passes the indices of all the set bits to {@code action} in ascending 
+     * order.
+     * 
+     * @param action the action to perform on each set bit index.
+     */
+    public void forEachSetBit(IntConsumer action) {
+        for (int runIndex = 0; runIndex < runStarts.size(); runIndex++) {
+            int runEnd = getRunEnd(runIndex);
+            
+            for (int index = runStarts.get(runIndex); index < runEnd; index++) {
+                action.accept(index);
+            }
+        }
+    }
+    
+    /**
+     * Returns a {@link RankSelectBitVector} with the same bits.
+     * 
+     * @return the decoded bit vector.
+     */
+    public RankSelectBitVector toRankSelectBitVector() {
+        RankSelectBitVector bitVector = new RankSelectBitVector(numberOfBits);
+        
+        for (int runIndex = 0; runIndex < runStarts.size(); runIndex++) {
+            bitVector.setRange(runStarts.get(runIndex), getRunEnd(runIndex));
+        }
+        
+        return bitVector;
+    }
+    
+    /**
+     * Returns a report on the heap memory used by this bit vector. The 
+     * encoded runs are reported as the data and the samples of the Elias-Fano 
+     * sequences as the rank index.
+     * 
+     * @return the memory usage report.
+     */
+    public MemoryUsageReport memoryUsage() {
+        return new MemoryUsageReport(
+                numberOfBits, 
+                runStarts.getDataBytes() + runRanks.getDataBytes(), 
+                runStarts.getIndexBytes() + runRanks.getIndexBytes(), 
+                0L, 
+                0L);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "[Run-length encoded bit vector, size = %d bits, " + 
+                "set bits = %d, runs = %d]", 
+                numberOfBits, 
+                numberOfSetBits, 
+                getNumberOfRuns());
+    }
+    
+    /**
+     * Returns the ending index, exclusive, of the {@code runIndex}th run.
+     * 
+     * @param runIndex the index of the target run.
+     * @return the ending index of the target run.
+     */
+    private int getRunEnd(int runIndex) {
+        int nextRunRank = runIndex + 1 < runRanks.size() ? 
+                          runRanks.get(runIndex + 1) : 
+                          numberOfSetBits;
+        
+        return runStarts.get(runIndex) + nextRunRank -
+               runRanks.get(runIndex);
+    }
+    
+    /**
+     * Returns the index of the first clear bit at or after 
+     * {@code fromIndex}, or the length of the bit vector if there is none.
+     * 
+     * @param bitVector the bit vector to scan.
+     * @param fromIndex the index at which to start.
+     * @return the index of the next clear bit.
+     */
+    private static int nextClearBit(RankSelectBitVector bitVector, 
+                                    int fromIndex) {
+        int wordIndex = fromIndex / Long.SIZE;
+        long word = ~bitVector.readWord(wordIndex) & (-1L << fromIndex);
+        
+        // The padding word is clear, so the scan stops within the storage:
+        while (word == 0L) {
+            word = ~bitVector.readWord(++wordIndex);
+        }
+        
+        return Math.min(wordIndex * Long.SIZE + 
+                        Long.numberOfTrailingZeros(word), 
+                        bitVector.getNumberOfSupportedBits());
+    }
+    
+    private void checkBitAccessIndex(int index) {
+        if (index < 0 || index >= numberOfBits) {
+            throw new IndexOutOfBoundsException(
+                    String.format(
+                            "The bit access index (%d) is not within the " + 
+                            "range [0..%d).", 
+                            index, 
+                            numberOfBits));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.coderodde.util.benchmark;
+
+import com.github.coderodde.util.RankSelectBatchExecutor;
+import com.github.coderodde.util.RankSelectBitVector;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class benchmarks the ways of answering many rank and select queries 
+ * against a single random bit vector: a plain loop of single queries, the 
+ * interleaved {@link RankSelectBitVector#rankBatch(int[], int[])}, and the 
+ * {@link RankSelectBatchExecutor} with and without sorting the queries. The 
+ * only optional argument is the seed of the random bit vector and queries; 
+ * without it, the current time is used. The seed is printed so that a run 
+ * can be repeated.
+ * 
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class BatchQueryBenchmark {
+    
+    /**
+     * The number of bits in the benchmark bit vector.
+     */
+    private static final int BIT_VECTOR_LENGTH = 500_000_000;
+    
+    /**
+     * The number of queries of each kind.
+     */
+    private static final int NUMBER_OF_QUERIES = 10_000_000;
+    
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args the optional seed as the first argument.
+     */
+    public static void main(String[] args) {
+        System.out.println("=== BatchQueryBenchmark ===");
+        
+        long seed = parseSeed(args);
+        Random random = new Random(seed);
+        
+        System.out.printf("Seed = %d\n", seed);
+        
+        long[] words = 
+                new long[RankSelectBitVector.getStorageLength(
+                        BIT_VECTOR_LENGTH)];
+        
+        for (int i = 0; i < BIT_VECTOR_LENGTH / Long.SIZE; i++) {
+            words[i] = random.nextLong();
+        }
+        
+        RankSelectBitVector bv = 
+                RankSelectBitVector.wrap(words, BIT_VECTOR_LENGTH);
+        
+        bv.buildIndices();
+        
+        int[] indices = new int[NUMBER_OF_QUERIES];
+        int[] bitIndices = new int[NUMBER_OF_QUERIES];
+        int[] results = new int[NUMBER_OF_QUERIES];
+        
+        for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+            indices[i] = random.nextInt(BIT_VECTOR_LENGTH + 1);
+            bitIndices[i] = 1 + random.nextInt(bv.getNumberOfSetBits());
+        }
+        
+        long startTime = System.currentTimeMillis();
+        
+        for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+            results[i] = bv.rankThird(indices[i]);
+        }
+        
+        long rankTime = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        
+        for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+            results[i] = bv.selectThird(bitIndices[i]);
+        }
+        
+        long selectTime = System.currentTimeMillis() - startTime;
+        
+        System.out.printf("Sequential loop: rank %d ms, select %d ms.\n", 
+                          rankTime, 
+                          selectTime);
+        
+        startTime = System.currentTimeMillis();
+        bv.rankBatch(indices, results);
+        long batchRankTime = System.currentTimeMillis() - startTime;
+        
+        System.out.printf(
+                "Interleaved rankBatch: %d ms, %.1f vs. %.1f million " + 
+                "ranks per second.\n",
+                batchRankTime,
+                (double) NUMBER_OF_QUERIES / batchRankTime / 1000.0,
+                (double) NUMBER_OF_QUERIES / rankTime / 1000.0);
+        
+        for (boolean sortQueries : new boolean[]{ false, true }) {
+            RankSelectBatchExecutor executor = 
+                    new RankSelectBatchExecutor(ForkJoinPool.commonPool(), 
+                                                sortQueries, 
+                                                sortQueries);
+            
+            startTime = System.currentTimeMillis();
+            executor.rank(bv, indices, results);
+            rankTime = System.currentTimeMillis() - startTime;
+            
+            startTime = System.currentTimeMillis();
+            executor.select(bv, bitIndices, results);
+            selectTime = System.currentTimeMillis() - startTime;
+            
+            System.out.printf(
+                    "Batch executor, sorted = %b: rank %d ms, select %d ms.\n",
+                    sortQueries,
+                    rankTime, 
+                    selectTime);
+        }
+    }
+    
+    /**
+     * Returns the seed given as the first argument, or the current time if 
+     * there is none or it is not a number.
+     * 
+     * @param args the command line arguments.
+     * @return the seed.
+     */
+    private static long parseSeed(String[] args) {
+        if (args.length == 0) {
+            return System.currentTimeMillis();
+        }
+        
+        try {
+            return Long.parseLong(args[0]);
+        } catch (NumberFormatException ex) {
+            System.err.printf(
+                    "WARNING: Could not parse '%s' as an long value.", args[0]);
+            
+            return System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.coderodde.util.benchmark;
+
+import com.github.coderodde.util.BlockLayout;
+import com.github.coderodde.util.BlockLayoutCalibrator;
+
+public final class BlockLayoutBenchmark {
+    
+    /**
+     * The number of bits in the benchmark bit vectors.
+     */
+    private static final int BIT_VECTOR_LENGTH = 50_000_000;
+    
+    /**
+     * The default memory budget of the rank index in bits per bit.
+     */
+    private static final double DEFAULT_BUDGET = 1.0;
+    
+    public static void main(String[] args) {
+        System.out.println("=== BlockLayoutBenchmark ===");
+        
+        double budget = parseBudget(args);
+        
+        System.out.printf("Budget = %.3f bits per bit\n", budget);
+        
+        for (boolean compactIndex : new boolean[]{ false, true }) {
+            System.out.printf("--- Compact index: %b ---\n", compactIndex);
+            
+            for (BlockLayoutCalibrator.Measurement measurement : 
+                    BlockLayoutCalibrator.measure(BIT_VECTOR_LENGTH, 
+                                                  budget, 
+                                                  compactIndex)) {
+                System.out.println(measurement);
+            }
+            
+            BlockLayout layout = 
+                    BlockLayoutCalibrator.calibrate(BIT_VECTOR_LENGTH, 
+                                                    budget, 
+                                                    compactIndex);
+            
+            System.out.printf("Best layout: %s\n", layout);
+        }
+    }
+    
+    private static double parseBudget(String[] args) {
+        if (args.length == 0) {
+            return DEFAULT_BUDGET;
+        }
+        
+        try {
+            return Double.parseDouble(args[0]);
+        } catch (NumberFormatException ex) {
+            System.err.printf(
+                    "WARNING: Could not parse '%s' as a double value.", 
+                    args[0]);
+            
+            return DEFAULT_BUDGET;
+        }
+    }
+}
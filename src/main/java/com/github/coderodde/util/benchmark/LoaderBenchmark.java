@@ -0,0 +1,83 @@
+package com.github.coderodde.util.benchmark;
+
+import com.github.coderodde.util.RankSelectBitVector;
+import com.github.coderodde.util.RankSelectBitVectorLoader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+public final class LoaderBenchmark {
+    
+    /**
+     * The number of bits in the benchmark bit vector.
+     */
+    private static final int BIT_VECTOR_LENGTH = 200_000_000;
+    
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== LoaderBenchmark ===");
+        
+        long seed = parseSeed(args);
+        Random random = new Random(seed);
+        
+        System.out.printf("Seed = %d\n", seed);
+        
+        int numberOfWords = BIT_VECTOR_LENGTH / Long.SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(numberOfWords * Long.BYTES)
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+        
+        for (int i = 0; i < numberOfWords; i++) {
+            buffer.putLong(random.nextLong());
+        }
+        
+        byte[] bytes = buffer.array();
+        
+        long startTime = System.currentTimeMillis();
+        RankSelectBitVector bv1 = 
+                new RankSelectBitVector(BIT_VECTOR_LENGTH);
+        
+        for (int i = 0; i < BIT_VECTOR_LENGTH; i++) {
+            if ((bytes[i / Byte.SIZE] & (1 << (i % Byte.SIZE))) != 0) {
+                bv1.writeBitOn(i);
+            }
+        }
+        
+        bv1.buildIndices();
+        long endTime = System.currentTimeMillis();
+        
+        System.out.printf("writeBitOn + buildIndices in %d ms.\n", 
+                          endTime - startTime);
+        
+        startTime = System.currentTimeMillis();
+        RankSelectBitVector bv2 = 
+                RankSelectBitVectorLoader.load(
+                        new ByteArrayInputStream(bytes), 
+                        BIT_VECTOR_LENGTH);
+        endTime = System.currentTimeMillis();
+        
+        System.out.printf("RankSelectBitVectorLoader.load in %d ms.\n", 
+                          endTime - startTime);
+        
+        System.out.printf("Agreed: %b\n", 
+                          bv1.getNumberOfSetBits() == 
+                          bv2.getNumberOfSetBits() &&
+                          bv1.rankThird(BIT_VECTOR_LENGTH / 2) == 
+                          bv2.rankThird(BIT_VECTOR_LENGTH / 2));
+    }
+    
+    private static long parseSeed(String[] args) {
+        if (args.length == 0) {
+            return System.currentTimeMillis();
+        }
+        
+        try {
+            return Long.parseLong(args[0]);
+        } catch (NumberFormatException ex) {
+            System.err.printf(
+                    "WARNING: Could not parse '%s' as an long value.", args[0]);
+            
+            return System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.coderodde.util.benchmark;
+
+import com.github.coderodde.util.MemoryUsageReport;
+import com.github.coderodde.util.RankSelectBitVector;
+import java.util.Random;
+
+public final class MemoryUsageBenchmark {
+    
+    /**
+     * The lengths of the benchmark bit vectors.
+     */
+    private static final int[] BIT_VECTOR_LENGTHS = {
+        1_000,
+        100_000,
+        10_000_000,
+        100_000_000,
+    };
+    
+    /**
+     * The fractions of set bits in the benchmark bit vectors.
+     */
+    private static final double[] DENSITIES = { 0.01, 0.5, 0.99 };
+    
+    public static void main(String[] args) {
+        System.out.println("=== MemoryUsageBenchmark ===");
+        
+        long seed = parseSeed(args);
+        
+        System.out.printf("Seed = %d\n", seed);
+        Random random = new Random(seed);
+        
+        System.out.printf("%12s %8s %8s %14s %12s %12s %10s %10s\n",
+                          "bits", 
+                          "density",
+                          "compact",
+                          "data B",
+                          "rank B",
+                          "lookup B",
+                          "index b/b",
+                          "total b/b");
+        
+        for (int length : BIT_VECTOR_LENGTHS) {
+            for (double density : DENSITIES) {
+                for (boolean compactIndex : new boolean[]{ false, true }) {
+                    RankSelectBitVector bitVector = 
+                            createRandomBitVector(random,
+                                                  length,
+                                                  density, 
+                                                  compactIndex);
+                    
+                    bitVector.buildIndices();
+                    print(length, 
+                          density,
+                          compactIndex, 
+                          bitVector.memoryUsage());
+                }
+            }
+        }
+    }
+    
+    private static void print(int length, 
+                              double density,
+                              boolean compactIndex,
+                              MemoryUsageReport report) {
+        
+        System.out.printf("%12d %8.2f %8s %14d %12d %12d %10.3f %10.3f\n",
+                          length,
+                          density,
+                          compactIndex,
+                          report.getDataBytes(),
+                          report.getRankIndexBytes(),
+                          report.getLookupTableBytes(),
+                          report.getIndexBitsPerBit(),
+                          report.getTotalBitsPerBit());
+    }
+    
+    private static RankSelectBitVector 
+        createRandomBitVector(Random random,
+                              int length,
+                              double density,
+                              boolean compactIndex) {
+        
+        RankSelectBitVector bitVector = 
+                new RankSelectBitVector(length, compactIndex);
+        
+        for (int bitIndex = 0; bitIndex != length; bitIndex++) {
+            if (random.nextDouble() < density) {
+                bitVector.writeBitOn(bitIndex);
+            }
+        }
+        
+        return bitVector;
+    }
+    
+    private static long parseSeed(String[] args) {
+        if (args.length == 0) {
+            return System.currentTimeMillis();
+        }
+        
+        try {
+            return Long.parseLong(args[0]);
+        } catch (NumberFormatException ex) {
+            System.err.printf(
+                    "WARNING: Could not parse '%s' as an long value.", args[0]);
+            
+            return System.currentTimeMillis();
+        }
+    }
+}
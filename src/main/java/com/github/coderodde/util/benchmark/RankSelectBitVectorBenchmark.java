@@ -32,6 +32,9 @@ public final class RankSelectBitVectorBenchmark {
         System.out.printf("Preprocessed the bit vector in %d milliseconds.\n",
                           System.currentTimeMillis() - st);
         
+        System.out.printf("Rank index overhead: %.3f bits per bit.\n",
+                          rankSelectBitVector.getRankIndexBitsPerBit());
+        
         System.out.println("--- Benchmarking rank operation ---");
         
         benchmarkRanks(rankSelectBitVector);
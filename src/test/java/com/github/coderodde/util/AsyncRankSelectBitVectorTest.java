@@ -0,0 +1,150 @@
+package com.github.coderodde.util;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class AsyncRankSelectBitVectorTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void readersSeeLastPublishedSnapshot() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        AsyncRankSelectBitVector bv = 
+                new AsyncRankSelectBitVector(1_000, tasks::add);
+        
+        assertFalse(bv.isStale());
+        
+        bv.writeBitOn(10);
+        bv.writeBitOn(20);
+        bv.writeBitOn(20);
+        
+        // The writes are coalesced into one rebuild, and the repeated write 
+        // changes nothing:
+        assertEquals(1, tasks.size());
+        assertTrue(bv.isStale());
+        assertEquals(2L, bv.getLag());
+        assertEquals(0, bv.getNumberOfSetBits());
+        assertEquals(0, bv.rank(1_000));
+        assertFalse(bv.readBit(10));
+        
+        RankSelectBitVectorSlice oldSnapshot = bv.getSnapshot();
+        
+        tasks.poll().run();
+        
+        assertFalse(bv.isStale());
+        assertEquals(0L, bv.getLag());
+        assertEquals(2, bv.getNumberOfSetBits());
+        assertEquals(1, bv.rank(11));
+        assertEquals(20, bv.select(2));
+        assertTrue(bv.readBit(10));
+        assertEquals(0, oldSnapshot.getNumberOfSetBits());
+        
+        bv.writeBitOff(10);
+        
+        assertEquals(1, tasks.size());
+        assertEquals(1L, bv.getLag());
+        assertEquals(10, bv.select(1));
+        
+        bv.rebuildNow();
+        
+        assertEquals(20, bv.select(1));
+        assertFalse(bv.isStale());
+    }
+    
+    @Test
+    public void rejectedRebuildIsRescheduled() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        boolean[] reject = { true };
+        AsyncRankSelectBitVector bv = 
+                new AsyncRankSelectBitVector(1_000, task -> {
+                    if (reject[0]) {
+                        throw new RejectedExecutionException();
+                    }
+                    
+                    tasks.add(task);
+                });
+        
+        try {
+            bv.writeBitOn(10);
+            fail("The rejection was swallowed.");
+        } catch (RejectedExecutionException ex) {
+            // Expected.
+        }
+        
+        reject[0] = false;
+        bv.writeBitOn(20);
+        
+        assertEquals(1, tasks.size());
+        
+        tasks.poll().run();
+        
+        assertFalse(bv.isStale());
+        assertEquals(2, bv.getNumberOfSetBits());
+        assertEquals(10, bv.select(1));
+    }
+    
+    @Test
+    public void concurrentWritesAndReads() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AsyncRankSelectBitVector bv = 
+                new AsyncRankSelectBitVector(100_000, executor);
+        
+        RankSelectBitVector expected = new RankSelectBitVector(100_000);
+        Random random = new Random(SEED);
+        
+        for (int i = 0; i < 10_000; i++) {
+            int index = random.nextInt(100_000);
+            bv.writeBitOn(index);
+            expected.writeBitOn(index);
+            
+            // Each snapshot is internally consistent:
+            RankSelectBitVectorSlice snapshot = bv.getSnapshot();
+            int numberOfSetBits = snapshot.getNumberOfSetBits();
+            assertEquals(numberOfSetBits, snapshot.rank(100_000));
+            
+            if (numberOfSetBits > 0) {
+                int lastIndex = snapshot.select(numberOfSetBits);
+                assertTrue(snapshot.readBit(lastIndex));
+                assertEquals(numberOfSetBits - 1, snapshot.rank(lastIndex));
+            }
+        }
+        
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        
+        assertFalse(bv.isStale());
+        assertEquals(expected.getNumberOfSetBits(), bv.getNumberOfSetBits());
+        
+        for (int i = 0; i <= 100_000; i += 97) {
+            assertEquals(expected.rankThird(i), bv.rank(i));
+        }
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
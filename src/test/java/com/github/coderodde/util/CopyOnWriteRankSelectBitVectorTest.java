@@ -0,0 +1,119 @@
+package com.github.coderodde.util;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class CopyOnWriteRankSelectBitVectorTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void snapshotsAreNotAffectedByLaterWrites() {
+        Random random = new Random(SEED);
+        int length = 3 * (CopyOnWriteRankSelectBitVector.CHUNK_WORDS * 64) 
+                   + 1_001;
+        
+        CopyOnWriteRankSelectBitVector bv = 
+                new CopyOnWriteRankSelectBitVector(length);
+        
+        RankSelectBitVector expected = new RankSelectBitVector(length);
+        
+        CopyOnWriteRankSelectBitVector.Snapshot[] snapshots = 
+                new CopyOnWriteRankSelectBitVector.Snapshot[4];
+        
+        RankSelectBitVector[] expectedSnapshots = 
+                new RankSelectBitVector[snapshots.length];
+        
+        for (int i = 0; i < snapshots.length; i++) {
+            for (int j = 0; j < 20_000; j++) {
+                int index = random.nextInt(length);
+                boolean on = random.nextInt(4) != 0;
+                bv.writeBit(index, on);
+                expected.writeBit(index, on);
+                
+                if (j % 5_000 == 0) {
+                    // Queries on the writer in between the writes:
+                    assertEquals(expected.rankThird(index), bv.rank(index));
+                }
+            }
+            
+            snapshots[i] = bv.snapshot();
+            expectedSnapshots[i] = expected.copyWithoutIndex();
+        }
+        
+        checkEquals(expected, bv.snapshot());
+        
+        for (int i = 0; i < snapshots.length; i++) {
+            checkEquals(expectedSnapshots[i], snapshots[i]);
+        }
+    }
+    
+    @Test
+    public void snapshotWithoutWritesIsShared() {
+        CopyOnWriteRankSelectBitVector bv = 
+                new CopyOnWriteRankSelectBitVector(100);
+        
+        bv.writeBitOn(10);
+        
+        CopyOnWriteRankSelectBitVector.Snapshot snapshot = bv.snapshot();
+        
+        assertSame(snapshot, bv.snapshot());
+        
+        bv.writeBitOn(20);
+        
+        assertEquals(1, snapshot.getNumberOfSetBits());
+        assertEquals(2, bv.snapshot().getNumberOfSetBits());
+        assertEquals(20, bv.select(2));
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void throwsOnTooLargeSelect() {
+        CopyOnWriteRankSelectBitVector bv = 
+                new CopyOnWriteRankSelectBitVector(100);
+        
+        bv.writeBitOn(10);
+        bv.select(2);
+    }
+    
+    private static void checkEquals(
+            RankSelectBitVector expected,
+            CopyOnWriteRankSelectBitVector.Snapshot actual) {
+        
+        int length = expected.getNumberOfSupportedBits();
+        
+        assertEquals(length, actual.getNumberOfSupportedBits());
+        assertEquals(expected.getNumberOfSetBits(), 
+                     actual.getNumberOfSetBits());
+        
+        for (int i = 0; i < length; i++) {
+            assertEquals(expected.readBit(i), actual.readBit(i));
+        }
+        
+        for (int i = 0; i <= length; i++) {
+            assertEquals(expected.rankThird(i), actual.rank(i));
+        }
+        
+        for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+            assertEquals(expected.selectThird(i), actual.select(i));
+        }
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
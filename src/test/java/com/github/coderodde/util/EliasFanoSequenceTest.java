@@ -0,0 +1,111 @@
+package com.github.coderodde.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class EliasFanoSequenceTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void getAndRank() {
+        Random random = new Random(SEED);
+        
+        for (int universe : new int[]{ 10, 1_000, 1_000_000, 1 << 30 }) {
+            int[] values = new int[1 + random.nextInt(3_000)];
+            
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt(universe);
+            }
+            
+            Arrays.sort(values);
+            
+            EliasFanoSequence sequence = 
+                    new EliasFanoSequence(values, values.length);
+            
+            assertEquals(values.length, sequence.size());
+            
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], sequence.get(i));
+                assertEquals(getRank(values, values[i]), 
+                             sequence.rank(values[i]));
+                assertEquals(getRank(values, values[i] + 1), 
+                             sequence.rank(values[i] + 1));
+            }
+            
+            for (int i = 0; i < 1_000; i++) {
+                int value = random.nextInt(universe);
+                assertEquals(getRank(values, value), sequence.rank(value));
+            }
+        }
+    }
+    
+    @Test
+    public void clusteredElements() {
+        // The last element makes the low bits wide, so the first bucket 
+        // holds thousands of elements:
+        int[] values = new int[10_001];
+        
+        for (int i = 0; i < 10_000; i++) {
+            values[i] = 3 * i;
+        }
+        
+        values[10_000] = 2_000_000_000;
+        
+        EliasFanoSequence sequence = 
+                new EliasFanoSequence(values, values.length);
+        
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(values[i], sequence.get(i));
+            assertEquals(i, sequence.rank(3 * i));
+            assertEquals(i + 1, sequence.rank(3 * i + 1));
+        }
+        
+        assertEquals(10_000, sequence.rank(30_000));
+        assertEquals(10_000, sequence.rank(2_000_000_000));
+        assertEquals(10_001, sequence.rank(2_000_000_001));
+    }
+    
+    @Test
+    public void emptySequence() {
+        EliasFanoSequence sequence = new EliasFanoSequence(new int[0], 0);
+        
+        assertEquals(0, sequence.size());
+        assertEquals(0, sequence.rank(0));
+        assertEquals(0, sequence.rank(100));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnDecreasingElements() {
+        new EliasFanoSequence(new int[]{ 1, 5, 3 }, 3);
+    }
+    
+    private static int getRank(int[] values, int value) {
+        int rank = 0;
+        
+        while (rank < values.length && values[rank] < value) {
+            rank++;
+        }
+        
+        return rank;
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
@@ -0,0 +1,220 @@
+package com.github.coderodde.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class HybridRankSelectBitVectorTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    private static final int CHUNK_SIZE = 1 << 16;
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void containerKinds() {
+        Random random = new Random(SEED);
+        RankSelectBitVector bv = getMixedBitVector(random);
+        HybridRankSelectBitVector hybrid = HybridRankSelectBitVector.of(bv);
+        
+        assertEquals("array", hybrid.getContainerKind(0));
+        assertEquals("bitmap", hybrid.getContainerKind(1));
+        assertEquals("run", hybrid.getContainerKind(2));
+        assertNull(hybrid.getContainerKind(3));
+        
+        checkSameBits(bv, hybrid);
+    }
+    
+    @Test
+    public void writesConvertContainers() {
+        HybridRankSelectBitVector hybrid = 
+                new HybridRankSelectBitVector(2 * CHUNK_SIZE);
+        RankSelectBitVector bv = new RankSelectBitVector(2 * CHUNK_SIZE);
+        
+        for (int i = 0; i < 5_000; i++) {
+            hybrid.writeBitOn(CHUNK_SIZE + 2 * i);
+            bv.writeBitOn(CHUNK_SIZE + 2 * i);
+        }
+        
+        assertEquals("bitmap", hybrid.getContainerKind(1));
+        checkSameBits(bv, hybrid);
+        
+        for (int i = 0; i < 1_000; i++) {
+            hybrid.writeBitOff(CHUNK_SIZE + 2 * i);
+            bv.writeBitOff(CHUNK_SIZE + 2 * i);
+        }
+        
+        assertEquals("array", hybrid.getContainerKind(1));
+        checkSameBits(bv, hybrid);
+        
+        // Writing to a list of runs converts it first:
+        bv.setRange(0, 10_000);
+        hybrid = HybridRankSelectBitVector.of(bv);
+        
+        assertEquals("run", hybrid.getContainerKind(0));
+        
+        hybrid.writeBitOff(5_000);
+        bv.writeBitOff(5_000);
+        
+        assertEquals("bitmap", hybrid.getContainerKind(0));
+        checkSameBits(bv, hybrid);
+        
+        hybrid.runOptimize();
+        
+        assertEquals("run", hybrid.getContainerKind(0));
+        checkSameBits(bv, hybrid);
+        
+        for (int i = 0; i < 2 * CHUNK_SIZE; i++) {
+            hybrid.writeBitOff(i);
+        }
+        
+        assertEquals(0, hybrid.getNumberOfSetBits());
+        assertNull(hybrid.getContainerKind(0));
+        assertNull(hybrid.getContainerKind(1));
+    }
+    
+    @Test
+    public void randomWrites() {
+        Random random = new Random(SEED);
+        RankSelectBitVector bv = getMixedBitVector(random);
+        HybridRankSelectBitVector hybrid = HybridRankSelectBitVector.of(bv);
+        
+        for (int i = 0; i < 20_000; i++) {
+            int index = random.nextInt(bv.getNumberOfSupportedBits());
+            boolean on = random.nextBoolean();
+            
+            bv.writeBit(index, on);
+            hybrid.writeBit(index, on);
+        }
+        
+        checkSameBits(bv, hybrid);
+    }
+    
+    @Test
+    public void andOr() {
+        Random random = new Random(SEED);
+        
+        for (int iteration = 0; iteration < 4; iteration++) {
+            RankSelectBitVector bv1 = getMixedBitVector(random);
+            RankSelectBitVector bv2 = getMixedBitVector(random);
+            HybridRankSelectBitVector hybrid1 = 
+                    HybridRankSelectBitVector.of(bv1);
+            HybridRankSelectBitVector hybrid2 = 
+                    HybridRankSelectBitVector.of(bv2);
+            
+            if (iteration % 2 == 0) {
+                bv1.and(bv2);
+                hybrid1.and(hybrid2);
+            } else {
+                bv1.or(bv2);
+                hybrid1.or(hybrid2);
+            }
+            
+            checkSameBits(bv1, hybrid1);
+            
+            // The operands do not share the mutable containers:
+            for (int i = 0; i < bv2.getNumberOfSupportedBits(); i += 7) {
+                hybrid1.writeBit(i, !hybrid1.readBit(i));
+            }
+            
+            checkSameBits(bv2, hybrid2);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void andThrowsOnLengthMismatch() {
+        new HybridRankSelectBitVector(100).and(
+                new HybridRankSelectBitVector(101));
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void selectThrowsOnTooLargeIndex() {
+        HybridRankSelectBitVector hybrid = new HybridRankSelectBitVector(100);
+        hybrid.writeBitOn(10);
+        hybrid.select(2);
+    }
+    
+    /**
+     * Returns a bit vector with a sparse first chunk, a dense second chunk, 
+     * a few runs in the third chunk, an empty fourth chunk and a random 
+     * partial last chunk.
+     */
+    private static RankSelectBitVector getMixedBitVector(Random random) {
+        RankSelectBitVector bv = new RankSelectBitVector(4 * CHUNK_SIZE + 777);
+        
+        for (int i = 0; i < 1_000; i++) {
+            bv.writeBitOn(random.nextInt(CHUNK_SIZE));
+        }
+        
+        for (int i = CHUNK_SIZE; i < 2 * CHUNK_SIZE; i++) {
+            if (random.nextBoolean()) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        for (int i = 0; i < 10; i++) {
+            int fromIndex = 2 * CHUNK_SIZE + i * 6_000 + random.nextInt(100);
+            bv.setRange(fromIndex, fromIndex + 1 + random.nextInt(5_000));
+        }
+        
+        for (int i = 4 * CHUNK_SIZE; i < bv.getNumberOfSupportedBits(); i++) {
+            if (random.nextBoolean()) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        return bv;
+    }
+    
+    private static void checkSameBits(RankSelectBitVector expected, 
+                                      HybridRankSelectBitVector actual) {
+        int length = expected.getNumberOfSupportedBits();
+        
+        assertEquals(length, actual.getNumberOfSupportedBits());
+        assertEquals(expected.getNumberOfSetBits(), 
+                     actual.getNumberOfSetBits());
+        
+        for (int i = 0; i < length; i++) {
+            assertEquals(expected.readBit(i), actual.readBit(i));
+        }
+        
+        for (int i = 0; i <= length; i += 1 + i % 97) {
+            assertEquals(expected.rankThird(i), actual.rank(i));
+            assertEquals(expected.nextSetBit(i), actual.nextSetBit(i));
+        }
+        
+        assertEquals(expected.getNumberOfSetBits(), actual.rank(length));
+        
+        for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+            assertEquals(expected.selectThird(i), actual.select(i));
+        }
+        
+        List<Integer> indices = new ArrayList<>();
+        actual.forEachSetBit(indices::add);
+        
+        assertEquals(expected.getNumberOfSetBits(), indices.size());
+        
+        for (int i = 0; i < indices.size(); i++) {
+            assertEquals(expected.selectThird(i + 1), (int) indices.get(i));
+        }
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
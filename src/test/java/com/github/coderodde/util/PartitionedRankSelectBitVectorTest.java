@@ -0,0 +1,99 @@
+package com.github.coderodde.util;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class PartitionedRankSelectBitVectorTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void matchesSingleBitVector() {
+        Random random = new Random(SEED);
+        PartitionedRankSelectBitVector bv = 
+                new PartitionedRankSelectBitVector(100_003, 4_096);
+        
+        RankSelectBitVector expected = new RankSelectBitVector(100_003);
+        
+        assertEquals(25, bv.getNumberOfShards());
+        
+        for (int i = 0; i < 100_003; i++) {
+            if (random.nextInt(3) == 0) {
+                bv.writeBitOn(i);
+                expected.writeBitOn(i);
+            }
+        }
+        
+        bv.buildIndices();
+        
+        assertEquals(0, bv.getNumberOfDirtyShards());
+        checkEquals(expected, bv);
+        
+        // Writes to two shards:
+        for (int index : new int[]{ 5, 4_097, 4_100 }) {
+            bv.writeBit(index, !bv.readBit(index));
+            expected.writeBit(index, !expected.readBit(index));
+        }
+        
+        assertEquals(2, bv.getNumberOfDirtyShards());
+        assertEquals(expected.getNumberOfSetBits(), bv.getNumberOfSetBits());
+        
+        // A query rebuilds only the shard it touches:
+        assertEquals(expected.rankThird(10), bv.rank(10));
+        assertEquals(1, bv.getNumberOfDirtyShards());
+        
+        checkEquals(expected, bv);
+    }
+    
+    @Test
+    public void emptyShards() {
+        PartitionedRankSelectBitVector bv = 
+                new PartitionedRankSelectBitVector(1_000, 64);
+        
+        bv.writeBitOn(999);
+        bv.writeBitOn(3);
+        
+        assertEquals(2, bv.getNumberOfSetBits());
+        assertEquals(3, bv.select(1));
+        assertEquals(999, bv.select(2));
+        assertEquals(1, bv.rank(999));
+        assertEquals(2, bv.rank(1_000));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnMisalignedShardSize() {
+        new PartitionedRankSelectBitVector(1_000, 100);
+    }
+    
+    private static void checkEquals(RankSelectBitVector expected,
+                                    PartitionedRankSelectBitVector actual) {
+        assertEquals(expected.getNumberOfSetBits(), 
+                     actual.getNumberOfSetBits());
+        
+        for (int i = 0; i <= expected.getNumberOfSupportedBits(); i++) {
+            assertEquals(expected.rankThird(i), actual.rank(i));
+        }
+        
+        for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+            assertEquals(expected.selectThird(i), actual.select(i));
+        }
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
@@ -0,0 +1,92 @@
+package com.github.coderodde.util;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class RankSelectBatchExecutorTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void batchQueriesMatchSingleQueries() {
+        Random random = new Random(SEED);
+        RankSelectBitVector bv = new RankSelectBitVector(300_000);
+        
+        for (int i = 0; i < 300_000; i++) {
+            if (random.nextInt(5) == 0) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        
+        try {
+            for (boolean sortQueries : new boolean[]{ false, true }) {
+                RankSelectBatchExecutor executor = 
+                        new RankSelectBatchExecutor(pool, 
+                                                    sortQueries, 
+                                                    sortQueries);
+                
+                for (int numberOfQueries : new int[]{ 0, 10, 50_000 }) {
+                    int[] indices = new int[numberOfQueries];
+                    int[] bitIndices = new int[numberOfQueries];
+                    
+                    for (int i = 0; i < numberOfQueries; i++) {
+                        // Some repeated arguments:
+                        indices[i] = random.nextInt(300_001) & ~0xF;
+                        bitIndices[i] = 
+                                1 + random.nextInt(bv.getNumberOfSetBits());
+                    }
+                    
+                    int[] ranks = new int[numberOfQueries];
+                    int[] selects = new int[numberOfQueries];
+                    
+                    executor.rank(bv, indices, ranks);
+                    executor.select(bv, bitIndices, selects);
+                    
+                    for (int i = 0; i < numberOfQueries; i++) {
+                        assertEquals(bv.rankThird(indices[i]), ranks[i]);
+                        assertEquals(bv.selectThird(bitIndices[i]), 
+                                     selects[i]);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void throwsOnInvalidSelectIndex() {
+        RankSelectBitVector bv = new RankSelectBitVector(100);
+        
+        bv.writeBitOn(3);
+        new RankSelectBatchExecutor().select(bv, new int[]{ 1, 2 }, new int[2]);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnLengthMismatch() {
+        new RankSelectBatchExecutor().rank(new RankSelectBitVector(100), 
+                                           new int[3], 
+                                           new int[2]);
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
@@ -0,0 +1,188 @@
+package com.github.coderodde.util;
+
+import java.util.BitSet;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class RankSelectBitVectorBuilderTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void appendSingleBits() {
+        RankSelectBitVector bv = new RankSelectBitVectorBuilder()
+                .append(true)
+                .append(false)
+                .append(true)
+                .build();
+        
+        assertEquals(3, bv.getNumberOfSupportedBits());
+        assertEquals(2, bv.getNumberOfSetBits());
+        assertEquals(0, bv.selectThird(1));
+        assertEquals(2, bv.selectThird(2));
+        assertEquals(1, bv.rankThird(2));
+        assertEquals(2, bv.rankThird(3));
+    }
+    
+    @Test
+    public void buildMatchesWrittenBitVector() {
+        Random random = new Random(SEED);
+        
+        BlockLayout[] layouts = {
+            RankSelectBitVectorBuilder.DEFAULT_LAYOUT,
+            BlockLayout.of(20, 5),
+            BlockLayout.of(100, 10),
+            BlockLayout.of(96, 48),
+            BlockLayout.of(4096, 512),
+        };
+        
+        for (BlockLayout layout : layouts) {
+            RankSelectBitVectorBuilder builder = 
+                    new RankSelectBitVectorBuilder(layout);
+            
+            BitSet bits = new BitSet();
+            int length = 0;
+            
+            while (length < 20_000) {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        boolean on = random.nextBoolean();
+                        builder.append(on);
+                        bits.set(length++, on);
+                        break;
+                    
+                    case 1:
+                        long word = random.nextLong();
+                        int wordLength = random.nextInt(Long.SIZE + 1);
+                        builder.appendWord(word, wordLength);
+                        
+                        for (int i = 0; i < wordLength; i++) {
+                            bits.set(length++, (word & (1L << i)) != 0);
+                        }
+                        
+                        break;
+                    
+                    case 2:
+                        on = random.nextBoolean();
+                        int runLength = random.nextInt(300);
+                        builder.appendRun(on, runLength);
+                        bits.set(length, length + runLength, on);
+                        length += runLength;
+                        break;
+                }
+                
+                assertEquals(length, builder.getNumberOfBits());
+            }
+            
+            RankSelectBitVector actual = builder.build();
+            RankSelectBitVector expected = 
+                    new RankSelectBitVector(length, layout);
+            
+            bits.stream().forEach(expected::writeBitOn);
+            
+            checkEquals(expected, actual);
+            
+            // The builder arrays are owned by the bit vector from now on:
+            int index = random.nextInt(length);
+            actual.writeBit(index, !actual.readBit(index));
+            expected.writeBit(index, !expected.readBit(index));
+            
+            checkEquals(expected, actual);
+        }
+    }
+    
+    @Test
+    public void builtBitVectorReportsEntriesInUse() {
+        RankSelectBitVectorBuilder builder = new RankSelectBitVectorBuilder();
+        
+        for (int i = 0; i < 100_003; i++) {
+            builder.append(i % 3 == 0);
+        }
+        
+        // The built vector keeps the slack of the geometric growth, which 
+        // is not reported:
+        RankSelectBitVector built = builder.build();
+        RankSelectBitVector constructed = 
+                new RankSelectBitVector(100_003, BlockLayout.of(512, 64));
+        
+        MemoryUsageReport builtReport = built.memoryUsage();
+        MemoryUsageReport constructedReport = constructed.memoryUsage();
+        
+        assertEquals(constructedReport.getDataBytes(), 
+                     builtReport.getDataBytes());
+        assertEquals(constructedReport.getRankIndexBytes(), 
+                     builtReport.getRankIndexBytes());
+        assertEquals(constructed.getRankIndexBitsPerBit(), 
+                     built.getRankIndexBitsPerBit(), 
+                     0.0);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void throwsOnBuildingTwice() {
+        RankSelectBitVectorBuilder builder = 
+                new RankSelectBitVectorBuilder().append(true);
+        
+        builder.build();
+        builder.build();
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void throwsOnAppendingAfterBuild() {
+        RankSelectBitVectorBuilder builder = 
+                new RankSelectBitVectorBuilder().append(true);
+        
+        builder.build();
+        builder.append(false);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void throwsOnBuildingEmptyBitVector() {
+        new RankSelectBitVectorBuilder().build();
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnTooLongWord() {
+        new RankSelectBitVectorBuilder().appendWord(0L, 65);
+    }
+    
+    private static void checkEquals(RankSelectBitVector expected,
+                                    RankSelectBitVector actual) {
+        assertEquals(expected.getNumberOfSupportedBits(),
+                     actual.getNumberOfSupportedBits());
+        
+        assertEquals(expected.getNumberOfSetBits(),
+                     actual.getNumberOfSetBits());
+        
+        for (int i = 0; i < expected.getNumberOfSupportedBits(); i++) {
+            assertEquals(expected.readBit(i), actual.readBit(i));
+        }
+        
+        for (int i = 0; i <= expected.getNumberOfSupportedBits(); i++) {
+            assertEquals(expected.rankThird(i), actual.rankThird(i));
+            assertEquals(expected.rankFirst(i), actual.rankFirst(i));
+        }
+        
+        for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+            assertEquals(expected.selectThird(i), actual.selectThird(i));
+            assertEquals(expected.selectFirst(i), actual.selectFirst(i));
+        }
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
@@ -0,0 +1,129 @@
+package com.github.coderodde.util;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class RankSelectBitVectorCursorTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void nextOneVisitsAllSetBits() {
+        Random random = new Random(SEED);
+        
+        for (int density : new int[]{ 2, 30, 2_000 }) {
+            RankSelectBitVector bv = 
+                    getRandomBitVector(random, 50_000, density);
+            RankSelectBitVectorCursor cursor = bv.cursor();
+            
+            for (int j = 1; j <= bv.getNumberOfSetBits(); j++) {
+                assertEquals(bv.selectThird(j), cursor.nextOne());
+                assertEquals(j, cursor.rank());
+                assertEquals(bv.selectThird(j) + 1, cursor.position());
+            }
+            
+            assertEquals(-1, cursor.nextOne());
+            assertEquals(bv.getNumberOfSetBits(), cursor.rank());
+            assertEquals(50_000, cursor.position());
+        }
+    }
+    
+    @Test
+    public void randomMoves() {
+        Random random = new Random(SEED);
+        
+        for (int density : new int[]{ 2, 30, 2_000 }) {
+            RankSelectBitVector bv = 
+                    getRandomBitVector(random, 50_000, density);
+            RankSelectBitVectorCursor cursor = bv.cursor();
+            
+            for (int iteration = 0; iteration < 10_000; iteration++) {
+                int position = cursor.position();
+                int remainingOnes = bv.getNumberOfSetBits() - cursor.rank();
+                
+                switch (random.nextInt(4)) {
+                    case 0:
+                        int expected = 
+                                remainingOnes == 0 ? 
+                                -1 : 
+                                bv.selectThird(cursor.rank() + 1);
+                        
+                        assertEquals(expected, cursor.nextOne());
+                        break;
+                    
+                    case 1:
+                        // Mostly short forward moves:
+                        int target = random.nextInt(10) == 0 ? 
+                                random.nextInt(50_001) :
+                                Math.min(50_000, 
+                                         position + random.nextInt(700));
+                        
+                        cursor.advanceTo(target);
+                        assertEquals(target, cursor.position());
+                        break;
+                    
+                    default:
+                        if (remainingOnes == 0) {
+                            cursor.advanceTo(0);
+                            break;
+                        }
+                        
+                        int count = 1 + random.nextInt(
+                                Math.min(remainingOnes, 
+                                         random.nextBoolean() ? 5 : 500));
+                        
+                        assertEquals(bv.selectThird(cursor.rank() + count), 
+                                     cursor.skipOnes(count));
+                        break;
+                }
+                
+                assertEquals(bv.rankThird(cursor.position()), cursor.rank());
+            }
+        }
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void throwsOnSkippingTooManyOnes() {
+        RankSelectBitVector bv = new RankSelectBitVector(1_000);
+        
+        bv.writeBitOn(10);
+        bv.writeBitOn(900);
+        
+        RankSelectBitVectorCursor cursor = bv.cursor();
+        
+        cursor.nextOne();
+        cursor.skipOnes(2);
+    }
+    
+    private static RankSelectBitVector getRandomBitVector(Random random, 
+                                                          int length,
+                                                          int density) {
+        RankSelectBitVector bv = new RankSelectBitVector(length);
+        
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(density) == 0) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        return bv;
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
@@ -0,0 +1,146 @@
+package com.github.coderodde.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class RankSelectBitVectorLoaderTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void loadMatchesWrittenBitVector() throws IOException {
+        Random random = new Random(SEED);
+        
+        for (int length : new int[]{ 1, 63, 64, 65, 1000, 30_011, 65_536 }) {
+            byte[] bytes = getRandomBytes(random, length);
+            RankSelectBitVector expected = getBitVector(bytes, length);
+            
+            RankSelectBitVector actual = 
+                    RankSelectBitVectorLoader.load(
+                            new ByteArrayInputStream(bytes), 
+                            length);
+            
+            assertEquals(expected.getLayout(), actual.getLayout());
+            checkEquals(expected, actual);
+            
+            // Deliver a few bytes at a time so that words get split between 
+            // the reads:
+            actual = RankSelectBitVectorLoader.load(
+                    new TrickleInputStream(new ByteArrayInputStream(bytes), 
+                                           random),
+                    length,
+                    BlockLayout.of(100, 10));
+            
+            checkEquals(expected, actual);
+        }
+    }
+    
+    @Test
+    public void loadDoesNotConsumeTrailingBytes() throws IOException {
+        Random random = new Random(SEED);
+        byte[] bytes = getRandomBytes(random, 1000);
+        byte[] input = new byte[bytes.length + 1];
+        
+        System.arraycopy(bytes, 0, input, 0, bytes.length);
+        input[bytes.length] = 42;
+        
+        InputStream inputStream = new ByteArrayInputStream(input);
+        RankSelectBitVector actual = 
+                RankSelectBitVectorLoader.load(inputStream, 1000);
+        
+        checkEquals(getBitVector(bytes, 1000), actual);
+        assertEquals(42, inputStream.read());
+    }
+    
+    @Test(expected = EOFException.class)
+    public void throwsOnTooShortInput() throws IOException {
+        RankSelectBitVectorLoader.load(
+                new ByteArrayInputStream(new byte[15]), 
+                65);
+    }
+    
+    private static byte[] getRandomBytes(Random random, int length) {
+        int numberOfWords = (length + Long.SIZE - 1) / Long.SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(numberOfWords * Long.BYTES)
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+        
+        for (int i = 0; i < numberOfWords; i++) {
+            buffer.putLong(random.nextLong());
+        }
+        
+        return buffer.array();
+    }
+    
+    private static RankSelectBitVector getBitVector(byte[] bytes, 
+                                                    int length) {
+        RankSelectBitVector bv = new RankSelectBitVector(length);
+        
+        for (int i = 0; i < length; i++) {
+            if ((bytes[i / Byte.SIZE] & (1 << (i % Byte.SIZE))) != 0) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        return bv;
+    }
+    
+    private static void checkEquals(RankSelectBitVector expected,
+                                    RankSelectBitVector actual) {
+        assertEquals(expected.getNumberOfSupportedBits(),
+                     actual.getNumberOfSupportedBits());
+        
+        assertEquals(expected.getNumberOfSetBits(),
+                     actual.getNumberOfSetBits());
+        
+        for (int i = 0; i <= expected.getNumberOfSupportedBits(); i++) {
+            assertEquals(expected.rankThird(i), actual.rankThird(i));
+        }
+        
+        for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+            assertEquals(expected.selectThird(i), actual.selectThird(i));
+        }
+    }
+    
+    /**
+     * Returns at most a few bytes per read.
+     */
+    private static final class TrickleInputStream extends FilterInputStream {
+        
+        private final Random random;
+        
+        TrickleInputStream(InputStream in, Random random) {
+            super(in);
+            this.random = random;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(13)));
+        }
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
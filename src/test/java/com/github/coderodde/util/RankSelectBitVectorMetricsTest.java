@@ -0,0 +1,169 @@
+package com.github.coderodde.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class RankSelectBitVectorMetricsTest {
+    
+    @Before
+    public void before() {
+        RankSelectBitVectorMetrics.reset();
+    }
+    
+    @Test
+    public void disabledByDefault() {
+        assertFalse(RankSelectBitVectorMetrics.ENABLED);
+        
+        RankSelectBitVector bv = new RankSelectBitVector(100);
+        
+        bv.writeBitOn(10);
+        bv.rankThird(50);
+        bv.selectThird(1);
+        
+        assertEquals(0L, RankSelectBitVectorMetrics.getWriteCount());
+        assertEquals(0L, RankSelectBitVectorMetrics.getRankCount());
+        assertEquals(0L, RankSelectBitVectorMetrics.getSelectCount());
+        assertEquals(0L, RankSelectBitVectorMetrics.getRebuildCount());
+    }
+    
+    @Test
+    public void enabledInForkedJvm() throws Exception {
+        // ENABLED is read once per JVM, so the enabled hooks are exercised in
+        // a child JVM started with the property set:
+        Process process = 
+                new ProcessBuilder(
+                        Path.of(System.getProperty("java.home"), 
+                                "bin", 
+                                "java").toString(),
+                        "-D" + RankSelectBitVectorMetrics.ENABLED_PROPERTY + 
+                                "=true",
+                        "-cp",
+                        System.getProperty("java.class.path"),
+                        EnabledMetricsMain.class.getName())
+                        .redirectErrorStream(true)
+                        .start();
+        
+        String output = 
+                new String(process.getInputStream().readAllBytes()).trim();
+        
+        assertEquals(output, 0, process.waitFor());
+        
+        // Writes: two bits, a range, a scatter and one more bit. Ranks: one
+        // single and a batch of three. Rebuilds: one triggered by the first 
+        // rank, one explicit.
+        assertEquals("true 5 4 1 2 1", output);
+    }
+    
+    @Test
+    public void recordRebuild() {
+        RankSelectBitVectorMetrics.recordRebuild(500L, false);
+        RankSelectBitVectorMetrics.recordRebuild(3_000L, true);
+        RankSelectBitVectorMetrics.recordRebuild(5_000_000L, true);
+        
+        assertEquals(3L, RankSelectBitVectorMetrics.getRebuildCount());
+        assertEquals(2L, 
+                     RankSelectBitVectorMetrics
+                             .getQueryTriggeredRebuildCount());
+        assertEquals(5_003_500L, 
+                     RankSelectBitVectorMetrics.getTotalRebuildNanos());
+        
+        int numberOfBuckets = 
+                RankSelectBitVectorMetrics.NUMBER_OF_HISTOGRAM_BUCKETS;
+        
+        long[] expected = new long[numberOfBuckets];
+        
+        expected[0] = 1L;  // 0 µs
+        expected[1] = 1L;  // 3 µs
+        expected[12] = 1L; // 5000 µs
+        
+        assertArrayEquals(
+                expected, 
+                RankSelectBitVectorMetrics.getRebuildDurationHistogram());
+        
+        RankSelectBitVectorMetrics.reset();
+        
+        assertEquals(0L, RankSelectBitVectorMetrics.getRebuildCount());
+    }
+    
+    @Test
+    public void bucketIndex() {
+        assertEquals(0, RankSelectBitVectorMetrics.getBucketIndex(0L));
+        assertEquals(0, RankSelectBitVectorMetrics.getBucketIndex(1_999L));
+        assertEquals(1, RankSelectBitVectorMetrics.getBucketIndex(2_000L));
+        assertEquals(1, RankSelectBitVectorMetrics.getBucketIndex(3_999L));
+        assertEquals(2, RankSelectBitVectorMetrics.getBucketIndex(4_000L));
+        assertEquals(
+                RankSelectBitVectorMetrics.NUMBER_OF_HISTOGRAM_BUCKETS - 1,
+                RankSelectBitVectorMetrics.getBucketIndex(Long.MAX_VALUE));
+    }
+    
+    @Test
+    public void flightRecorderEvents() throws Exception {
+        Path path = Files.createTempFile("rebuild", ".jfr");
+        
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.coderodde.util.IndexRebuild");
+            recording.start();
+            
+            RankSelectBitVector bv = new RankSelectBitVector(1000);
+            
+            bv.writeBitOn(1);
+            bv.buildIndices();
+            bv.writeBitOn(2);
+            bv.rankThird(10);
+            
+            recording.stop();
+            recording.dump(path);
+            
+            List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+            
+            assertEquals(2, events.size());
+            assertFalse(events.get(0).getBoolean("triggeredByQuery"));
+            assertTrue(events.get(1).getBoolean("triggeredByQuery"));
+            assertEquals(1000, events.get(1).getInt("numberOfBits"));
+            assertEquals(2, events.get(1).getInt("numberOfSetBits"));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+    
+    /**
+     * Runs a fixed sequence of operations and prints the resulting counters.
+     */
+    public static final class EnabledMetricsMain {
+        
+        public static void main(String[] args) {
+            RankSelectBitVector bv = new RankSelectBitVector(1_000);
+            
+            bv.writeBitOn(10);
+            bv.writeBitOn(20);
+            bv.setRange(100, 200);
+            bv.setBits(new int[]{ 300, 301 });
+            bv.rankThird(50);
+            bv.selectThird(1);
+            bv.rankBatch(new int[]{ 1, 2, 3 }, new int[3]);
+            bv.writeBitOff(10);
+            bv.buildIndices();
+            
+            System.out.printf(
+                    "%b %d %d %d %d %d%n", 
+                    RankSelectBitVectorMetrics.ENABLED,
+                    RankSelectBitVectorMetrics.getWriteCount(),
+                    RankSelectBitVectorMetrics.getRankCount(),
+                    RankSelectBitVectorMetrics.getSelectCount(),
+                    RankSelectBitVectorMetrics.getRebuildCount(),
+                    RankSelectBitVectorMetrics
+                            .getQueryTriggeredRebuildCount());
+        }
+    }
+}
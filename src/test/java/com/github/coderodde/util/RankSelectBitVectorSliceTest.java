@@ -0,0 +1,139 @@
+package com.github.coderodde.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class RankSelectBitVectorSliceTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void sliceQueriesAreRelative() {
+        Random random = new Random(SEED);
+        RankSelectBitVector bv = new RankSelectBitVector(5_000);
+        
+        // Sparse so that the next set bit is often words away:
+        for (int i = 0; i < 5_000; i++) {
+            if (random.nextInt(50) == 0) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        for (int iteration = 0; iteration < 50; iteration++) {
+            int fromIndex = random.nextInt(5_001);
+            int toIndex = fromIndex + random.nextInt(5_001 - fromIndex);
+            
+            checkSlice(bv, bv.slice(fromIndex, toIndex));
+        }
+        
+        checkSlice(bv, bv.slice(0, 5_000));
+        checkSlice(bv, bv.slice(5_000, 5_000));
+        checkSlice(bv, bv.slice(100, 4_000).slice(64, 3_000));
+    }
+    
+    @Test
+    public void sliceReflectsWrites() {
+        RankSelectBitVector bv = new RankSelectBitVector(1_000);
+        RankSelectBitVectorSlice slice = bv.slice(100, 200);
+        
+        assertEquals(0, slice.getNumberOfSetBits());
+        assertEquals(-1, slice.nextSetBit(0));
+        
+        bv.writeBitOn(99);
+        bv.writeBitOn(150);
+        bv.writeBitOn(200);
+        
+        assertEquals(1, slice.getNumberOfSetBits());
+        assertEquals(50, slice.select(1));
+        assertEquals(50, slice.nextSetBit(0));
+        assertEquals(-1, slice.nextSetBit(51));
+        assertEquals(1, slice.rank(100));
+    }
+    
+    @Test
+    public void nextSetBit() {
+        Random random = new Random(SEED);
+        RankSelectBitVector bv = new RankSelectBitVector(3_000);
+        
+        for (int i = 0; i < 3_000; i++) {
+            if (random.nextInt(100) == 0) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        int expected = -1;
+        
+        for (int i = 3_000; i >= 0; i--) {
+            if (i < 3_000 && bv.readBit(i)) {
+                expected = i;
+            }
+            
+            assertEquals(expected, bv.nextSetBit(i));
+        }
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void throwsOnSelectBeyondSlice() {
+        RankSelectBitVector bv = new RankSelectBitVector(1_000);
+        
+        bv.writeBitOn(10);
+        bv.writeBitOn(500);
+        bv.slice(0, 100).select(2);
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void throwsOnReadBeyondSlice() {
+        new RankSelectBitVector(1_000).slice(0, 100).readBit(100);
+    }
+    
+    private static void checkSlice(RankSelectBitVector bv, 
+                                   RankSelectBitVectorSlice slice) {
+        int fromIndex = slice.getFromIndex();
+        int length = slice.getNumberOfSupportedBits();
+        List<Integer> expectedSetBits = new ArrayList<>();
+        
+        for (int i = 0; i < length; i++) {
+            assertEquals(bv.readBit(fromIndex + i), slice.readBit(i));
+            
+            if (bv.readBit(fromIndex + i)) {
+                expectedSetBits.add(i);
+            }
+        }
+        
+        assertEquals(expectedSetBits.size(), slice.getNumberOfSetBits());
+        
+        for (int i = 0; i <= length; i++) {
+            assertEquals(bv.rankThird(fromIndex + i) - bv.rankThird(fromIndex),
+                         slice.rank(i));
+        }
+        
+        for (int i = 0; i < expectedSetBits.size(); i++) {
+            assertEquals((int) expectedSetBits.get(i), slice.select(i + 1));
+        }
+        
+        List<Integer> actualSetBits = new ArrayList<>();
+        slice.forEachSetBit(actualSetBits::add);
+        
+        assertEquals(expectedSetBits, actualSetBits);
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}
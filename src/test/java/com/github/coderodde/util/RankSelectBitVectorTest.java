@@ -1,6 +1,10 @@
 package com.github.coderodde.util;
 
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.function.BiPredicate;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -407,6 +411,856 @@ public final class RankSelectBitVectorTest {
         assertEquals(0, bv.getNumberOfSetBits());
     }
     
+    @Test
+    public void bitwiseOperations() {
+        Random random = new Random(SEED);
+        
+        // The large length makes the operations run in parallel:
+        for (int length : new int[]{ 1, 63, 64, 65, 1000, 5_000_011 }) {
+            RankSelectBitVector bv1 = getRandomBitVector(random, length);
+            RankSelectBitVector bv2 = getRandomBitVector(random, length);
+            
+            checkBitwiseOperation(bv1, bv2, 
+                                  RankSelectBitVector.and(bv1, bv2), 
+                                  (a, b) -> a && b);
+            
+            checkBitwiseOperation(bv1, bv2, 
+                                  RankSelectBitVector.or(bv1, bv2), 
+                                  (a, b) -> a || b);
+            
+            checkBitwiseOperation(bv1, bv2, 
+                                  RankSelectBitVector.xor(bv1, bv2), 
+                                  (a, b) -> a ^ b);
+            
+            checkBitwiseOperation(bv1, bv2, 
+                                  RankSelectBitVector.andNot(bv1, bv2), 
+                                  (a, b) -> a && !b);
+            
+            checkBitwiseOperation(bv1, bv2, 
+                                  RankSelectBitVector.not(bv1), 
+                                  (a, b) -> !a);
+        }
+    }
+    
+    @Test
+    public void inPlaceBitwiseOperations() {
+        RankSelectBitVector bv1 = new RankSelectBitVector(70);
+        RankSelectBitVector bv2 = new RankSelectBitVector(70);
+        
+        bv1.writeBitOn(1);
+        bv1.writeBitOn(3);
+        bv1.writeBitOn(68);
+        
+        bv2.writeBitOn(3);
+        bv2.writeBitOn(69);
+        
+        bv1.or(bv2);
+        
+        assertEquals(4, bv1.getNumberOfSetBits());
+        assertEquals(4, bv1.rankThird(70));
+        assertEquals(69, bv1.selectThird(4));
+        
+        bv1.and(bv2);
+        
+        assertEquals(2, bv1.getNumberOfSetBits());
+        assertEquals(1, bv1.rankThird(4));
+        
+        bv1.andNot(bv2);
+        
+        assertEquals(0, bv1.getNumberOfSetBits());
+        
+        bv1.not();
+        
+        assertEquals(70, bv1.getNumberOfSetBits());
+        assertEquals(70, bv1.rankThird(70));
+        assertEquals(69, bv1.selectThird(70));
+        
+        bv1.xor(bv2);
+        
+        assertEquals(68, bv1.getNumberOfSetBits());
+        assertFalse(bv1.readBit(3));
+        assertTrue(bv1.readBit(68));
+        
+        bv1.writeBitOff(0);
+        
+        assertEquals(1, bv1.selectThird(1));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void bitwiseOperationThrowsOnLengthMismatch() {
+        new RankSelectBitVector(10).and(new RankSelectBitVector(11));
+    }
+    
+    @Test
+    public void combinedCardinalities() {
+        Random random = new Random(SEED);
+        int length = 100_000;
+        
+        // Sparse and clustered bits leave many superblocks empty:
+        RankSelectBitVector bv1 = new RankSelectBitVector(length);
+        RankSelectBitVector bv2 = new RankSelectBitVector(length);
+        
+        for (int i = 0; i < 300; i++) {
+            bv1.writeBitOn(random.nextInt(length / 2));
+            bv2.writeBitOn(length / 4 + random.nextInt(length / 2));
+        }
+        
+        bv1.buildIndices();
+        
+        assertEquals(RankSelectBitVector.and(bv1, bv2).getNumberOfSetBits(), 
+                     bv1.andCardinality(bv2));
+        
+        assertEquals(RankSelectBitVector.or(bv1, bv2).getNumberOfSetBits(), 
+                     bv1.orCardinality(bv2));
+        
+        bv2.buildIndices();
+        
+        for (int iteration = 0; iteration < 200; iteration++) {
+            int fromIndex = random.nextInt(length + 1);
+            int toIndex = fromIndex + random.nextInt(length - fromIndex + 1);
+            
+            int and = 0;
+            int or = 0;
+            int xor = 0;
+            int andNot = 0;
+            
+            for (int i = fromIndex; i < toIndex; i++) {
+                boolean bit1 = bv1.readBit(i);
+                boolean bit2 = bv2.readBit(i);
+                
+                and    += bit1 && bit2 ? 1 : 0;
+                or     += bit1 || bit2 ? 1 : 0;
+                xor    += bit1 ^ bit2 ? 1 : 0;
+                andNot += bit1 && !bit2 ? 1 : 0;
+            }
+            
+            assertEquals(and, bv1.andCardinality(bv2, fromIndex, toIndex));
+            assertEquals(or, bv1.orCardinality(bv2, fromIndex, toIndex));
+            assertEquals(xor, bv1.xorCardinality(bv2, fromIndex, toIndex));
+            assertEquals(andNot, 
+                         bv1.andNotCardinality(bv2, fromIndex, toIndex));
+        }
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void cardinalityThrowsOnInvertedRange() {
+        RankSelectBitVector bv = new RankSelectBitVector(10);
+        bv.andCardinality(bv, 5, 4);
+    }
+    
+    @Test
+    public void rangeQueries() {
+        Random random = new Random(SEED);
+        RankSelectBitVector bv = getRandomBitVector(random, 10_000);
+        
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            int fromIndex = random.nextInt(bv.getNumberOfSupportedBits());
+            int toIndex = 
+                    fromIndex + 
+                    random.nextInt(
+                            bv.getNumberOfSupportedBits() - fromIndex + 1);
+            
+            int expected = bv.rankFirst(toIndex) - bv.rankFirst(fromIndex);
+            
+            assertEquals(expected, bv.count(fromIndex, toIndex));
+            assertEquals(expected, 
+                         bv.rankInRange(fromIndex, toIndex, toIndex));
+            assertEquals(0, bv.rankInRange(fromIndex, toIndex, fromIndex));
+            
+            int rankFrom = bv.rankFirst(fromIndex);
+            int available = bv.getNumberOfSetBits() - rankFrom;
+            
+            if (available > 0) {
+                int bitIndex = random.nextInt(available) + 1;
+                
+                assertEquals(bv.selectFirst(rankFrom + bitIndex), 
+                             bv.selectInRange(fromIndex, bitIndex));
+            }
+        }
+    }
+    
+    @Test
+    public void countOnDirtyVector() {
+        RankSelectBitVector bv = new RankSelectBitVector(200);
+        
+        bv.writeBitOn(3);
+        bv.writeBitOn(150);
+        
+        assertEquals(1, bv.count(0, 10));
+        assertEquals(2, bv.count(0, 200));
+        
+        bv.writeBitOn(100);
+        
+        assertEquals(3, bv.count(0, 200));
+        assertEquals(150, bv.selectInRange(101, 1));
+        assertEquals(100, bv.selectInRange(4, 1));
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void selectInRangeThrowsOnTooFewBits() {
+        RankSelectBitVector bv = new RankSelectBitVector(200);
+        
+        bv.writeBitOn(3);
+        bv.writeBitOn(150);
+        bv.selectInRange(4, 2);
+    }
+    
+    @Test
+    public void selectInWord() {
+        Random random = new Random(SEED);
+        
+        for (int iteration = 0; iteration < 10_000; iteration++) {
+            long word = random.nextLong();
+            
+            if (iteration % 3 == 0) {
+                // Make the word sparse:
+                word &= random.nextLong() & random.nextLong();
+            }
+            
+            int bitIndex = 0;
+            
+            for (int position = 0; position < Long.SIZE; position++) {
+                if ((word & (1L << position)) != 0) {
+                    assertEquals(position, 
+                                 RankSelectBitVector.selectInWord(word,
+                                                                  ++bitIndex));
+                }
+            }
+        }
+        
+        assertEquals(63, RankSelectBitVector.selectInWord(-1L, 64));
+        assertEquals(63, RankSelectBitVector.selectInWord(Long.MIN_VALUE, 1));
+    }
+    
+    @Test
+    public void compactIndex() {
+        Random random = new Random(SEED);
+        RankSelectBitVector plain = new RankSelectBitVector(100_003);
+        RankSelectBitVector compact = new RankSelectBitVector(100_003, true);
+        
+        for (int i = 0; i < plain.getNumberOfSupportedBits(); i++) {
+            if (random.nextDouble() < 0.4) {
+                plain.writeBitOn(i);
+                compact.writeBitOn(i);
+            }
+        }
+        
+        assertFalse(plain.hasCompactIndex());
+        assertTrue(compact.hasCompactIndex());
+        
+        for (int i = 0; i <= plain.getNumberOfSupportedBits(); i++) {
+            assertEquals(plain.rankThird(i), compact.rankThird(i));
+            assertEquals(plain.rankSecond(i), compact.rankSecond(i));
+        }
+        
+        for (int i = 1; i <= plain.getNumberOfSetBits(); i += 7) {
+            assertEquals(plain.selectThird(i), compact.selectThird(i));
+        }
+        
+        assertTrue(compact.getRankIndexBitsPerBit() < 
+                   plain.getRankIndexBitsPerBit() / 2.0);
+        
+        assertTrue(RankSelectBitVector.not(compact).hasCompactIndex());
+    }
+    
+    @Test
+    public void memoryUsage() {
+        RankSelectBitVector plain = new RankSelectBitVector(1_000_000);
+        RankSelectBitVector compact = new RankSelectBitVector(1_000_000, true);
+        
+        MemoryUsageReport plainReport = plain.memoryUsage();
+        MemoryUsageReport compactReport = compact.memoryUsage();
+        
+        // 15_626 words (one for padding) plus the array header:
+        assertEquals(15_626 * 8 + 16, plainReport.getDataBytes());
+        assertEquals(plainReport.getDataBytes(), 
+                     compactReport.getDataBytes());
+        
+        assertEquals(0L, plainReport.getSelectIndexBytes());
+        assertTrue(plainReport.getLookupTableBytes() > 0L);
+        assertTrue(compactReport.getRankIndexBytes() < 
+                   plainReport.getRankIndexBytes());
+        
+        assertEquals(plainReport.getDataBytes() + 
+                     plainReport.getRankIndexBytes() + 
+                     plainReport.getLookupTableBytes(),
+                     plainReport.getTotalBytes());
+        
+        assertTrue(plainReport.getTotalBitsPerBit() > 1.0);
+    }
+    
+    @Test
+    public void explicitBlockLayouts() {
+        Random random = new Random(SEED);
+        
+        BlockLayout[] layouts = {
+            BlockLayout.of(20, 5),
+            BlockLayout.of(100, 10),
+            BlockLayout.of(512, 64),
+            BlockLayout.of(4096, 64),
+            BlockLayout.of(4096, 512),
+            BlockLayout.of(96, 48),
+        };
+        
+        RankSelectBitVector expected = getRandomBitVector(random, 30_011);
+        
+        for (BlockLayout layout : layouts) {
+            for (boolean compactIndex : new boolean[]{ false, true }) {
+                RankSelectBitVector bv = 
+                        new RankSelectBitVector(30_011, layout, compactIndex);
+                
+                for (int i = 0; i < bv.getNumberOfSupportedBits(); i++) {
+                    if (expected.readBit(i)) {
+                        bv.writeBitOn(i);
+                    }
+                }
+                
+                assertEquals(layout, bv.getLayout());
+                assertEquals(layout.usesLookupTable(), 
+                             bv.memoryUsage().getLookupTableBytes() > 0L);
+                
+                for (int i = 0; i <= bv.getNumberOfSupportedBits(); i++) {
+                    assertEquals(expected.rankThird(i), bv.rankThird(i));
+                    assertEquals(expected.rankThird(i), bv.rankSecond(i));
+                }
+                
+                for (int i = 1; i <= bv.getNumberOfSetBits(); i++) {
+                    assertEquals(expected.selectThird(i), bv.selectThird(i));
+                }
+                
+                assertEquals(expected.getNumberOfSetBits(), 
+                             RankSelectBitVector.and(bv, expected)
+                                                .getNumberOfSetBits());
+            }
+        }
+    }
+    
+    @Test
+    public void defaultBlockLayout() {
+        BlockLayout layout = BlockLayout.defaultFor(1_000_000);
+        
+        // n = 15_626 * 64 = 1_000_064 bits, log2(n) ~ 19.93:
+        assertEquals(10, layout.getBlockSize());
+        assertEquals(100, layout.getSuperblockSize());
+        assertEquals(layout, new RankSelectBitVector(1_000_000).getLayout());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void blockLayoutThrowsOnMisalignedSuperblock() {
+        BlockLayout.of(100, 64);
+    }
+    
+    @Test
+    public void calibrateBlockLayout() {
+        BlockLayout layout = BlockLayoutCalibrator.calibrate(100_000, 
+                                                             0.5,
+                                                             true);
+        
+        assertTrue(layout.getIndexBitsPerBit(true) <= 0.5);
+        
+        // Nothing fits, so the smallest layout is returned:
+        layout = BlockLayoutCalibrator.calibrate(100_000, 0.0, true);
+        
+        assertEquals(BlockLayout.of(4096, 512), layout);
+    }
+    
+    @Test
+    public void wrapWordArray() {
+        Random random = new Random(SEED);
+        RankSelectBitVector expected = getRandomBitVector(random, 10_007);
+        long[] words = new long[RankSelectBitVector.getStorageLength(10_007)];
+        
+        for (int i = 0; i < 10_007; i++) {
+            if (expected.readBit(i)) {
+                words[i / Long.SIZE] |= 1L << i;
+            }
+        }
+        
+        RankSelectBitVector wrapped = RankSelectBitVector.wrap(words, 10_007);
+        
+        assertEquals(expected.getNumberOfSetBits(), 
+                     wrapped.getNumberOfSetBits());
+        
+        for (int i = 0; i <= 10_007; i++) {
+            assertEquals(expected.rankThird(i), wrapped.rankThird(i));
+        }
+        
+        // Writes through the bit vector are visible in the array:
+        wrapped.writeBit(5_000, !expected.readBit(5_000));
+        expected.writeBit(5_000, !expected.readBit(5_000));
+        
+        assertEquals(expected.readBit(5_000), 
+                     (words[5_000 / Long.SIZE] & (1L << 5_000)) != 0L);
+        
+        // Direct writes to the array are visible after invalidation:
+        words[0] = -1L;
+        wrapped.invalidateIndices();
+        
+        for (int i = 0; i < Long.SIZE; i++) {
+            expected.writeBitOn(i);
+        }
+        
+        assertEquals(expected.getNumberOfSetBits(), 
+                     wrapped.getNumberOfSetBits());
+        
+        for (int i = 0; i <= 10_007; i++) {
+            assertEquals(expected.rankThird(i), wrapped.rankThird(i));
+        }
+        
+        for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+            assertEquals(expected.selectThird(i), wrapped.selectThird(i));
+        }
+        
+        // A heap buffer shares its array:
+        RankSelectBitVector fromBuffer = 
+                RankSelectBitVector.wrap(LongBuffer.wrap(words), 10_007);
+        
+        assertEquals(expected.getNumberOfSetBits(), 
+                     fromBuffer.getNumberOfSetBits());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void wrapThrowsOnMissingPaddingWord() {
+        RankSelectBitVector.wrap(new long[2], 128);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void wrapThrowsOnBitsBeyondLength() {
+        RankSelectBitVector.wrap(new long[]{ 0L, 1L }, 10);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void wrapThrowsOnDirectBuffer() {
+        RankSelectBitVector.wrap(
+                ByteBuffer.allocateDirect(64).asLongBuffer(), 
+                100);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void invalidateIndicesThrowsOnBitsBeyondLength() {
+        long[] words = new long[2];
+        RankSelectBitVector bv = RankSelectBitVector.wrap(words, 10);
+        
+        words[0] = -1L;
+        bv.invalidateIndices();
+    }
+    
+    @Test
+    public void concat() {
+        Random random = new Random(SEED);
+        BlockLayout layout = BlockLayout.of(512, 64);
+        
+        // Aligned parts with indices reused, a misaligned part, a part with a
+        // dirty index and a part with another layout:
+        RankSelectBitVector[] parts = {
+            getRandomBitVector(random, 2_048, layout, true),
+            getRandomBitVector(random, 1_100, layout, true),
+            getRandomBitVector(random, 3_000, layout, true),
+            getRandomBitVector(random, 77, layout, false),
+            getRandomBitVector(random, 1_000, BlockLayout.of(20, 5), true),
+        };
+        
+        for (boolean compactIndex : new boolean[]{ false, true }) {
+            RankSelectBitVector[] inputs = parts.clone();
+            
+            if (compactIndex) {
+                inputs[0] = new RankSelectBitVector(2_048, layout, true);
+                
+                for (int i = 0; i < 2_048; i++) {
+                    inputs[0].writeBit(i, parts[0].readBit(i));
+                }
+                
+                inputs[0].buildIndices();
+            }
+            
+            RankSelectBitVector actual = RankSelectBitVector.concat(inputs);
+            int length = actual.getNumberOfSupportedBits();
+            RankSelectBitVector expected = 
+                    new RankSelectBitVector(length, layout);
+            
+            int offset = 0;
+            
+            for (RankSelectBitVector part : inputs) {
+                for (int i = 0; i < part.getNumberOfSupportedBits(); i++) {
+                    expected.writeBit(offset + i, part.readBit(i));
+                }
+                
+                offset += part.getNumberOfSupportedBits();
+            }
+            
+            assertEquals(offset, length);
+            assertEquals(layout, actual.getLayout());
+            assertEquals(compactIndex, actual.hasCompactIndex());
+            assertEquals(expected.getNumberOfSetBits(), 
+                         actual.getNumberOfSetBits());
+            
+            for (int i = 0; i <= length; i++) {
+                assertEquals(expected.rankThird(i), actual.rankThird(i));
+            }
+            
+            for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+                assertEquals(expected.selectThird(i), actual.selectThird(i));
+            }
+        }
+    }
+    
+    @Test
+    public void lazyIndex() {
+        Random random = new Random(SEED);
+        RankSelectBitVector expected = getRandomBitVector(random, 20_011);
+        
+        for (BlockLayout layout : new BlockLayout[]{ 
+                BlockLayout.defaultFor(20_011), 
+                BlockLayout.of(512, 64),
+                BlockLayout.of(96, 48) }) {
+            
+            for (boolean compactIndex : new boolean[]{ false, true }) {
+                RankSelectBitVector bv = 
+                        new RankSelectBitVector(20_011, 
+                                                layout, 
+                                                compactIndex, 
+                                                true);
+                
+                assertTrue(bv.hasLazyIndex());
+                
+                for (int i = 0; i < 20_011; i++) {
+                    bv.writeBit(i, expected.readBit(i));
+                }
+                
+                // Touch a single region first:
+                assertEquals(expected.rankThird(10_000), bv.rankThird(10_000));
+                checkSameRanksAndSelects(expected, bv);
+                
+                // Writes reset the lazily built superblocks:
+                int index = random.nextInt(20_011);
+                bv.writeBit(index, !bv.readBit(index));
+                expected.writeBit(index, !expected.readBit(index));
+                checkSameRanksAndSelects(expected, bv);
+                
+                bv.writeBit(index, !bv.readBit(index));
+                expected.writeBit(index, !expected.readBit(index));
+            }
+        }
+        
+        long[] words = new long[RankSelectBitVector.getStorageLength(20_011)];
+        
+        for (int i = 0; i < 20_011; i++) {
+            if (expected.readBit(i)) {
+                words[i / Long.SIZE] |= 1L << i;
+            }
+        }
+        
+        RankSelectBitVector wrapped = 
+                RankSelectBitVector.wrap(words, 
+                                         20_011, 
+                                         BlockLayout.of(512, 64), 
+                                         false, 
+                                         true);
+        
+        assertEquals(expected.getNumberOfSetBits(), 
+                     wrapped.getNumberOfSetBits());
+        
+        checkSameRanksAndSelects(expected, wrapped);
+    }
+    
+    @Test
+    public void lazyIndexConcurrentQueries() throws InterruptedException {
+        Random random = new Random(SEED);
+        RankSelectBitVector expected = getRandomBitVector(random, 200_000);
+        RankSelectBitVector bv = 
+                new RankSelectBitVector(200_000, 
+                                        BlockLayout.of(512, 64), 
+                                        false, 
+                                        true);
+        
+        for (int i = 0; i < 200_000; i++) {
+            bv.writeBit(i, expected.readBit(i));
+        }
+        
+        expected.buildIndices();
+        bv.buildIndices();
+        
+        Thread[] threads = new Thread[4];
+        boolean[] failed = new boolean[threads.length];
+        
+        for (int t = 0; t < threads.length; t++) {
+            int threadIndex = t;
+            
+            threads[t] = new Thread(() -> {
+                for (int i = threadIndex; i <= 200_000; i += 7) {
+                    if (expected.rankThird(i) != bv.rankThird(i)) {
+                        failed[threadIndex] = true;
+                    }
+                }
+            });
+            
+            threads[t].start();
+        }
+        
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            assertFalse(failed[t]);
+        }
+    }
+    
+    @Test
+    public void rankBatch() {
+        Random random = new Random(SEED);
+        
+        for (BlockLayout layout : new BlockLayout[]{ 
+                BlockLayout.defaultFor(10_007), 
+                BlockLayout.of(512, 64),
+                BlockLayout.of(96, 48) }) {
+            
+            for (boolean compactIndex : new boolean[]{ false, true }) {
+                RankSelectBitVector bv = 
+                        new RankSelectBitVector(10_007, layout, compactIndex);
+                
+                for (int i = 0; i < 10_007; i++) {
+                    if (random.nextBoolean()) {
+                        bv.writeBitOn(i);
+                    }
+                }
+                
+                int[] indices = new int[1_000];
+                int[] ranks = new int[indices.length];
+                
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = random.nextInt(10_008);
+                }
+                
+                indices[0] = 0;
+                indices[1] = 10_007;
+                
+                bv.rankBatch(indices, ranks);
+                
+                for (int i = 0; i < indices.length; i++) {
+                    assertEquals(bv.rankThird(indices[i]), ranks[i]);
+                }
+            }
+        }
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rankBatchThrowsOnTooLargeIndex() {
+        new RankSelectBitVector(100).rankBatch(new int[]{ 5, 101 }, 
+                                               new int[2]);
+    }
+    
+    @Test
+    public void rangeWrites() {
+        Random random = new Random(SEED);
+        
+        for (BlockLayout layout : new BlockLayout[]{ 
+                BlockLayout.of(512, 64),
+                BlockLayout.of(96, 48) }) {
+            
+            for (boolean lazyIndex : new boolean[]{ false, true }) {
+                RankSelectBitVector bv = 
+                        new RankSelectBitVector(10_007, 
+                                                layout, 
+                                                false, 
+                                                lazyIndex);
+                
+                boolean[] bits = new boolean[10_007];
+                
+                for (int iteration = 0; iteration < 30; iteration++) {
+                    int fromIndex = random.nextInt(10_008);
+                    // Mostly short ranges, rebuilt superblock-wise:
+                    int length = iteration % 5 == 0 ? 
+                                 random.nextInt(10_008 - fromIndex) : 
+                                 random.nextInt(
+                                         Math.min(200, 10_008 - fromIndex));
+                    
+                    int toIndex = fromIndex + length;
+                    
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            bv.setRange(fromIndex, toIndex);
+                            Arrays.fill(bits, fromIndex, toIndex, true);
+                            break;
+                        
+                        case 1:
+                            bv.clearRange(fromIndex, toIndex);
+                            Arrays.fill(bits, fromIndex, toIndex, false);
+                            break;
+                        
+                        case 2:
+                            bv.flipRange(fromIndex, toIndex);
+                            
+                            for (int i = fromIndex; i < toIndex; i++) {
+                                bits[i] = !bits[i];
+                            }
+                            
+                            break;
+                        
+                        default:
+                            int index = random.nextInt(10_007);
+                            bits[index] = !bits[index];
+                            bv.writeBit(index, bits[index]);
+                            break;
+                    }
+                    
+                    RankSelectBitVector expected = 
+                            new RankSelectBitVector(10_007);
+                    
+                    for (int i = 0; i < bits.length; i++) {
+                        if (bits[i]) {
+                            expected.writeBitOn(i);
+                        }
+                    }
+                    
+                    assertEquals(expected.getNumberOfSetBits(), 
+                                 bv.getNumberOfSetBits());
+                    
+                    checkSameRanksAndSelects(expected, bv);
+                }
+            }
+        }
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rangeWriteThrowsOnInvertedRange() {
+        new RankSelectBitVector(100).setRange(20, 10);
+    }
+    
+    @Test
+    public void scatterWrites() {
+        Random random = new Random(SEED);
+        
+        for (BlockLayout layout : new BlockLayout[]{ 
+                BlockLayout.of(512, 64),
+                BlockLayout.of(96, 48) }) {
+            
+            RankSelectBitVector bv = new RankSelectBitVector(10_007, layout);
+            boolean[] bits = new boolean[10_007];
+            
+            for (int iteration = 0; iteration < 30; iteration++) {
+                int[] positions = new int[1 + random.nextInt(100)];
+                int fromIndex = random.nextInt(10_007 - 1_000);
+                
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = fromIndex + random.nextInt(1_000);
+                }
+                
+                if (random.nextBoolean()) {
+                    Arrays.sort(positions);
+                }
+                
+                boolean on = random.nextBoolean();
+                
+                if (on) {
+                    bv.setBits(positions);
+                } else {
+                    bv.clearBits(positions);
+                }
+                
+                RankSelectBitVector expected = new RankSelectBitVector(10_007);
+                
+                for (int position : positions) {
+                    bits[position] = on;
+                }
+                
+                for (int i = 0; i < bits.length; i++) {
+                    if (bits[i]) {
+                        expected.writeBitOn(i);
+                    }
+                }
+                
+                assertEquals(expected.getNumberOfSetBits(), 
+                             bv.getNumberOfSetBits());
+                
+                checkSameRanksAndSelects(expected, bv);
+            }
+        }
+    }
+    
+    @Test
+    public void scatterWriteThrowsBeforeWriting() {
+        RankSelectBitVector bv = new RankSelectBitVector(100);
+        
+        try {
+            bv.setBits(new int[]{ 3, 5, 100 });
+            fail("Out of range position accepted.");
+        } catch (IndexOutOfBoundsException ex) {
+            // Expected.
+        }
+        
+        assertFalse(bv.readBit(3));
+        assertEquals(0, bv.getNumberOfSetBits());
+    }
+    
+    private static void checkBitwiseOperation(
+            RankSelectBitVector bv1,
+            RankSelectBitVector bv2,
+            RankSelectBitVector result,
+            BiPredicate<Boolean, Boolean> operation) {
+        
+        int rank = 0;
+        
+        for (int i = 0; i < result.getNumberOfSupportedBits(); i++) {
+            assertEquals(rank, result.rankThird(i));
+            
+            boolean expected = operation.test(bv1.readBit(i), bv2.readBit(i));
+            
+            assertEquals(expected, result.readBit(i));
+            
+            if (expected) {
+                rank++;
+            }
+        }
+        
+        int length = result.getNumberOfSupportedBits();
+        
+        assertEquals(rank, result.getNumberOfSetBits());
+        assertEquals(rank, result.rankThird(length));
+        assertEquals(rank, result.rankSecond(length));
+    }
+    
+    private static RankSelectBitVector getRandomBitVector(Random random,
+                                                          int length) {
+        RankSelectBitVector bv = new RankSelectBitVector(length);
+        
+        for (int i = 0; i < length; i++) {
+            if (random.nextBoolean()) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        return bv;
+    }
+    
+    private static RankSelectBitVector getRandomBitVector(Random random,
+                                                          int length,
+                                                          BlockLayout layout,
+                                                          boolean indexed) {
+        RankSelectBitVector bv = new RankSelectBitVector(length, layout);
+        
+        for (int i = 0; i < length; i++) {
+            if (random.nextBoolean()) {
+                bv.writeBitOn(i);
+            }
+        }
+        
+        if (indexed) {
+            bv.buildIndices();
+        }
+        
+        return bv;
+    }
+    
+    private static void checkSameRanksAndSelects(RankSelectBitVector expected,
+                                                 RankSelectBitVector actual) {
+        for (int i = 0; i <= expected.getNumberOfSupportedBits(); i++) {
+            assertEquals(expected.rankThird(i), actual.rankThird(i));
+            assertEquals(expected.rankThird(i), actual.rankSecond(i));
+        }
+        
+        for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+            assertEquals(expected.selectThird(i), actual.selectThird(i));
+        }
+    }
+    
     @Rule
     public TestRule watchman = new TestWatcher() {
       
@@ -0,0 +1,198 @@
+package com.github.coderodde.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+public final class RunLengthEncodedBitVectorTest {
+    
+    private static final long SEED = System.currentTimeMillis();
+    
+    static {
+        System.out.printf("Seed = %d.\n", SEED);
+    }
+    
+    @Test
+    public void queriesMatchBitVector() {
+        Random random = new Random(SEED);
+        
+        for (int iteration = 0; iteration < 20; iteration++) {
+            int length = 1 + random.nextInt(20_000);
+            RankSelectBitVector bv = getRandomRuns(random, length);
+            RunLengthEncodedBitVector rle = RunLengthEncodedBitVector.of(bv);
+            
+            checkSameBits(bv, rle);
+        }
+        
+        // Runs touching both ends:
+        RankSelectBitVector bv = new RankSelectBitVector(1_000);
+        bv.setRange(0, 100);
+        bv.setRange(900, 1_000);
+        
+        RunLengthEncodedBitVector rle = RunLengthEncodedBitVector.of(bv);
+        
+        assertEquals(2, rle.getNumberOfRuns());
+        checkSameBits(bv, rle);
+        
+        checkSameBits(new RankSelectBitVector(100), 
+                      RunLengthEncodedBitVector.of(
+                              new RankSelectBitVector(100)));
+    }
+    
+    @Test
+    public void longRuns() {
+        // Runs far apart make the Elias-Fano sequences store low bits:
+        RunLengthEncodedBitVector rle = 
+                RunLengthEncodedBitVector.ofRuns(
+                        2_000_000_000, 
+                        new int[]{ 
+                            5, 1_000_000, 1_000_000_000, 1_999_999_990 
+                        }, 
+                        new int[]{ 10, 500_000_000, 1, 10 });
+        
+        assertEquals(4, rle.getNumberOfRuns());
+        assertEquals(500_000_021, rle.getNumberOfSetBits());
+        
+        assertEquals(0, rle.rank(5));
+        assertEquals(10, rle.rank(15));
+        assertEquals(10, rle.rank(1_000_000));
+        assertEquals(510, rle.rank(1_000_500));
+        assertEquals(500_000_010, rle.rank(1_000_000_000));
+        assertEquals(500_000_011, rle.rank(1_000_000_001));
+        assertEquals(500_000_021, rle.rank(2_000_000_000));
+        
+        assertEquals(5, rle.select(1));
+        assertEquals(1_000_000, rle.select(11));
+        assertEquals(500_999_999, rle.select(500_000_010));
+        assertEquals(1_000_000_000, rle.select(500_000_011));
+        assertEquals(1_999_999_999, rle.select(500_000_021));
+        
+        assertTrue(rle.readBit(1_999_999_999));
+        assertEquals(-1, rle.nextSetBit(2_000_000_000));
+        assertEquals(1_000_000_000, rle.nextSetBit(600_000_000));
+    }
+    
+    @Test
+    public void nextSetBitAtMaximumLength() {
+        RunLengthEncodedBitVector rle = 
+                RunLengthEncodedBitVector.ofRuns(Integer.MAX_VALUE, 
+                                                 new int[]{ 5 }, 
+                                                 new int[]{ 10 });
+        
+        assertEquals(-1, rle.nextSetBit(Integer.MAX_VALUE));
+        assertEquals(5, rle.nextSetBit(0));
+    }
+    
+    @Test
+    public void ofRunsMergesAdjacentRuns() {
+        RunLengthEncodedBitVector rle = 
+                RunLengthEncodedBitVector.ofRuns(100, 
+                                                 new int[]{ 10, 20, 30, 50 }, 
+                                                 new int[]{ 10, 5, 0, 50 });
+        
+        assertEquals(2, rle.getNumberOfRuns());
+        assertEquals(65, rle.getNumberOfSetBits());
+        assertEquals(24, rle.select(15));
+        assertEquals(50, rle.select(16));
+        
+        List<Integer> indices = new ArrayList<>();
+        rle.forEachSetBit(indices::add);
+        
+        assertEquals(65, indices.size());
+        assertEquals(Integer.valueOf(10), indices.get(0));
+        assertEquals(Integer.valueOf(99), indices.get(64));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void ofRunsThrowsOnOverlappingRuns() {
+        RunLengthEncodedBitVector.ofRuns(100, 
+                                         new int[]{ 10, 15 }, 
+                                         new int[]{ 10, 5 });
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void ofRunsThrowsOnRunBeyondLength() {
+        RunLengthEncodedBitVector.ofRuns(100, 
+                                         new int[]{ 90 }, 
+                                         new int[]{ 11 });
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void ofRunsThrowsOnZeroBits() {
+        RunLengthEncodedBitVector.ofRuns(0, new int[0], new int[0]);
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void selectThrowsOnTooLargeIndex() {
+        RunLengthEncodedBitVector.ofRuns(100, 
+                                         new int[]{ 90 }, 
+                                         new int[]{ 10 }).select(11);
+    }
+    
+    private static RankSelectBitVector getRandomRuns(Random random, 
+                                                     int length) {
+        RankSelectBitVector bv = new RankSelectBitVector(length);
+        int index = random.nextInt(100);
+        
+        while (index < length) {
+            int runEnd = Math.min(length, index + 1 + random.nextInt(300));
+            bv.setRange(index, runEnd);
+            index = runEnd + 1 + random.nextInt(300);
+        }
+        
+        return bv;
+    }
+    
+    private static void checkSameBits(RankSelectBitVector expected, 
+                                      RunLengthEncodedBitVector actual) {
+        int length = expected.getNumberOfSupportedBits();
+        
+        assertEquals(length, actual.getNumberOfSupportedBits());
+        assertEquals(expected.getNumberOfSetBits(), 
+                     actual.getNumberOfSetBits());
+        
+        for (int i = 0; i < length; i++) {
+            assertEquals(expected.readBit(i), actual.readBit(i));
+            assertEquals(expected.rankThird(i), actual.rank(i));
+            assertEquals(expected.nextSetBit(i), actual.nextSetBit(i));
+        }
+        
+        assertEquals(expected.getNumberOfSetBits(), actual.rank(length));
+        assertEquals(-1, actual.nextSetBit(length));
+        
+        for (int i = 1; i <= expected.getNumberOfSetBits(); i++) {
+            assertEquals(expected.selectThird(i), actual.select(i));
+        }
+        
+        List<Integer> indices = new ArrayList<>();
+        actual.forEachSetBit(indices::add);
+        
+        assertEquals(expected.getNumberOfSetBits(), indices.size());
+        
+        for (int i = 0; i < indices.size(); i++) {
+            assertEquals(expected.selectThird(i + 1), (int) indices.get(i));
+        }
+        
+        RankSelectBitVector decoded = actual.toRankSelectBitVector();
+        
+        for (int i = 0; i < length; i++) {
+            assertEquals(expected.readBit(i), decoded.readBit(i));
+        }
+    }
+    
+    @Rule
+    public TestRule watchman = new TestWatcher() {
+        
+        @Override
+        protected void failed(Throwable e, Description desc) {
+            System.err.printf("Failed on SEED = %d", SEED);
+        }
+    };
+}